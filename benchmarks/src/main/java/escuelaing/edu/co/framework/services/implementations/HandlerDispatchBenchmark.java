@@ -0,0 +1,50 @@
+package escuelaing.edu.co.framework.services.implementations;
+
+import escuelaing.edu.co.framework.injector.Injector;
+import escuelaing.edu.co.framework.models.HTTPFrameworkRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A parsed request answered by a controller method of the sample application, with the handler the
+ * {@link Injector} compiled for it: route lookup, parameter binding, the call, and encoding the response
+ * into a stream that discards it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HandlerDispatchBenchmark {
+    @Param({"/api/v1/users/greeting?name=Miguel", "/api/v1/books/catalog"})
+    public String target;
+
+    private HTTPFrameworkRequest request;
+    private final OutputStream out = OutputStream.nullOutputStream();
+
+    @Setup
+    public void setUp() {
+        Pipeline.startApplication();
+        request = Pipeline.request(target);
+    }
+
+    @Benchmark
+    public boolean dispatch() throws IOException {
+        return HTTPServerImpl.handleRequest(request, InputStream.nullInputStream(), out);
+    }
+}
@@ -0,0 +1,176 @@
+package escuelaing.edu.co.framework.services.implementations;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests sent over loopback to a running server, each client thread on its own keep-alive connection.
+ * Reports throughput and the latency distribution at 1, 4 and 16 concurrent clients, for both engines.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class LoopbackBenchmark {
+
+    /**
+     * The server, started once per trial.
+     */
+    @State(Scope.Benchmark)
+    public static class Server {
+        @Param({"BLOCKING", "NIO"})
+        public HTTPServerImpl.Engine engine;
+
+        @Param({"/api/v1/users/greeting?name=Miguel", "/index.html"})
+        public String target;
+
+        int port;
+        private Thread thread;
+
+        @Setup(Level.Trial)
+        public void start() throws Exception {
+            Pipeline.startApplication();
+            Pipeline.serveWebroot();
+            HTTPServerImpl.engine(engine);
+            HTTPServerImpl.keepAlive(60_000, Integer.MAX_VALUE);
+            try (ServerSocket socket = new ServerSocket(0)) {
+                port = socket.getLocalPort();
+            }
+            thread = new Thread(() -> HTTPServerImpl.start(port), "benchmark-server");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() throws InterruptedException {
+            HTTPServerImpl.stop();
+            thread.join(5000);
+        }
+    }
+
+    /**
+     * A client connection, opened again if the server closes it.
+     */
+    @State(Scope.Thread)
+    public static class Client {
+        private byte[] request;
+        private Socket socket;
+        private OutputStream out;
+        private InputStream in;
+        private int port;
+
+        @Setup(Level.Trial)
+        public void connect(Server server) throws Exception {
+            request = Pipeline.head(server.target);
+            port = server.port;
+            open();
+        }
+
+        private void open() throws Exception {
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    socket = new Socket("localhost", port);
+                    break;
+                } catch (ConnectException e) {
+                    if (attempt == 100) {
+                        throw e;
+                    }
+                    Thread.sleep(20);
+                }
+            }
+            socket.setTcpNoDelay(true);
+            out = socket.getOutputStream();
+            in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            socket.close();
+        }
+
+        /**
+         * Sends the request and reads the whole response.
+         * @return the response body length
+         */
+        int exchange() throws Exception {
+            out.write(request);
+            out.flush();
+            int contentLength = 0;
+            boolean close = false;
+            String line;
+            while (!(line = readLine()).isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    String name = line.substring(0, colon);
+                    String value = line.substring(colon + 1).trim();
+                    if (name.equalsIgnoreCase("Content-Length")) {
+                        contentLength = Integer.parseInt(value);
+                    } else if (name.equalsIgnoreCase("Connection")) {
+                        close = value.equalsIgnoreCase("close");
+                    }
+                }
+            }
+            in.skipNBytes(contentLength);
+            if (close) {
+                socket.close();
+                open();
+            }
+            return contentLength;
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder(64);
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b < 0) {
+                    throw new EOFException();
+                }
+                if (b != '\r') {
+                    line.append((char) b);
+                }
+            }
+            return line.toString();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int oneClient(Client client) throws Exception {
+        return client.exchange();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int fourClients(Client client) throws Exception {
+        return client.exchange();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public int sixteenClients(Client client) throws Exception {
+        return client.exchange();
+    }
+}
@@ -0,0 +1,67 @@
+package escuelaing.edu.co.framework.services.implementations;
+
+import escuelaing.edu.co.Main;
+import escuelaing.edu.co.framework.injector.Injector;
+import escuelaing.edu.co.framework.models.HTTPFrameworkRequest;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Shared set-up of the benchmarks: the requests a browser sends, the sample application and its static files.
+ * The benchmarks live in the server package so they can reach the parser and the request pipeline directly.
+ */
+final class Pipeline {
+    /** The static root, relative to the benchmarks directory unless overridden with -Dwebroot=... */
+    static final String WEBROOT = System.getProperty("webroot", "../src/main/resources/webroot");
+    private static boolean applicationStarted;
+
+    private Pipeline() {
+    }
+
+    /**
+     * Returns the head of a GET request with the headers a browser usually sends.
+     * @param target the request target, path and query
+     */
+    static byte[] head(String target) {
+        return ("GET " + target + " HTTP/1.1\r\n"
+                + "Host: localhost:8080\r\n"
+                + "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:128.0) Gecko/20100101 Firefox/128.0\r\n"
+                + "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n"
+                + "Accept-Language: es-CO,es;q=0.8,en-US;q=0.5,en;q=0.3\r\n"
+                + "Accept-Encoding: identity\r\n"
+                + "Connection: keep-alive\r\n"
+                + "Cookie: session=4f9c2a1e7b3d4c8e9a0b1c2d3e4f5a6b\r\n"
+                + "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    static HTTPFrameworkRequest request(String target) {
+        byte[] head = head(target);
+        return HTTPRequestParser.parse(head, 0, head.length);
+    }
+
+    /**
+     * Registers the routes of the sample application through the {@link Injector}, without starting a server.
+     * The injector registers routes once per JVM, so later calls do nothing.
+     */
+    static synchronized void startApplication() {
+        if (!applicationStarted) {
+            Injector.startApp(Main.class, true);
+            applicationStarted = true;
+        }
+    }
+
+    /**
+     * Serves static files from {@link #WEBROOT}.
+     */
+    static void serveWebroot() throws ReflectiveOperationException {
+        File root = new File(WEBROOT);
+        if (!new File(root, "index.html").isFile()) {
+            throw new IllegalStateException("No webroot at " + root.getAbsolutePath() + ", run from the benchmarks directory or pass -Dwebroot=...");
+        }
+        Field resources = HTTPServerImpl.class.getDeclaredField("RESOURCES_PATH");
+        resources.setAccessible(true);
+        resources.set(null, root.getAbsolutePath());
+    }
+}
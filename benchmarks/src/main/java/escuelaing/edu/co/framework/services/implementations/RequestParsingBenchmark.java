@@ -0,0 +1,43 @@
+package escuelaing.edu.co.framework.services.implementations;
+
+import escuelaing.edu.co.framework.models.HTTPFrameworkRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a request head into an {@link HTTPFrameworkRequest}: request line, headers and query parameters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestParsingBenchmark {
+    @Param({"/index.html", "/api/v1/users/greeting?name=Miguel&lang=es&page=2"})
+    public String target;
+
+    private byte[] head;
+
+    @Setup
+    public void setUp() {
+        head = Pipeline.head(target);
+    }
+
+    @Benchmark
+    public HTTPFrameworkRequest findHeadEndAndParse() {
+        int end = HTTPRequestParser.findHeadEnd(head, 0, head.length);
+        return HTTPRequestParser.parse(head, 0, end);
+    }
+}
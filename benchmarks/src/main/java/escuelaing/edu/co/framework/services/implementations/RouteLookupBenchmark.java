@@ -0,0 +1,57 @@
+package escuelaing.edu.co.framework.services.implementations;
+
+import escuelaing.edu.co.framework.models.HTTPMethod;
+import escuelaing.edu.co.framework.services.interfaces.HTTPServerHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Route lookup in the {@link Router} that {@link HTTPServerImpl} dispatches with, on a table of the size of a
+ * small REST API: literal routes, routes with path variables and a wildcard.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteLookupBenchmark {
+    private static final String[] RESOURCES = {"books", "users", "authors", "orders", "invoices", "reviews", "shelves", "loans"};
+
+    @Param({"/api/v1/books", "/api/v1/orders/1042/items/7", "/files/docs/2025/report.pdf", "/index.html"})
+    public String path;
+
+    private final Router router = new Router();
+
+    @Setup
+    public void setUp() {
+        HTTPServerHandler handler = (request, response) -> response;
+        for (String resource : RESOURCES) {
+            router.add(HTTPMethod.GET, "/api/v1/" + resource, handler);
+            router.add(HTTPMethod.POST, "/api/v1/" + resource, handler);
+            router.add(HTTPMethod.GET, "/api/v1/" + resource + "/{id}", handler);
+            router.add(HTTPMethod.PUT, "/api/v1/" + resource + "/{id}", handler);
+            router.add(HTTPMethod.GET, "/api/v1/" + resource + "/{id}/items/{item}", handler);
+        }
+        router.add(HTTPMethod.GET, "/files/{*path}", handler);
+    }
+
+    /**
+     * Looks the path up; {@code /index.html} matches no route and measures the miss that precedes a static file.
+     */
+    @Benchmark
+    public Router.RouteMatch match() {
+        return router.match(path);
+    }
+}
@@ -0,0 +1,52 @@
+package escuelaing.edu.co.framework.services.implementations;
+
+import escuelaing.edu.co.framework.models.HTTPFrameworkRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Static files from {@code webroot} answered by the request pipeline into a stream that discards them,
+ * either from the static file cache or, with {@code cache=false}, read from disk on every request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StaticFileBenchmark {
+    @Param({"/index.html", "/styles.css", "/images/img.png"})
+    public String file;
+
+    @Param({"true", "false"})
+    public boolean cache;
+
+    private HTTPFrameworkRequest request;
+    private final OutputStream out = OutputStream.nullOutputStream();
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        Pipeline.serveWebroot();
+        HTTPServerImpl.staticCache(cache ? 64L * 1024 * 1024 : 0);
+        request = Pipeline.request(file);
+    }
+
+    @Benchmark
+    public boolean serve() throws IOException {
+        return HTTPServerImpl.handleRequest(request, InputStream.nullInputStream(), out);
+    }
+}
@@ -0,0 +1,25 @@
+package escuelaing.edu.co.framework.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Caches the responses of a {@link GetMapping} method, so repeated requests are answered without calling it.
+ * Responses are cached per route and per value of the {@link RequestParam} and {@link PathVariable}
+ * parameters, which must be the only parameters of the method; only 200 responses are cached.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Cacheable {
+    /**
+     * How long a response is served from the cache, in seconds.
+     */
+    long ttl() default 60;
+
+    /**
+     * The maximum number of cached responses; the oldest one is evicted to make room for a new one.
+     */
+    int maxEntries() default 1000;
+}
@@ -0,0 +1,17 @@
+package escuelaing.edu.co.framework.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Delays creating a bean until it is first used. On a class, the bean is not created at startup; on an
+ * {@link Autowired} field, the field gets a proxy that creates the bean on its first method call, which
+ * also breaks dependency cycles. Proxies require the field type to be an interface; a lazy bean injected
+ * into a field of its class type is created at startup with the bean that needs it.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.TYPE})
+public @interface Lazy {
+}
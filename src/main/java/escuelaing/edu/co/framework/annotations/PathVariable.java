@@ -0,0 +1,16 @@
+package escuelaing.edu.co.framework.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Binds a method parameter to a {@code {name}} segment of the route path.
+ * When no name is given, the parameter name is used, which requires compiling with {@code -parameters}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+public @interface PathVariable {
+    String value() default "";
+}
@@ -5,8 +5,12 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+/**
+ * Names a bean, or on an {@link Autowired} field, picks the implementation with that name when several exist.
+ * Beans are named by this annotation on their class, and otherwise match their simple or fully qualified class name.
+ */
 @Retention(RetentionPolicy.RUNTIME)
-@Target({ElementType.FIELD})
+@Target({ElementType.FIELD, ElementType.TYPE})
 public @interface Qualifier {
     public String value() default "";
 }
@@ -0,0 +1,20 @@
+package escuelaing.edu.co.framework.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Sets how long the server waits for a controller method that returns a {@code CompletableFuture} or
+ * {@code CompletionStage}; requests still pending after it are answered with {@code 504 Gateway Timeout}.
+ * Asynchronous methods without it wait for 30 seconds.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Timeout {
+    /**
+     * The timeout, in milliseconds.
+     */
+    long value();
+}
@@ -13,6 +13,12 @@ public class HttpServerErrors extends Error {
     public static final HttpServerErrors BAD_REQUEST_400 = new HttpServerErrors("400 Bad Request", 400);
     public static final HttpServerErrors FORBIDDEN_403 = new HttpServerErrors("403 Forbidden", 403);
     public static final HttpServerErrors METHOD_NOT_ALLOWED_405 = new HttpServerErrors("405 Method Not Allowed", 405);
+    public static final HttpServerErrors PAYLOAD_TOO_LARGE_413 = new HttpServerErrors("413 Payload Too Large", 413);
+    public static final HttpServerErrors URI_TOO_LONG_414 = new HttpServerErrors("414 URI Too Long", 414);
+    public static final HttpServerErrors RANGE_NOT_SATISFIABLE_416 = new HttpServerErrors("416 Range Not Satisfiable", 416);
+    public static final HttpServerErrors REQUEST_HEADER_FIELDS_TOO_LARGE_431 = new HttpServerErrors("431 Request Header Fields Too Large", 431);
+    public static final HttpServerErrors SERVICE_UNAVAILABLE_503 = new HttpServerErrors("503 Service Unavailable", 503);
+    public static final HttpServerErrors GATEWAY_TIMEOUT_504 = new HttpServerErrors("504 Gateway Timeout", 504);
 
     public final int CODE;
 
@@ -0,0 +1,273 @@
+package escuelaing.edu.co.framework.injector;
+
+import escuelaing.edu.co.framework.annotations.Autowired;
+import escuelaing.edu.co.framework.annotations.Lazy;
+import escuelaing.edu.co.framework.annotations.Qualifier;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * The beans of an application and the {@link Autowired} fields that connect them.
+ * The graph is resolved before any bean is created: interface fields are matched to their implementation,
+ * using {@link Qualifier} names when there are several, and cycles are reported with the path that forms them.
+ * Beans are then created on a fork-join pool as soon as the beans they need exist, so independent beans are
+ * created in parallel. {@link Lazy} beans and fields are left out of startup and created on first use.
+ */
+final class BeanGraph {
+    // Bean constructors often wait on I/O, opening pools or warming caches, so a single core still gets a few workers.
+    private static final ForkJoinPool POOL = new ForkJoinPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * An autowired field and the bean it receives.
+     */
+    private record Dependency(Field field, Class<?> target, boolean lazy) {
+    }
+
+    private static final class Node {
+        private final Class<?> type;
+        private final List<Dependency> dependencies = new ArrayList<>();
+        private CompletableFuture<Object> instance;
+
+        private Node(Class<?> type) {
+            this.type = type;
+        }
+    }
+
+    private final Map<String, Object> beans;
+    private final Function<Class<?>, Set<Class<?>>> implementations;
+    private final Map<Class<?>, Node> nodes = new LinkedHashMap<>();
+    private final List<Node> eager = new ArrayList<>();
+
+    /**
+     * Creates an empty graph.
+     * @param beans the bean instances by class name, shared with the injector; beans already in it are reused
+     * @param implementations finds the classes implementing an interface or extending an abstract class
+     */
+    BeanGraph(Map<String, Object> beans, Function<Class<?>, Set<Class<?>>> implementations) {
+        this.beans = beans;
+        this.implementations = implementations;
+    }
+
+    /**
+     * Adds a bean and, transitively, the beans it depends on.
+     * @param type the bean class
+     * @param startup whether the bean is created by {@link #initialize()}; ignored for {@link Lazy} classes
+     * @throws RuntimeException if a dependency has no implementation, several unqualified ones, or a
+     * {@link Lazy} field does not have an interface type
+     */
+    void add(Class<?> type, boolean startup) {
+        Node node = node(type);
+        if (startup && !type.isAnnotationPresent(Lazy.class)) {
+            eager.add(node);
+        }
+    }
+
+    private Node node(Class<?> type) {
+        Node node = nodes.get(type);
+        if (node != null) {
+            return node;
+        }
+        node = new Node(type);
+        nodes.put(type, node);
+        for (Field field : type.getDeclaredFields()) {
+            if (!field.isAnnotationPresent(Autowired.class)) {
+                continue;
+            }
+            Class<?> target = resolve(field);
+            boolean lazyField = field.isAnnotationPresent(Lazy.class);
+            if (lazyField && !field.getType().isInterface()) {
+                throw new RuntimeException("@Lazy field " + field + " must have an interface type");
+            }
+            boolean lazy = field.getType().isInterface() && (lazyField || target.isAnnotationPresent(Lazy.class));
+            node.dependencies.add(new Dependency(field, target, lazy));
+            node(target);
+        }
+        return node;
+    }
+
+    /**
+     * Returns the class of the bean an autowired field receives.
+     */
+    private Class<?> resolve(Field field) {
+        Class<?> type = field.getType();
+        if (!type.isInterface() && !Modifier.isAbstract(type.getModifiers())) {
+            return type;
+        }
+        List<Class<?>> candidates = new ArrayList<>();
+        for (Class<?> c : implementations.apply(type)) {
+            if (!c.isInterface() && !Modifier.isAbstract(c.getModifiers())) {
+                candidates.add(c);
+            }
+        }
+        Qualifier qualifier = field.getAnnotation(Qualifier.class);
+        if (qualifier != null && !qualifier.value().isEmpty()) {
+            candidates.removeIf(c -> !matches(c, qualifier.value()));
+            if (candidates.isEmpty()) {
+                throw new RuntimeException("No Implementations found for: " + type.getName() + " qualified as '" + qualifier.value() + "'");
+            }
+        }
+        if (candidates.isEmpty()) {
+            throw new RuntimeException("No Implementations found for: " + type.getName());
+        }
+        if (candidates.size() > 1) {
+            throw new RuntimeException("Multiple Implementations found for: " + type.getName() + ". Please specify which one to use with @Qualifier.");
+        }
+        return candidates.get(0);
+    }
+
+    private static boolean matches(Class<?> c, String name) {
+        Qualifier qualifier = c.getAnnotation(Qualifier.class);
+        if (qualifier != null && !qualifier.value().isEmpty()) {
+            return qualifier.value().equals(name);
+        }
+        return name.equalsIgnoreCase(c.getSimpleName()) || name.equals(c.getName());
+    }
+
+    /**
+     * Fails if beans need each other to be created. Lazy fields do not count, since they are filled with a proxy.
+     * @throws RuntimeException naming the beans that form the cycle
+     */
+    void checkCycles() {
+        Map<Node, Boolean> visited = new LinkedHashMap<>();
+        for (Node node : nodes.values()) {
+            visit(node, visited, new ArrayList<>());
+        }
+    }
+
+    /**
+     * Depth-first search where a node mapped to false is on the current path and true is finished.
+     */
+    private void visit(Node node, Map<Node, Boolean> visited, List<Node> path) {
+        Boolean state = visited.get(node);
+        if (Boolean.TRUE.equals(state)) {
+            return;
+        }
+        path.add(node);
+        if (Boolean.FALSE.equals(state)) {
+            StringBuilder cycle = new StringBuilder();
+            for (Node step : path.subList(path.indexOf(node), path.size())) {
+                cycle.append(cycle.length() == 0 ? "" : " -> ").append(step.type.getName());
+            }
+            throw new RuntimeException("Dependency cycle: " + cycle + ". Mark one of the fields @Lazy to break it.");
+        }
+        visited.put(node, false);
+        for (Dependency dependency : node.dependencies) {
+            if (!dependency.lazy) {
+                visit(nodes.get(dependency.target), visited, path);
+            }
+        }
+        visited.put(node, true);
+        path.remove(path.size() - 1);
+    }
+
+    /**
+     * Creates every startup bean and the beans they need, each one as soon as its dependencies exist.
+     * @throws RuntimeException if a bean cannot be created
+     */
+    void initialize() {
+        List<CompletableFuture<Object>> created = new ArrayList<>();
+        for (Node node : eager) {
+            created.add(instance(node));
+        }
+        join(CompletableFuture.allOf(created.toArray(new CompletableFuture[0])));
+    }
+
+    /**
+     * Returns a bean, creating it and what it needs if it does not exist yet.
+     */
+    Object get(Class<?> type) {
+        CompletableFuture<Object> instance;
+        synchronized (this) {
+            instance = instance(node(type));
+        }
+        return join(instance);
+    }
+
+    private synchronized CompletableFuture<Object> instance(Node node) {
+        if (node.instance != null) {
+            return node.instance;
+        }
+        Object existing = beans.get(node.type.getName());
+        if (existing != null) {
+            node.instance = CompletableFuture.completedFuture(existing);
+            return node.instance;
+        }
+        List<CompletableFuture<Object>> dependencies = new ArrayList<>();
+        for (Dependency dependency : node.dependencies) {
+            if (!dependency.lazy) {
+                dependencies.add(instance(nodes.get(dependency.target)));
+            }
+        }
+        node.instance = CompletableFuture.allOf(dependencies.toArray(new CompletableFuture[0]))
+                .thenApplyAsync(ignored -> create(node), POOL);
+        return node.instance;
+    }
+
+    private Object create(Node node) {
+        Object bean;
+        try {
+            bean = node.type.getDeclaredConstructor().newInstance();
+            for (Dependency dependency : node.dependencies) {
+                Object value = dependency.lazy ? proxy(dependency) : instance(nodes.get(dependency.target)).join();
+                dependency.field.setAccessible(true);
+                dependency.field.set(bean, value);
+            }
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException("Cannot create bean " + node.type.getName(), e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Cannot create bean " + node.type.getName(), e);
+        }
+        beans.put(node.type.getName(), bean);
+        return bean;
+    }
+
+    /**
+     * Returns an implementation of the field type that creates the bean on its first call and then delegates to it.
+     */
+    private Object proxy(Dependency dependency) {
+        Class<?> type = dependency.field.getType();
+        InvocationHandler handler = new InvocationHandler() {
+            private volatile Object target;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                Object bean = target;
+                if (bean == null) {
+                    bean = get(dependency.target);
+                    target = bean;
+                }
+                try {
+                    return method.invoke(bean, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        };
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object join(CompletableFuture<?> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package escuelaing.edu.co.framework.injector;
+
+import escuelaing.edu.co.framework.models.HTTPMethod;
+import escuelaing.edu.co.framework.processor.ComponentIndexProcessor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The components, controllers and routes of an application, read from the indexes that
+ * {@link ComponentIndexProcessor} writes at compile time. Every index on the classpath is read and only the
+ * entries under the application package are kept, which is what scanning that package would find. An application
+ * whose package appears in no index, e.g. one compiled without the processor next to the framework's own index,
+ * gets no index and is scanned.
+ */
+final class ComponentIndex {
+    private static final Logger logger = Logger.getLogger(ComponentIndex.class.getName());
+
+    /**
+     * A controller method mapped to a route.
+     */
+    record Route(HTTPMethod method, String path, Method handler) {
+    }
+
+    private final Set<Class<?>> components = new LinkedHashSet<>();
+    private final Set<Class<?>> autowired = new LinkedHashSet<>();
+    private final Set<Class<?>> controllers = new LinkedHashSet<>();
+    private final Map<Class<?>, List<Route>> routes = new LinkedHashMap<>();
+
+    private ComponentIndex() {
+    }
+
+    /**
+     * Loads the index entries of a package.
+     * @param loader the class loader holding the application
+     * @param packageName the application package; entries of classes outside it are ignored
+     * @return the index, or null if no index has entries for the package or it refers to classes or methods
+     *         that no longer exist
+     */
+    static ComponentIndex load(ClassLoader loader, String packageName) {
+        String prefix = packageName.isEmpty() ? "" : packageName + ".";
+        ComponentIndex index = new ComponentIndex();
+        boolean found = false;
+        try {
+            Enumeration<URL> resources = loader.getResources(ComponentIndexProcessor.INDEX);
+            while (resources.hasMoreElements()) {
+                URL resource = resources.nextElement();
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(resource.openStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (!line.isEmpty() && !line.startsWith("#")) {
+                            found |= index.add(line.split("\t", -1), prefix, loader);
+                        }
+                    }
+                }
+            }
+        } catch (IOException | ReflectiveOperationException | RuntimeException e) {
+            logger.log(Level.WARNING, "Ignoring stale or unreadable component index, scanning " + packageName + " instead", e);
+            return null;
+        }
+        return found ? index : null;
+    }
+
+    /**
+     * Adds an index entry if its class belongs to the application package.
+     * @return true if the entry was kept
+     */
+    private boolean add(String[] entry, String prefix, ClassLoader loader) throws ReflectiveOperationException {
+        String className = entry[0].equals("route") ? entry[3] : entry[1];
+        if (!className.startsWith(prefix)) {
+            return false;
+        }
+        Class<?> type = Class.forName(className, false, loader);
+        switch (entry[0]) {
+            case "component" -> components.add(type);
+            case "autowired" -> autowired.add(type);
+            case "controller" -> controllers.add(type);
+            case "route" -> {
+                Method handler = type.getDeclaredMethod(entry[4], parameterTypes(entry[5], loader));
+                routes.computeIfAbsent(type, c -> new ArrayList<>())
+                        .add(new Route(HTTPMethod.valueOf(entry[1]), entry[2], handler));
+            }
+            default -> throw new IllegalArgumentException("Unknown component index entry " + entry[0]);
+        }
+        return true;
+    }
+
+    private static Class<?>[] parameterTypes(String names, ClassLoader loader) throws ClassNotFoundException {
+        if (names.isEmpty()) {
+            return new Class<?>[0];
+        }
+        String[] split = names.split(",");
+        Class<?>[] types = new Class<?>[split.length];
+        for (int i = 0; i < split.length; i++) {
+            types[i] = switch (split[i]) {
+                case "boolean" -> boolean.class;
+                case "byte" -> byte.class;
+                case "char" -> char.class;
+                case "short" -> short.class;
+                case "int" -> int.class;
+                case "long" -> long.class;
+                case "float" -> float.class;
+                case "double" -> double.class;
+                default -> Class.forName(split[i], false, loader);
+            };
+        }
+        return types;
+    }
+
+    Set<Class<?>> components() {
+        return components;
+    }
+
+    Set<Class<?>> autowired() {
+        return autowired;
+    }
+
+    Set<Class<?>> controllers() {
+        return controllers;
+    }
+
+    List<Route> routes(Class<?> controller) {
+        return routes.getOrDefault(controller, List.of());
+    }
+
+    /**
+     * Returns the indexed classes that implement or extend a type.
+     */
+    Set<Class<?>> subTypesOf(Class<?> type) {
+        Set<Class<?>> subTypes = new LinkedHashSet<>();
+        for (Set<Class<?>> classes : List.of(components, autowired, controllers)) {
+            for (Class<?> c : classes) {
+                if (c != type && type.isAssignableFrom(c)) {
+                    subTypes.add(c);
+                }
+            }
+        }
+        return subTypes;
+    }
+}
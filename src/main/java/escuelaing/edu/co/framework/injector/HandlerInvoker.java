@@ -0,0 +1,95 @@
+package escuelaing.edu.co.framework.injector;
+
+import escuelaing.edu.co.framework.models.HTTPFrameworkRequest;
+import escuelaing.edu.co.framework.models.HTTPFrameworkResponse;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+
+/**
+ * A controller method compiled into a single {@link MethodHandle} when its route is registered.
+ * The handle is bound to the controller instance and every parameter is filled by a binder handle that
+ * reads its value from the request, so a call is one {@code invokeExact} with no reflection, no
+ * annotation lookups and no argument arrays.
+ */
+final class HandlerInvoker {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType INVOKER_TYPE =
+            MethodType.methodType(Object.class, HTTPFrameworkRequest.class, HTTPFrameworkResponse.class);
+
+    private final MethodHandle invoker;
+
+    private HandlerInvoker(MethodHandle invoker) {
+        this.invoker = invoker;
+    }
+
+    /**
+     * Compiles a controller method.
+     * @param bean the controller instance the method is called on
+     * @param method the controller method
+     * @return the invoker
+     * @throws RuntimeException if the method cannot be accessed or has a parameter that cannot be bound
+     */
+    static HandlerInvoker compile(Object bean, Method method) {
+        MethodHandle target;
+        try {
+            method.setAccessible(true);
+            target = LOOKUP.unreflect(method).bindTo(bean);
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new RuntimeException("Cannot access handler " + method, e);
+        }
+        Parameter[] parameters = method.getParameters();
+        // Each parameter is replaced by the (request, response) arguments of its binder, last to first so
+        // earlier positions stay put, and the resulting pairs are then merged into a single pair.
+        MethodHandle bound = target;
+        for (int i = parameters.length - 1; i >= 0; i--) {
+            bound = MethodHandles.collectArguments(bound, i, binder(method, parameters[i]));
+        }
+        int[] reorder = new int[parameters.length * 2];
+        for (int i = 0; i < reorder.length; i++) {
+            reorder[i] = i % 2;
+        }
+        MethodHandle invoker = MethodHandles.permuteArguments(bound,
+                MethodType.methodType(bound.type().returnType(), HTTPFrameworkRequest.class, HTTPFrameworkResponse.class), reorder);
+        if (invoker.type().returnType() == void.class) {
+            invoker = MethodHandles.filterReturnValue(invoker, MethodHandles.constant(Object.class, null));
+        }
+        return new HandlerInvoker(invoker.asType(INVOKER_TYPE));
+    }
+
+    /**
+     * Calls the controller method.
+     * @param request the request being answered
+     * @param response the response being built
+     * @return the method's return value, null for void methods
+     */
+    Object invoke(HTTPFrameworkRequest request, HTTPFrameworkResponse response) {
+        try {
+            return (Object) invoker.invokeExact(request, response);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns a handle of type {@code (HTTPFrameworkRequest, HTTPFrameworkResponse)T} producing a parameter value.
+     */
+    private static MethodHandle binder(Method method, Parameter parameter) {
+        if (ParameterBinder.isBound(parameter)) {
+            return ParameterBinder.bind(method, parameter);
+        }
+        Class<?> type = parameter.getType();
+        if (type == HTTPFrameworkRequest.class) {
+            return MethodHandles.dropArguments(MethodHandles.identity(HTTPFrameworkRequest.class), 1, HTTPFrameworkResponse.class);
+        }
+        if (type == HTTPFrameworkResponse.class) {
+            return MethodHandles.dropArguments(MethodHandles.identity(HTTPFrameworkResponse.class), 0, HTTPFrameworkRequest.class);
+        }
+        throw new RuntimeException("Cannot bind parameter " + parameter.getName() + " of " + method);
+    }
+}
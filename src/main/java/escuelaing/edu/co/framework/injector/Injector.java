@@ -1,27 +1,45 @@
 package escuelaing.edu.co.framework.injector;
 
 import escuelaing.edu.co.framework.annotations.*;
+import escuelaing.edu.co.framework.json.JsonSerializer;
+import escuelaing.edu.co.framework.models.HTTPFrameworkResponse;
+import escuelaing.edu.co.framework.models.HTTPMethod;
 import escuelaing.edu.co.framework.services.implementations.HTTPServerImpl;
+import escuelaing.edu.co.framework.services.implementations.Router;
+import escuelaing.edu.co.framework.services.interfaces.HTTPServerHandler;
 import org.reflections.Reflections;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 public class Injector {
-    private final Set<String> registeredPaths;
     private final Map<String, Object> injectedClasses;
-    private final Reflections reflections;
+    private final String packageName;
+    private final ComponentIndex index;
+    private Reflections reflections;
     private static final Logger logger = Logger.getLogger(Injector.class.getName());
+    private static final long DEFAULT_ASYNC_TIMEOUT = 30_000;
     private static Injector instance;
 
-    private Injector(String packageName) {
-        injectedClasses = new HashMap<>();
-        registeredPaths = new HashSet<>();
-        reflections = new Reflections(packageName);
+    private Injector(Class<?> mainClass) {
+        injectedClasses = new ConcurrentHashMap<>();
+        packageName = mainClass.getPackageName();
+        index = ComponentIndex.load(mainClass.getClassLoader(), packageName);
+    }
+
+    /**
+     * Returns the scanner of the application package, created on first use so that applications compiled
+     * with the component index never pay for a classpath scan.
+     */
+    private Reflections reflections() {
+        if (reflections == null) {
+            reflections = new Reflections(packageName);
+        }
+        return reflections;
     }
 
     public static void startApp(Class<?> mainClass, Boolean debug) {
@@ -32,7 +50,7 @@ public class Injector {
         try{
             synchronized (Injector.class) {
                 if (instance == null){
-                    instance = new Injector(mainClass.getPackageName());
+                    instance = new Injector(mainClass);
                 }
                 instance.init(debug);
             }
@@ -51,74 +69,126 @@ public class Injector {
      * main Class (The Main Class should be at the root of the src files).
      * (and Server if @ResteController is detected)
      */
-    private void init(Boolean debug) throws NoSuchMethodException, InvocationTargetException, InstantiationException, IllegalAccessException{
-        solveDependencies();
-        solveControllers();
+    private void init(Boolean debug) {
+        Set<Class<?>> controllers = index != null
+                ? index.controllers() : reflections().getTypesAnnotatedWith(RestController.class);
+        BeanGraph graph = solveDependencies(controllers);
+        solveControllers(graph, controllers);
         if (debug) return;
         System.out.println("Starting Server");
         HTTPServerImpl.start(8080);
     }
 
-    private void solveControllers() throws NoSuchMethodException, InvocationTargetException, InstantiationException, IllegalAccessException {
+    private void solveControllers(BeanGraph graph, Set<Class<?>> controllers) {
         System.out.println("Starting Controller Injection");
-        Set<Class<?>> restControllerAnnotation = reflections.getTypesAnnotatedWith(RestController.class);
-        if (restControllerAnnotation.isEmpty()) {
+        if (controllers.isEmpty()) {
             System.out.println("No RestControllers found");
             return;
         }
-        for (Class<?> c : restControllerAnnotation) {
-            injectClass(c);
-            String rootPath = c.getAnnotation(RestController.class).value();
-            solveGetMappings(c, rootPath);
+        for (Class<?> c : controllers) {
+            Object controller = graph.get(c);
+            if (index != null) {
+                for (ComponentIndex.Route route : index.routes(c)) {
+                    registerMapping(route.handler(), controller, route.method(), route.path());
+                }
+            } else {
+                solveMappings(c, controller, c.getAnnotation(RestController.class).value());
+            }
             System.out.println("Controllers Injection completed");
         }
     }
 
-    private void solveGetMappings(Class<?> c, String path) {
+    private void solveMappings(Class<?> c, Object controller, String path) {
         for (Method m: c.getDeclaredMethods()) {
             if(m.isAnnotationPresent(GetMapping.class)) {
-                registerGetMapping(m, c, path);
+                registerMapping(m, controller, HTTPMethod.GET, path + m.getAnnotation(GetMapping.class).value());
+            }
+            if(m.isAnnotationPresent(PostMapping.class)) {
+                registerMapping(m, controller, HTTPMethod.POST, path + m.getAnnotation(PostMapping.class).value());
+            }
+            if(m.isAnnotationPresent(PutMapping.class)) {
+                registerMapping(m, controller, HTTPMethod.PUT, path + m.getAnnotation(PutMapping.class).value());
+            }
+            if(m.isAnnotationPresent(DeleteMapping.class)) {
+                registerMapping(m, controller, HTTPMethod.DELETE, path + m.getAnnotation(DeleteMapping.class).value());
             }
         }
     }
 
-    private Parameter validateParameters(Method m) {
-        for (Parameter p: m.getParameters()) {
-            if (p.isAnnotationPresent(RequestParam.class)) {
-                return p;
+    /**
+     * Registers a controller method as the handler of a route. Its {@code @PathVariable} parameters must name
+     * variables of the route. The method is compiled into a
+     * {@link HandlerInvoker} bound to the controller instance here, once, so requests only run the invoker.
+     * Text, numbers and booleans are sent as plain text, {@code byte[]} and {@link ByteBuffer} results as raw
+     * {@code application/octet-stream} bytes; any other return value is serialized to JSON.
+     * Methods returning a {@link CompletionStage} answer asynchronously with the value it completes with,
+     * within the route's {@link Timeout}.
+     * Responses of {@link Cacheable} methods are kept in a {@link ResponseCache} of the route.
+     */
+    private void registerMapping(Method m, Object controller, HTTPMethod method, String pathValue) {
+        validatePath(pathValue);
+        ParameterBinder.checkPathVariables(m, pathValue);
+        HandlerInvoker invoker = HandlerInvoker.compile(controller, m);
+        long timeout = m.isAnnotationPresent(Timeout.class) ? m.getAnnotation(Timeout.class).value() : DEFAULT_ASYNC_TIMEOUT;
+        if (timeout <= 0) {
+            throw new RuntimeException("@Timeout must be positive: " + m);
+        }
+        HTTPServerHandler handler = (req, res) -> {
+            Object result = invoker.invoke(req, res);
+            if (result instanceof CompletionStage) {
+                res.setAsync(((CompletionStage<?>) result).thenApply(value -> respond(value, res)), timeout);
+                return res;
             }
+            return respond(result, res);
+        };
+        ResponseCache cache = ResponseCache.of(m, method);
+        if (cache != null) {
+            handler = cache.cached(handler);
+        }
+        switch (method) {
+            case POST -> HTTPServerImpl.post(pathValue, handler);
+            case PUT -> HTTPServerImpl.put(pathValue, handler);
+            case DELETE -> HTTPServerImpl.delete(pathValue, handler);
+            default -> HTTPServerImpl.get(pathValue, handler);
         }
-        return null;
     }
 
-    private void registerGetMapping(Method m, Class<?> c, String path) {
-        String pathValue = path + m.getAnnotation(GetMapping.class).value();
-        validatePath(pathValue);
-        HTTPServerImpl.get(pathValue, (req, res) -> {
-            try {
-                Object result = null;
-                Parameter p = validateParameters(m);
-                if (p != null) {
-
-                    String value = p.getAnnotation(RequestParam.class).value();
-                    String parsedResponse = req.getValue(value) == null ||req.getValue(value).isEmpty() ? p.getAnnotation(RequestParam.class).defaultValue() : req.getValue(value);
-                    result = m.invoke(injectedClasses.get(c.getName()), parsedResponse);
-                } else {
-                    result = m.invoke(injectedClasses.get(c.getName()));
-                }
-                res.setBody(result.toString());
-                return res;
-            } catch (IllegalAccessException | InvocationTargetException e) {
-                throw new RuntimeException(e);
+    /**
+     * Puts the value returned by a controller method into the response.
+     */
+    private static HTTPFrameworkResponse respond(Object result, HTTPFrameworkResponse res) {
+        if (result instanceof HTTPFrameworkResponse) {
+            return (HTTPFrameworkResponse) result;
+        }
+        if (result == null) {
+            return res;
+        }
+        if (result instanceof CharSequence || result instanceof Number || result instanceof Boolean
+                || result instanceof Character) {
+            res.setBody(result.toString());
+        } else if (result instanceof byte[] || result instanceof ByteBuffer) {
+            if (result instanceof byte[]) {
+                res.setBody((byte[]) result);
+            } else {
+                res.setBody((ByteBuffer) result);
+            }
+            if (res.getHeader("Content-Type") == null) {
+                res.setContentType("application/octet-stream");
             }
-        });
-        registeredPaths.add(pathValue);
+        } else {
+            res.setBody(JsonSerializer.serialize(result));
+            if (res.getHeader("Content-Type") == null) {
+                res.setContentType("application/json");
+            }
+        }
+        return res;
     }
 
+    /**
+     * Checks the syntax of a route pattern. Patterns that conflict with an already registered route
+     * are rejected by the router when the route is added, so nothing is checked per request.
+     */
     private void validatePath(String path) {
-        if (registeredPaths.contains(path)) {
-            throw new RuntimeException("Path already registered: " + path);
-        }
         if (!path.startsWith("/")) {
             throw new RuntimeException("Path must start with /");
         }
@@ -128,83 +198,40 @@ public class Injector {
         if (path.contains("//")) {
             throw new RuntimeException("Path must not contain //");
         }
+        Router.validatePattern(path);
     }
 
 
-    private void solveDependencies() throws NoSuchMethodException, InvocationTargetException, InstantiationException, IllegalAccessException{
+    /**
+     * Builds the dependency graph of the components and controllers, checks it for cycles and creates the
+     * beans that are not lazy, independent ones in parallel.
+     */
+    private BeanGraph solveDependencies(Set<Class<?>> controllers) {
         System.out.println("Starting Dependency Injection");
-        for (Class<?> c: reflections.getTypesAnnotatedWith(Component.class)) {
-            injectClass(c);
+        BeanGraph graph = new BeanGraph(injectedClasses, this::implementationsOf);
+        for (Class<?> c: index != null ? index.components() : reflections().getTypesAnnotatedWith(Component.class)) {
+            graph.add(c, true);
         }
-        for (Class<?> c: reflections.getTypesAnnotatedWith(Autowired.class)) {
-            injectClass(c);
+        for (Class<?> c: index != null ? index.autowired() : reflections().getTypesAnnotatedWith(Autowired.class)) {
+            graph.add(c, true);
         }
-        System.out.println("Dependency Injection completed");
-    }
-
-    private List<Field> getAutowiredFields(Class<?> c) {
-        List<Field> fields  = new ArrayList<>();
-        for (Field f: c.getDeclaredFields()) {
-            if (f.isAnnotationPresent(Autowired.class)) {
-                fields.add(f);
-            }
+        for (Class<?> c : controllers) {
+            graph.add(c, true);
         }
-        return fields;
-    }
-
-
-
-
-
-    private Object injectClass(Class<?> c)throws NoSuchMethodException, InvocationTargetException, InstantiationException, IllegalAccessException {
-        if (injectedClasses.containsKey(c.getName())) {
-            return injectedClasses.get(c.getName());
-        }
-        List<Field> fieldsToInject = getAutowiredFields(c);
-        if (fieldsToInject.isEmpty()) {
-            Object result = c.getDeclaredConstructor().newInstance();
-            injectedClasses.put(c.getName(), result);
-            return result;
-        }
-        return injectClass(c, fieldsToInject);
-    }
-    private Object injectClass(Class<?> c, List<Field> fieldsToInject)throws NoSuchMethodException, InvocationTargetException, InstantiationException, IllegalAccessException {
-        Object classInstance = c.getDeclaredConstructor().newInstance();
-        for (Field f: fieldsToInject) {
-            Class<?> fieldType = f.getType();
-            Object fieldInstance;
-            if (injectedClasses.containsKey(fieldType.getName())) {
-                fieldInstance = injectedClasses.get(fieldType.getName());
-            } else {
-                fieldInstance = injectDependency(fieldType);
-            }
-            f.setAccessible(true);
-            try {
-                f.set(classInstance, fieldInstance);
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException(e);
-            }
-        }
-        injectedClasses.put(c.getName(), classInstance);
-        return classInstance;
+        graph.checkCycles();
+        graph.initialize();
+        System.out.println("Dependency Injection completed");
+        return graph;
     }
 
-    private Object injectDependency(Class<?> fieldType)throws NoSuchMethodException, InvocationTargetException, InstantiationException, IllegalAccessException {
-        if (injectedClasses.containsKey(fieldType.getName())) {
-            return injectedClasses.get(fieldType.getName());
-        }
-        if (fieldType.isInterface()) {
+    private Set<Class<?>> implementationsOf(Class<?> type) {
+        Set<Class<?>> implementations = index != null ? index.subTypesOf(type) : Set.of();
+        if (implementations.isEmpty()) {
+            // Implementations without annotations are not indexed.
             @SuppressWarnings("unchecked")
-            Set<Class<?>> implementations = (Set<Class<?>>)(Set<?>) reflections.getSubTypesOf((Class<Object>) fieldType);
-            if (implementations.isEmpty()) {
-                throw new RuntimeException("No Implementations found for: " + fieldType.getName());
-            } if (implementations.size() > 1) {
-                throw new RuntimeException("Multiple Implementations found for: " + fieldType.getName() + ". Please specify which one to use.");
-            }
-            Class<?> implementation = implementations.iterator().next();
-            return injectClass(implementation);
-
+            Set<Class<?>> scanned = (Set<Class<?>>)(Set<?>) reflections().getSubTypesOf((Class<Object>) type);
+            implementations = scanned;
         }
-        return injectClass(fieldType);
+        return implementations;
     }
 }
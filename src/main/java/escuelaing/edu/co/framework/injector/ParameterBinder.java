@@ -0,0 +1,241 @@
+package escuelaing.edu.co.framework.injector;
+
+import escuelaing.edu.co.framework.annotations.PathVariable;
+import escuelaing.edu.co.framework.annotations.RequestParam;
+import escuelaing.edu.co.framework.errors.HttpServerErrors;
+import escuelaing.edu.co.framework.models.HTTPFrameworkRequest;
+import escuelaing.edu.co.framework.models.HTTPFrameworkResponse;
+import escuelaing.edu.co.framework.services.implementations.Router;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Builds the handles that fill controller parameters from the request.
+ * A binder reads the raw text of a query parameter or path variable and converts it with a handle chosen
+ * for the parameter type when the route is registered, so primitives are parsed straight into their
+ * slot without boxing and defaults are parsed only once. Text that cannot be converted answers 400.
+ */
+final class ParameterBinder {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType CONVERTER_TYPE = MethodType.methodType(Object.class, String.class);
+    private static final MethodHandle REQUEST_VALUE;
+    private static final MethodHandle REQUEST_VALUES;
+    private static final MethodHandle PATH_VALUE;
+    private static final MethodHandle PARSE_BOOLEAN;
+    private static final MethodHandle IS_NULL;
+
+    static {
+        try {
+            REQUEST_VALUE = LOOKUP.findStatic(ParameterBinder.class, "requestValue",
+                    MethodType.methodType(String.class, String.class, HTTPFrameworkRequest.class));
+            REQUEST_VALUES = LOOKUP.findStatic(ParameterBinder.class, "requestValues",
+                    MethodType.methodType(List.class, String.class, MethodHandle.class, List.class, HTTPFrameworkRequest.class));
+            PATH_VALUE = LOOKUP.findStatic(ParameterBinder.class, "pathValue",
+                    MethodType.methodType(String.class, String.class, HTTPFrameworkRequest.class));
+            PARSE_BOOLEAN = LOOKUP.findStatic(ParameterBinder.class, "parseBoolean",
+                    MethodType.methodType(boolean.class, String.class));
+            IS_NULL = LOOKUP.findStatic(Objects.class, "isNull", MethodType.methodType(boolean.class, Object.class))
+                    .asType(MethodType.methodType(boolean.class, String.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private ParameterBinder() {
+    }
+
+    /**
+     * Tells whether the parameter is bound from the request text rather than passed by the server.
+     */
+    static boolean isBound(Parameter parameter) {
+        return parameter.isAnnotationPresent(RequestParam.class) || parameter.isAnnotationPresent(PathVariable.class);
+    }
+
+    /**
+     * Returns the name of the query parameter or path variable an annotated parameter is bound from.
+     * An empty annotation value falls back to the parameter name, which needs classes compiled with
+     * {@code -parameters}; without it the name would be {@code argN}, so the parameter is rejected.
+     * @throws RuntimeException if the annotation has no value and the parameter name was not compiled in
+     */
+    static String name(Parameter parameter) {
+        RequestParam requestParam = parameter.getAnnotation(RequestParam.class);
+        String name = requestParam != null ? requestParam.value() : parameter.getAnnotation(PathVariable.class).value();
+        if (!name.isEmpty()) {
+            return name;
+        }
+        if (!parameter.isNamePresent()) {
+            throw new RuntimeException("Parameter " + parameter + " of " + parameter.getDeclaringExecutable()
+                    + " needs a name in its annotation, or the class must be compiled with -parameters");
+        }
+        return parameter.getName();
+    }
+
+    /**
+     * Checks that every {@code @PathVariable} parameter of a controller method names a variable of its route,
+     * so a typo fails when the route is registered instead of binding null on every request.
+     * @param method the controller method
+     * @param pattern the route pattern the method is registered for
+     * @throws RuntimeException if a path variable is not captured by the pattern
+     */
+    static void checkPathVariables(Method method, String pattern) {
+        List<String> variables = Router.variableNames(pattern);
+        for (Parameter parameter : method.getParameters()) {
+            if (parameter.isAnnotationPresent(PathVariable.class) && !parameter.isAnnotationPresent(RequestParam.class)) {
+                String name = name(parameter);
+                if (!variables.contains(name)) {
+                    throw new RuntimeException("@PathVariable " + name + " of " + method + " is not a variable of " + pattern);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a handle of type {@code (HTTPFrameworkRequest, HTTPFrameworkResponse)T} producing the value of an
+     * annotated parameter. Missing values take the default, or null, or the empty String for String parameters;
+     * missing primitives without a default answer 400. {@code List} parameters collect every repeated value.
+     * @throws RuntimeException if the parameter type cannot be converted or its default is invalid
+     */
+    static MethodHandle bind(Method method, Parameter parameter) {
+        String name = name(parameter);
+        String defaultValue;
+        MethodHandle raw;
+        RequestParam requestParam = parameter.getAnnotation(RequestParam.class);
+        if (requestParam != null) {
+            defaultValue = requestParam.defaultValue();
+            raw = REQUEST_VALUE;
+        } else {
+            defaultValue = "";
+            raw = PATH_VALUE;
+        }
+        Class<?> type = parameter.getType();
+        MethodHandle binder;
+        if (type == List.class && requestParam != null) {
+            MethodHandle converter = converter(method, elementType(parameter)).asType(CONVERTER_TYPE);
+            List<Object> defaults = new ArrayList<>();
+            if (!defaultValue.isEmpty()) {
+                for (String value : defaultValue.split(",")) {
+                    defaults.add(parseDefault(method, converter, value.trim()));
+                }
+            }
+            binder = MethodHandles.insertArguments(REQUEST_VALUES, 0, name, converter, Collections.unmodifiableList(defaults));
+        } else {
+            MethodHandle converter = converter(method, type);
+            MethodHandle missing;
+            if (!defaultValue.isEmpty()) {
+                missing = MethodHandles.constant(type, parseDefault(method, converter.asType(CONVERTER_TYPE), defaultValue));
+            } else if (type.isPrimitive()) {
+                missing = badRequest(type);
+            } else {
+                missing = MethodHandles.constant(type, type == String.class ? "" : null);
+            }
+            missing = MethodHandles.dropArguments(missing, 0, String.class);
+            MethodHandle value = MethodHandles.guardWithTest(IS_NULL, missing, converter);
+            binder = MethodHandles.collectArguments(value, 0, MethodHandles.insertArguments(raw, 0, name));
+        }
+        return MethodHandles.dropArguments(binder, 1, HTTPFrameworkResponse.class);
+    }
+
+    /**
+     * Returns a handle of type {@code (String)T} parsing the text of a value, which throws
+     * {@link HttpServerErrors#BAD_REQUEST_400} when the text is not a valid T.
+     */
+    private static MethodHandle converter(Method method, Class<?> type) {
+        MethodHandle parser;
+        try {
+            if (type == String.class) {
+                return MethodHandles.identity(String.class);
+            } else if (type == int.class || type == Integer.class) {
+                parser = LOOKUP.findStatic(Integer.class, "parseInt", MethodType.methodType(int.class, String.class));
+            } else if (type == long.class || type == Long.class) {
+                parser = LOOKUP.findStatic(Long.class, "parseLong", MethodType.methodType(long.class, String.class));
+            } else if (type == double.class || type == Double.class) {
+                parser = LOOKUP.findStatic(Double.class, "parseDouble", MethodType.methodType(double.class, String.class));
+            } else if (type == boolean.class || type == Boolean.class) {
+                parser = PARSE_BOOLEAN;
+            } else if (type == UUID.class) {
+                parser = LOOKUP.findStatic(UUID.class, "fromString", MethodType.methodType(UUID.class, String.class));
+            } else if (type.isEnum()) {
+                parser = MethodHandles.insertArguments(LOOKUP.findStatic(Enum.class, "valueOf",
+                        MethodType.methodType(Enum.class, Class.class, String.class)), 0, type);
+            } else {
+                throw new RuntimeException("Unsupported parameter type " + type.getName() + " in " + method);
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Cannot convert parameters of type " + type.getName(), e);
+        }
+        parser = parser.asType(MethodType.methodType(type, String.class));
+        // NumberFormatException and the errors of UUID.fromString and Enum.valueOf are all IllegalArgumentExceptions.
+        return MethodHandles.catchException(parser, IllegalArgumentException.class,
+                MethodHandles.dropArguments(badRequest(type), 0, IllegalArgumentException.class, String.class));
+    }
+
+    private static Class<?> elementType(Parameter parameter) {
+        Type type = parameter.getParameterizedType();
+        if (type instanceof ParameterizedType) {
+            Type argument = ((ParameterizedType) type).getActualTypeArguments()[0];
+            if (argument instanceof Class) {
+                return (Class<?>) argument;
+            }
+        }
+        return String.class;
+    }
+
+    private static Object parseDefault(Method method, MethodHandle converter, String value) {
+        try {
+            return (Object) converter.invokeExact(value);
+        } catch (Throwable e) {
+            throw new RuntimeException("Invalid default value '" + value + "' in " + method, e);
+        }
+    }
+
+    /**
+     * Returns a handle of type {@code ()T} that throws {@link HttpServerErrors#BAD_REQUEST_400}.
+     */
+    private static MethodHandle badRequest(Class<?> type) {
+        return MethodHandles.insertArguments(MethodHandles.throwException(type, HttpServerErrors.class),
+                0, HttpServerErrors.BAD_REQUEST_400);
+    }
+
+    private static String requestValue(String name, HTTPFrameworkRequest request) {
+        String value = request.getValue(name);
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private static String pathValue(String name, HTTPFrameworkRequest request) {
+        return request.getPathVariable(name);
+    }
+
+    private static List<Object> requestValues(String name, MethodHandle converter, List<Object> defaults,
+                                              HTTPFrameworkRequest request) throws Throwable {
+        List<String> values = request.getValues(name);
+        if (values.isEmpty()) {
+            return defaults;
+        }
+        List<Object> converted = new ArrayList<>(values.size());
+        for (String value : values) {
+            converted.add((Object) converter.invokeExact(value));
+        }
+        return converted;
+    }
+
+    private static boolean parseBoolean(String value) {
+        if ("true".equalsIgnoreCase(value)) {
+            return true;
+        }
+        if ("false".equalsIgnoreCase(value)) {
+            return false;
+        }
+        throw new IllegalArgumentException("Not a boolean: " + value);
+    }
+}
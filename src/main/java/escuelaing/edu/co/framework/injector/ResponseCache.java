@@ -0,0 +1,155 @@
+package escuelaing.edu.co.framework.injector;
+
+import escuelaing.edu.co.framework.annotations.Cacheable;
+import escuelaing.edu.co.framework.annotations.PathVariable;
+import escuelaing.edu.co.framework.annotations.RequestParam;
+import escuelaing.edu.co.framework.models.HTTPFrameworkRequest;
+import escuelaing.edu.co.framework.models.HTTPFrameworkResponse;
+import escuelaing.edu.co.framework.models.HTTPMethod;
+import escuelaing.edu.co.framework.services.interfaces.HTTPServerHandler;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The responses of a {@link Cacheable} route, keyed on the values of its bound parameters.
+ * Entries hold the encoded body, so a hit copies no text and serializes nothing. Entries expire after the
+ * configured time and, when the cache is full, the oldest entry is evicted, keeping the map bounded.
+ * Asynchronous responses are stored when they complete. Lookups and stores never lock; concurrent misses
+ * on the same key may each call the handler once.
+ */
+final class ResponseCache {
+
+    private record Entry(List<Object> key, long expires, int status, Map<String, String> headers, byte[] body) {
+    }
+
+    private final String[] names;
+    private final boolean[] pathVariables;
+    private final boolean[] lists;
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final Map<List<Object>, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private ResponseCache(Method method, Cacheable cacheable) {
+        Parameter[] parameters = method.getParameters();
+        names = new String[parameters.length];
+        pathVariables = new boolean[parameters.length];
+        lists = new boolean[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            names[i] = ParameterBinder.name(parameters[i]);
+            pathVariables[i] = parameters[i].isAnnotationPresent(PathVariable.class);
+            lists[i] = parameters[i].getType() == List.class;
+        }
+        ttlNanos = TimeUnit.SECONDS.toNanos(cacheable.ttl());
+        maxEntries = cacheable.maxEntries();
+    }
+
+    /**
+     * Creates the cache of a controller method if it is {@link Cacheable}.
+     * @param method the controller method
+     * @param httpMethod the method of the route it is mapped to
+     * @return the cache, or null if the method is not cacheable
+     * @throws RuntimeException if the route is not a GET route, the method takes parameters that are not
+     * {@link RequestParam} or {@link PathVariable}, or the ttl or size is not positive
+     */
+    static ResponseCache of(Method method, HTTPMethod httpMethod) {
+        Cacheable cacheable = method.getAnnotation(Cacheable.class);
+        if (cacheable == null) {
+            return null;
+        }
+        if (httpMethod != HTTPMethod.GET) {
+            throw new RuntimeException("@Cacheable is only supported on @GetMapping methods: " + method);
+        }
+        if (cacheable.ttl() <= 0 || cacheable.maxEntries() <= 0) {
+            throw new RuntimeException("@Cacheable ttl and maxEntries must be positive: " + method);
+        }
+        for (Parameter parameter : method.getParameters()) {
+            if (!ParameterBinder.isBound(parameter)) {
+                throw new RuntimeException("@Cacheable methods can only take @RequestParam and @PathVariable parameters: " + method);
+            }
+        }
+        return new ResponseCache(method, cacheable);
+    }
+
+    /**
+     * Wraps the handler of the route so it answers from the cache when it can.
+     */
+    HTTPServerHandler cached(HTTPServerHandler handler) {
+        return (req, res) -> {
+            List<Object> key = key(req);
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expires - System.nanoTime() > 0) {
+                    res.setStatus(entry.status);
+                    entry.headers.forEach(res::setHeader);
+                    res.setBody(entry.body);
+                    return res;
+                }
+                entries.remove(key, entry);
+            }
+            HTTPFrameworkResponse response = handler.handleRequest(req, res);
+            if (response.getAsync() != null) {
+                response.setAsync(response.getAsync().thenApply(completed -> {
+                    if (completed.getStatus() == 200) {
+                        store(key, completed);
+                    }
+                    return completed;
+                }), response.getAsyncTimeout());
+            } else if (response.getStatus() == 200) {
+                store(key, response);
+            }
+            return response;
+        };
+    }
+
+    /**
+     * Returns the raw values the parameters are bound from; values that convert alike but are written
+     * differently, like {@code 7} and {@code 07}, are cached separately.
+     */
+    private List<Object> key(HTTPFrameworkRequest req) {
+        Object[] values = new Object[names.length];
+        for (int i = 0; i < names.length; i++) {
+            if (pathVariables[i]) {
+                values[i] = req.getPathVariable(names[i]);
+            } else if (lists[i]) {
+                values[i] = req.getValues(names[i]);
+            } else {
+                values[i] = req.getValue(names[i]);
+            }
+        }
+        return Arrays.asList(values);
+    }
+
+    private void store(List<Object> key, HTTPFrameworkResponse response) {
+        ByteBuffer body = response.getBodyBuffer();
+        byte[] bytes = new byte[body.remaining()];
+        body.get(bytes);
+        Entry entry = new Entry(key, System.nanoTime() + ttlNanos, response.getStatus(), Map.copyOf(response.getHeaders()), bytes);
+        entries.put(key, entry);
+        insertionOrder.add(entry);
+        // The queue also holds entries that were replaced or expired; it is trimmed with the map so it stays bounded.
+        int inQueue = queued.incrementAndGet();
+        while (entries.size() > maxEntries || inQueue > 2 * maxEntries) {
+            Entry oldest = insertionOrder.poll();
+            if (oldest == null) {
+                break;
+            }
+            inQueue = queued.decrementAndGet();
+            entries.remove(oldest.key, oldest);
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+}
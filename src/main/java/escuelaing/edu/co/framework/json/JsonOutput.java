@@ -0,0 +1,167 @@
+package escuelaing.edu.co.framework.json;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A growable byte buffer that JSON is written into as UTF-8.
+ * Strings are escaped and encoded char by char straight into the buffer, and integers are written
+ * digit by digit, so serializing a value does not build any intermediate String.
+ */
+final class JsonOutput {
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.ISO_8859_1);
+    static final int MAX_DEPTH = 64;
+
+    private byte[] bytes;
+    private int count;
+    private int depth;
+
+    JsonOutput(int capacity) {
+        this.bytes = new byte[capacity];
+    }
+
+    /**
+     * Enters an object or array, failing on structures too deep to be anything but a reference cycle.
+     */
+    void enter() {
+        if (++depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("JSON nesting deeper than " + MAX_DEPTH + " levels, the value may contain a cycle");
+        }
+    }
+
+    void exit() {
+        depth--;
+    }
+
+    void write(byte b) {
+        ensure(1);
+        bytes[count++] = b;
+    }
+
+    void write(byte[] b) {
+        ensure(b.length);
+        System.arraycopy(b, 0, bytes, count, b.length);
+        count += b.length;
+    }
+
+    /**
+     * Writes text known to be plain ASCII without escaping, such as numbers.
+     */
+    void writeAscii(String s) {
+        int length = s.length();
+        ensure(length);
+        for (int i = 0; i < length; i++) {
+            bytes[count++] = (byte) s.charAt(i);
+        }
+    }
+
+    void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            write(MIN_LONG);
+            return;
+        }
+        ensure(20);
+        if (value < 0) {
+            bytes[count++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        int end = count + digits;
+        for (int i = end - 1; i >= count; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        count = end;
+    }
+
+    void writeDouble(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            // JSON has no representation for them.
+            writeAscii("null");
+        } else if (value == (long) value && Math.abs(value) < 1e15) {
+            writeLong((long) value);
+        } else {
+            writeAscii(Double.toString(value));
+        }
+    }
+
+    /**
+     * Writes a quoted JSON string, escaping quotes, backslashes and control characters.
+     */
+    void writeString(CharSequence s) {
+        int length = s.length();
+        ensure(length + 2);
+        bytes[count++] = '"';
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    ensure(1);
+                    bytes[count++] = (byte) c;
+                } else {
+                    escape(c);
+                }
+            } else if (c < 0x800) {
+                ensure(2);
+                bytes[count++] = (byte) (0xC0 | c >> 6);
+                bytes[count++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                ensure(4);
+                bytes[count++] = (byte) (0xF0 | codePoint >> 18);
+                bytes[count++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                bytes[count++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                bytes[count++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                // A lone surrogate cannot be encoded as UTF-8.
+                escape(c);
+            } else {
+                ensure(3);
+                bytes[count++] = (byte) (0xE0 | c >> 12);
+                bytes[count++] = (byte) (0x80 | c >> 6 & 0x3F);
+                bytes[count++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        ensure(1);
+        bytes[count++] = '"';
+    }
+
+    private void escape(char c) {
+        ensure(6);
+        bytes[count++] = '\\';
+        switch (c) {
+            case '"' -> bytes[count++] = '"';
+            case '\\' -> bytes[count++] = '\\';
+            case '\n' -> bytes[count++] = 'n';
+            case '\r' -> bytes[count++] = 'r';
+            case '\t' -> bytes[count++] = 't';
+            case '\b' -> bytes[count++] = 'b';
+            case '\f' -> bytes[count++] = 'f';
+            default -> {
+                bytes[count++] = 'u';
+                bytes[count++] = HEX[c >> 12 & 0xF];
+                bytes[count++] = HEX[c >> 8 & 0xF];
+                bytes[count++] = HEX[c >> 4 & 0xF];
+                bytes[count++] = HEX[c & 0xF];
+            }
+        }
+    }
+
+    /**
+     * Returns the written bytes without copying them.
+     */
+    ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(bytes, 0, count);
+    }
+
+    private void ensure(int extra) {
+        if (count + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, count + extra));
+        }
+    }
+}
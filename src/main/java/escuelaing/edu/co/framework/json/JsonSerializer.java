@@ -0,0 +1,356 @@
+package escuelaing.edu.co.framework.json;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Serializes controller return values to JSON.
+ * The writer for a class is generated the first time a value of that class is serialized and cached in a
+ * {@link ClassValue}: records are written through their component accessors and other objects through
+ * their public getters and fields, each compiled into a {@link MethodHandle} with its property name
+ * encoded up front. Values are written straight into a byte buffer as UTF-8.
+ * <ul>
+ *     <li>Strings, characters, enums and other {@code java.*} value types become strings.</li>
+ *     <li>Numbers and booleans are written as such; NaN and infinities become null.</li>
+ *     <li>Arrays, collections and other iterables become arrays; maps become objects keyed by their keys' text.</li>
+ *     <li>{@link Optional} is written as its value or null.</li>
+ * </ul>
+ */
+public final class JsonSerializer {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final byte[] NULL = bytes("null");
+    private static final byte[] TRUE = bytes("true");
+    private static final byte[] FALSE = bytes("false");
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * Writes one value of a given class.
+     */
+    @FunctionalInterface
+    interface ValueWriter {
+        void write(JsonOutput out, Object value);
+    }
+
+    private static final ClassValue<ValueWriter> WRITERS = new ClassValue<>() {
+        @Override
+        protected ValueWriter computeValue(Class<?> type) {
+            return writerFor(type);
+        }
+    };
+
+    private JsonSerializer() {
+    }
+
+    /**
+     * Serializes a value to JSON.
+     * @param value the value, which may be null
+     * @return a buffer over the UTF-8 encoded JSON
+     * @throws IllegalArgumentException if the value nests too deeply, as values with reference cycles do
+     */
+    public static ByteBuffer serialize(Object value) {
+        JsonOutput out = new JsonOutput(INITIAL_CAPACITY);
+        write(out, value);
+        return out.toByteBuffer();
+    }
+
+    static void write(JsonOutput out, Object value) {
+        if (value == null) {
+            out.write(NULL);
+        } else {
+            WRITERS.get(value.getClass()).write(out, value);
+        }
+    }
+
+    private static ValueWriter writerFor(Class<?> type) {
+        if (CharSequence.class.isAssignableFrom(type)) {
+            return (out, value) -> out.writeString((CharSequence) value);
+        }
+        if (type == Integer.class || type == Long.class || type == Short.class || type == Byte.class) {
+            return (out, value) -> out.writeLong(((Number) value).longValue());
+        }
+        if (type == Double.class || type == Float.class) {
+            return (out, value) -> out.writeDouble(((Number) value).doubleValue());
+        }
+        if (Number.class.isAssignableFrom(type)) {
+            // BigDecimal, BigInteger and the atomic numbers print themselves as JSON numbers.
+            return (out, value) -> out.writeAscii(value.toString());
+        }
+        if (type == Boolean.class) {
+            return (out, value) -> out.write((Boolean) value ? TRUE : FALSE);
+        }
+        if (type == Character.class || type.isEnum() || type.getSuperclass() != null && type.getSuperclass().isEnum()) {
+            return (out, value) -> out.writeString(value instanceof Enum ? ((Enum<?>) value).name() : value.toString());
+        }
+        if (Optional.class == type) {
+            return (out, value) -> write(out, ((Optional<?>) value).orElse(null));
+        }
+        if (type.isArray()) {
+            return arrayWriter(type.getComponentType());
+        }
+        if (Map.class.isAssignableFrom(type)) {
+            return JsonSerializer::writeMap;
+        }
+        if (Iterable.class.isAssignableFrom(type)) {
+            return JsonSerializer::writeIterable;
+        }
+        if (type.isRecord()) {
+            return recordWriter(type);
+        }
+        String name = type.getName();
+        if (name.startsWith("java.") || name.startsWith("javax.")) {
+            // Dates, times, UUIDs, URIs, paths and similar value types are best represented by their text.
+            return (out, value) -> out.writeString(value.toString());
+        }
+        return beanWriter(type);
+    }
+
+    private static ValueWriter arrayWriter(Class<?> component) {
+        if (component == int.class) {
+            return (out, value) -> {
+                int[] array = (int[]) value;
+                out.write((byte) '[');
+                for (int i = 0; i < array.length; i++) {
+                    if (i > 0) {
+                        out.write((byte) ',');
+                    }
+                    out.writeLong(array[i]);
+                }
+                out.write((byte) ']');
+            };
+        }
+        if (component == long.class) {
+            return (out, value) -> {
+                long[] array = (long[]) value;
+                out.write((byte) '[');
+                for (int i = 0; i < array.length; i++) {
+                    if (i > 0) {
+                        out.write((byte) ',');
+                    }
+                    out.writeLong(array[i]);
+                }
+                out.write((byte) ']');
+            };
+        }
+        if (component == double.class) {
+            return (out, value) -> {
+                double[] array = (double[]) value;
+                out.write((byte) '[');
+                for (int i = 0; i < array.length; i++) {
+                    if (i > 0) {
+                        out.write((byte) ',');
+                    }
+                    out.writeDouble(array[i]);
+                }
+                out.write((byte) ']');
+            };
+        }
+        if (component == char.class) {
+            return (out, value) -> out.writeString(new String((char[]) value));
+        }
+        if (component.isPrimitive()) {
+            // The remaining primitive arrays are rare enough to go through reflection.
+            return (out, value) -> {
+                int length = java.lang.reflect.Array.getLength(value);
+                out.write((byte) '[');
+                for (int i = 0; i < length; i++) {
+                    if (i > 0) {
+                        out.write((byte) ',');
+                    }
+                    write(out, java.lang.reflect.Array.get(value, i));
+                }
+                out.write((byte) ']');
+            };
+        }
+        return (out, value) -> {
+            Object[] array = (Object[]) value;
+            out.enter();
+            out.write((byte) '[');
+            for (int i = 0; i < array.length; i++) {
+                if (i > 0) {
+                    out.write((byte) ',');
+                }
+                write(out, array[i]);
+            }
+            out.write((byte) ']');
+            out.exit();
+        };
+    }
+
+    private static void writeIterable(JsonOutput out, Object value) {
+        out.enter();
+        out.write((byte) '[');
+        if (value instanceof List && value instanceof java.util.RandomAccess) {
+            List<?> list = (List<?>) value;
+            for (int i = 0, size = list.size(); i < size; i++) {
+                if (i > 0) {
+                    out.write((byte) ',');
+                }
+                write(out, list.get(i));
+            }
+        } else {
+            Iterator<?> iterator = ((Iterable<?>) value).iterator();
+            boolean first = true;
+            while (iterator.hasNext()) {
+                if (!first) {
+                    out.write((byte) ',');
+                }
+                first = false;
+                write(out, iterator.next());
+            }
+        }
+        out.write((byte) ']');
+        out.exit();
+    }
+
+    private static void writeMap(JsonOutput out, Object value) {
+        out.enter();
+        out.write((byte) '{');
+        boolean first = true;
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+            if (!first) {
+                out.write((byte) ',');
+            }
+            first = false;
+            Object key = entry.getKey();
+            out.writeString(key instanceof Enum ? ((Enum<?>) key).name() : String.valueOf(key));
+            out.write((byte) ':');
+            write(out, entry.getValue());
+        }
+        out.write((byte) '}');
+        out.exit();
+    }
+
+    private static ValueWriter recordWriter(Class<?> type) {
+        Map<String, MethodHandle> properties = new LinkedHashMap<>();
+        for (RecordComponent component : type.getRecordComponents()) {
+            properties.put(component.getName(), accessor(component.getAccessor()));
+        }
+        return objectWriter(properties);
+    }
+
+    /**
+     * Writes an object through its public getters ({@code getX}, or {@code isX} for booleans) and public
+     * fields. Properties backed by a declared field come first, in declaration order, the rest follow by name.
+     */
+    private static ValueWriter beanWriter(Class<?> type) {
+        Map<String, MethodHandle> getters = new TreeMap<>();
+        for (Method method : type.getMethods()) {
+            String property = propertyName(method);
+            if (property != null) {
+                getters.put(property, accessor(method));
+            }
+        }
+        for (Field field : type.getFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) && !getters.containsKey(field.getName())) {
+                getters.put(field.getName(), fieldAccessor(field));
+            }
+        }
+        List<Class<?>> hierarchy = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            hierarchy.add(0, c);
+        }
+        Map<String, MethodHandle> properties = new LinkedHashMap<>();
+        for (Class<?> c : hierarchy) {
+            for (Field field : c.getDeclaredFields()) {
+                MethodHandle getter = getters.remove(field.getName());
+                if (getter != null) {
+                    properties.put(field.getName(), getter);
+                }
+            }
+        }
+        properties.putAll(getters);
+        return objectWriter(properties);
+    }
+
+    private static ValueWriter objectWriter(Map<String, MethodHandle> properties) {
+        int size = properties.size();
+        byte[][] names = new byte[size][];
+        MethodHandle[] accessors = new MethodHandle[size];
+        int i = 0;
+        for (Map.Entry<String, MethodHandle> property : properties.entrySet()) {
+            JsonOutput name = new JsonOutput(property.getKey().length() + 3);
+            name.write((byte) (i == 0 ? '{' : ','));
+            name.writeString(property.getKey());
+            name.write((byte) ':');
+            ByteBuffer encoded = name.toByteBuffer();
+            names[i] = new byte[encoded.remaining()];
+            encoded.get(names[i]);
+            accessors[i++] = property.getValue();
+        }
+        return (out, value) -> {
+            out.enter();
+            if (size == 0) {
+                out.write((byte) '{');
+            }
+            for (int k = 0; k < size; k++) {
+                out.write(names[k]);
+                Object property;
+                try {
+                    property = (Object) accessors[k].invokeExact(value);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new RuntimeException(e);
+                }
+                write(out, property);
+            }
+            out.write((byte) '}');
+            out.exit();
+        };
+    }
+
+    private static String propertyName(Method method) {
+        if (Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 0
+                || method.getDeclaringClass() == Object.class || method.getReturnType() == void.class) {
+            return null;
+        }
+        String name = method.getName();
+        int prefix;
+        if (name.startsWith("get") && name.length() > 3) {
+            prefix = 3;
+        } else if (name.startsWith("is") && name.length() > 2
+                && (method.getReturnType() == boolean.class || method.getReturnType() == Boolean.class)) {
+            prefix = 2;
+        } else {
+            return null;
+        }
+        return Character.toLowerCase(name.charAt(prefix)) + name.substring(prefix + 1);
+    }
+
+    private static MethodHandle accessor(Method method) {
+        try {
+            method.setAccessible(true);
+            return LOOKUP.unreflect(method).asType(ACCESSOR_TYPE);
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new IllegalArgumentException("Cannot serialize " + method.getDeclaringClass().getName() + " to JSON", e);
+        }
+    }
+
+    private static MethodHandle fieldAccessor(Field field) {
+        try {
+            field.setAccessible(true);
+            return LOOKUP.unreflectGetter(field).asType(ACCESSOR_TYPE);
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new IllegalArgumentException("Cannot serialize " + field.getDeclaringClass().getName() + " to JSON", e);
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
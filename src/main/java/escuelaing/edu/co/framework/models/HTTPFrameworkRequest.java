@@ -1,17 +1,42 @@
 package escuelaing.edu.co.framework.models;
 
+import escuelaing.edu.co.framework.errors.HttpServerErrors;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 public class HTTPFrameworkRequest {
     private String method;
     private String url;
+    private String version;
+    private Boolean keepAlive;
+    private InetAddress remoteAddress;
     private final Map<String, String> params;
+    private Map<String, List<String>> repeatedParams;
+    private final Map<String, String> headers;
+    private Map<String, String> pathVariables;
+    private InputStream body;
+    private ReadableByteChannel bodyChannel;
 
     public HTTPFrameworkRequest(String request) {
         this.method = "";
         this.url = "";
+        this.version = "HTTP/1.1";
         this.params = new HashMap<>();
+        this.headers = new HashMap<>();
+        this.pathVariables = Collections.emptyMap();
+        this.body = InputStream.nullInputStream();
         parseRequest(request);
     }
 
@@ -27,25 +52,223 @@ public class HTTPFrameworkRequest {
         return url;
     }
 
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    /**
+     * Returns a query parameter, percent-decoded.
+     * @param param the parameter name
+     * @return the first value sent for the parameter, or null if it was not sent
+     */
     public String getValue(String param) {
         return this.params.get(param);
     }
 
+    /**
+     * Returns every value sent for a repeated query parameter, e.g. {@code ?tag=a&tag=b}.
+     * @param param the parameter name
+     * @return the percent-decoded values in request order, empty if the parameter was not sent
+     */
+    public List<String> getValues(String param) {
+        if (repeatedParams != null && repeatedParams.containsKey(param)) {
+            return Collections.unmodifiableList(repeatedParams.get(param));
+        }
+        String value = params.get(param);
+        return value == null ? Collections.emptyList() : Collections.singletonList(value);
+    }
+
+    /**
+     * Returns a value captured by a {@code {name}} or wildcard segment of the matched route.
+     * @param name the variable name in the route pattern
+     * @return the captured value, or null if the route has no such variable
+     */
+    public String getPathVariable(String name) {
+        return this.pathVariables.get(name);
+    }
+
+    public void setPathVariables(Map<String, String> pathVariables) {
+        this.pathVariables = pathVariables;
+    }
+
+    /**
+     * Returns the value of a request header.
+     * @param name the header name, matched case-insensitively
+     * @return the header value, or null if the header was not sent
+     */
+    public String getHeader(String name) {
+        return this.headers.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Sets a request header. Repeated headers are joined with a comma.
+     * @param name the header name
+     * @param value the header value
+     */
+    public void setHeader(String name, String value) {
+        this.headers.merge(name.toLowerCase(Locale.ROOT), value, (previous, next) -> previous + ", " + next);
+    }
+
+    /**
+     * Returns the request body as a stream read straight from the connection.
+     * The body is not buffered: it can be read once, and whatever the handler leaves unread is discarded
+     * after the handler returns.
+     * @return the body, empty if the request has none
+     */
+    public InputStream getBody() {
+        return body;
+    }
+
+    /**
+     * Reads the next bytes of the request body into a buffer.
+     * @param destination the buffer to fill from its position
+     * @return the number of bytes read, or -1 at the end of the body
+     * @throws IOException if the connection fails while reading
+     */
+    public int readBody(ByteBuffer destination) throws IOException {
+        if (bodyChannel == null) {
+            bodyChannel = Channels.newChannel(body);
+        }
+        return bodyChannel.read(destination);
+    }
+
+    public void setBody(InputStream body) {
+        this.body = body;
+        this.bodyChannel = null;
+    }
+
+    /**
+     * Returns the address of the client that sent the request.
+     * @return the client address, or null if the request did not come from a connection
+     */
+    public InetAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    public void setRemoteAddress(InetAddress remoteAddress) {
+        this.remoteAddress = remoteAddress;
+    }
+
+    /**
+     * Tells whether the connection should stay open after this request is answered.
+     * Unless the server decided otherwise, HTTP/1.1 connections persist unless the client sends
+     * {@code Connection: close}, and HTTP/1.0 connections persist only with {@code Connection: keep-alive}.
+     * @return true if the connection is persistent
+     */
+    public boolean isKeepAlive() {
+        if (keepAlive != null) {
+            return keepAlive;
+        }
+        String connection = getHeader("Connection");
+        if ("HTTP/1.0".equals(version)) {
+            return connection != null && connection.toLowerCase(Locale.ROOT).contains("keep-alive");
+        }
+        return connection == null || !connection.toLowerCase(Locale.ROOT).contains("close");
+    }
+
+    public void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * Splits the request target into its path and query in one pass, percent-decoding both.
+     * @throws HttpServerErrors BAD_REQUEST_400 if an escape is malformed or the decoded path
+     * could escape the server root
+     */
     private void parseRequest(String request) {
-        String[] parts = request.split("\\?");
-        this.url = parts[0];
-        if (parts.length > 1) {
-            parseParams(parts[1]);
+        int query = request.indexOf('?');
+        int pathEnd = query < 0 ? request.length() : query;
+        this.url = decode(request, 0, pathEnd, false);
+        if (url.indexOf('\0') >= 0 || url.indexOf('\\') >= 0 || hasDotDotSegment(url)) {
+            throw HttpServerErrors.BAD_REQUEST_400;
+        }
+        if (query >= 0) {
+            parseParams(request, query + 1);
+        }
+    }
+
+    private void parseParams(String query, int start) {
+        int end = query.length();
+        while (start < end) {
+            int pairEnd = query.indexOf('&', start);
+            if (pairEnd < 0) {
+                pairEnd = end;
+            }
+            if (pairEnd > start) {
+                int equals = query.indexOf('=', start);
+                int nameEnd = equals < 0 || equals > pairEnd ? pairEnd : equals;
+                String name = decode(query, start, nameEnd, true);
+                String value = nameEnd == pairEnd ? "" : decode(query, nameEnd + 1, pairEnd, true);
+                addParam(name, value);
+            }
+            start = pairEnd + 1;
+        }
+    }
+
+    private void addParam(String name, String value) {
+        String first = params.putIfAbsent(name, value);
+        if (first == null) {
+            return;
+        }
+        if (repeatedParams == null) {
+            repeatedParams = new HashMap<>();
         }
+        repeatedParams.computeIfAbsent(name, key -> {
+            List<String> values = new ArrayList<>(4);
+            values.add(first);
+            return values;
+        }).add(value);
     }
 
-    private void parseParams(String params) {
-        String[] pairs = params.split("&");
-        for (String pair : pairs) {
-            String[] keyValue = pair.split("=");
-            if (keyValue.length == 2) {
-                this.params.put(keyValue[0], keyValue[1]);
+    private static boolean hasDotDotSegment(String path) {
+        int index = path.indexOf("..");
+        while (index >= 0) {
+            boolean segmentStart = index == 0 || path.charAt(index - 1) == '/';
+            boolean segmentEnd = index + 2 == path.length() || path.charAt(index + 2) == '/';
+            if (segmentStart && segmentEnd) {
+                return true;
+            }
+            index = path.indexOf("..", index + 1);
+        }
+        return false;
+    }
+
+    /**
+     * Percent-decodes a region of the request target as UTF-8. Regions without escapes are returned
+     * as a substring, without decoding.
+     * @param plusIsSpace whether {@code +} stands for a space, as in query strings
+     * @throws HttpServerErrors BAD_REQUEST_400 if an escape is not followed by two hex digits
+     */
+    private static String decode(String source, int start, int end, boolean plusIsSpace) {
+        int first = start;
+        while (first < end && source.charAt(first) != '%' && !(plusIsSpace && source.charAt(first) == '+')) {
+            first++;
+        }
+        if (first == end) {
+            return source.substring(start, end);
+        }
+        byte[] bytes = new byte[end - start];
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            char c = source.charAt(i);
+            if (c == '%') {
+                int high = i + 2 < end ? Character.digit(source.charAt(i + 1), 16) : -1;
+                int low = high < 0 ? -1 : Character.digit(source.charAt(i + 2), 16);
+                if (low < 0) {
+                    throw HttpServerErrors.BAD_REQUEST_400;
+                }
+                bytes[length++] = (byte) (high << 4 | low);
+                i += 2;
+            } else if (c == '+' && plusIsSpace) {
+                bytes[length++] = ' ';
+            } else {
+                bytes[length++] = (byte) c;
             }
         }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
     }
 }
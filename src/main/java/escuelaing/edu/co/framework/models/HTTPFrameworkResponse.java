@@ -1,27 +1,240 @@
 package escuelaing.edu.co.framework.models;
 
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionStage;
+
 public class HTTPFrameworkResponse {
     private int status;
+    private final Map<String, String> headers;
     private String body;
+    private ByteBuffer bytes;
+    private long contentLength;
+    private OutputStream output;
+    private ByteArrayOutputStream bufferedOutput;
+    private CompletionStage<HTTPFrameworkResponse> async;
+    private long asyncTimeout;
 
     public HTTPFrameworkResponse() {
         this.status = 200;
+        this.headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
         this.body = "";
+        this.contentLength = -1;
+    }
+
+    /**
+     * Creates a response whose {@link #getOutputStream()} writes to the client connection.
+     * @param output the stream that sends the response head on its first write and then the written bytes
+     */
+    public HTTPFrameworkResponse(OutputStream output) {
+        this();
+        this.output = output;
     }
 
     public int getStatus() {
         return status;
     }
 
+    /**
+     * Sets the status code of the response, e.g. 201 or 404.
+     * @param status a three digit HTTP status code
+     * @throws IllegalArgumentException if the code is not between 100 and 599
+     */
     public void setStatus(int status) {
+        if (status < 100 || status > 599) {
+            throw new IllegalArgumentException("Invalid status code " + status);
+        }
         this.status = status;
     }
 
+    /**
+     * Returns the value of a response header.
+     * @param name the header name, matched case-insensitively
+     * @return the header value, or null if the header is not set
+     */
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    /**
+     * Sets a response header, replacing any previous value. The server manages the framing and connection
+     * headers ({@code Content-Length}, {@code Transfer-Encoding}, {@code Connection}, {@code Keep-Alive}),
+     * so values set for them are not sent.
+     * @param name the header name
+     * @param value the header value
+     * @throws IllegalArgumentException if the name or value contains line breaks or the name is empty
+     */
+    public void setHeader(String name, String value) {
+        validateHeader(name, value);
+        headers.put(name, value);
+    }
+
+    /**
+     * Adds a value to a response header, joining it to the previous ones with a comma.
+     * @param name the header name
+     * @param value the value to add
+     * @throws IllegalArgumentException if the name or value contains line breaks or the name is empty
+     */
+    public void addHeader(String name, String value) {
+        validateHeader(name, value);
+        headers.merge(name, value, (previous, next) -> previous + ", " + next);
+    }
+
+    /**
+     * Returns every header set on the response.
+     * @return a read-only view of the headers, with case-insensitive names
+     */
+    public Map<String, String> getHeaders() {
+        return Collections.unmodifiableMap(headers);
+    }
+
+    /**
+     * Sets the media type of the body, e.g. {@code application/json}. Text bodies default to
+     * {@code text/plain; charset=UTF-8}.
+     * @param contentType the Content-Type header value
+     */
+    public void setContentType(String contentType) {
+        setHeader("Content-Type", contentType);
+    }
+
+    /**
+     * Returns the body as text. Binary bodies are decoded as UTF-8.
+     * @return the body
+     */
     public String getBody() {
-        return body;
+        if (bytes == null && bufferedOutput == null) {
+            return body;
+        }
+        return StandardCharsets.UTF_8.decode(getBodyBuffer()).toString();
     }
 
     public void setBody(String body) {
         this.body = body;
+        this.bytes = null;
+    }
+
+    /**
+     * Sets a binary body, sent as is without any String round trip.
+     * @param body the body bytes, which must not be modified afterwards
+     */
+    public void setBody(byte[] body) {
+        setBody(ByteBuffer.wrap(body));
+    }
+
+    /**
+     * Sets a binary body made of the remaining bytes of a buffer.
+     * @param body the body buffer, which must not be modified afterwards
+     */
+    public void setBody(ByteBuffer body) {
+        this.bytes = body.slice();
+        this.body = null;
+    }
+
+    /**
+     * Returns the body bytes: the binary body if one was set, the text body encoded as UTF-8 otherwise.
+     * @return a read-only view of the body
+     */
+    public ByteBuffer getBodyBuffer() {
+        if (bufferedOutput != null) {
+            return ByteBuffer.wrap(bufferedOutput.toByteArray()).asReadOnlyBuffer();
+        }
+        if (bytes != null) {
+            return bytes.asReadOnlyBuffer();
+        }
+        return ByteBuffer.wrap(body.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the length announced for a streamed body.
+     * @return the length in bytes, or -1 if it is unknown and the body is sent with chunked encoding
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Announces the length of a body written through {@link #getOutputStream()}, so it is sent as is
+     * instead of with chunked encoding. Must be called before the first write.
+     * @param contentLength the exact number of bytes that will be written
+     */
+    public void setContentLength(long contentLength) {
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * Returns a stream that writes the body straight to the client as the handler produces it.
+     * The response head is sent on the first write, so the status and headers must be set before; once written,
+     * the body set with {@code setBody} is ignored. Unless a content length was announced, the body is
+     * sent with chunked encoding. Responses not bound to a connection collect the written bytes as their body.
+     * @return the body stream
+     */
+    public OutputStream getOutputStream() {
+        if (output == null) {
+            bufferedOutput = new ByteArrayOutputStream();
+            output = bufferedOutput;
+        }
+        return output;
+    }
+
+    /**
+     * Answers the request asynchronously: the server sends the response the stage completes with once it
+     * completes, without holding a thread while it waits. A stage that fails with an {@code HttpServerErrors}
+     * is answered with that error, any other failure with a 500, and a stage still pending after the timeout
+     * with a 504. The request body must be read before the handler returns.
+     * @param completion the stage completing with the response to send
+     * @param timeoutMillis how long the server waits for the stage, in milliseconds
+     * @throws IllegalArgumentException if the timeout is not positive
+     */
+    public void setAsync(CompletionStage<HTTPFrameworkResponse> completion, long timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("Timeout must be positive");
+        }
+        this.async = completion;
+        this.asyncTimeout = timeoutMillis;
+    }
+
+    /**
+     * Returns the stage set with {@link #setAsync}.
+     * @return the stage completing with the response, or null if the response is not asynchronous
+     */
+    public CompletionStage<HTTPFrameworkResponse> getAsync() {
+        return async;
+    }
+
+    public long getAsyncTimeout() {
+        return asyncTimeout;
+    }
+
+    private static void validateHeader(String name, String value) {
+        if (name == null || name.isEmpty() || value == null) {
+            throw new IllegalArgumentException("Header name and value are required");
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c <= ' ' || c == ':' || c >= 127) {
+                throw new IllegalArgumentException("Invalid header name " + name);
+            }
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\r' || c == '\n') {
+                throw new IllegalArgumentException("Header values must not contain line breaks");
+            }
+        }
+    }
+
+    /**
+     * Returns the body stream as a channel, for handlers that produce {@link ByteBuffer}s.
+     * @return a channel over {@link #getOutputStream()}
+     */
+    public WritableByteChannel getChannel() {
+        return Channels.newChannel(getOutputStream());
     }
 }
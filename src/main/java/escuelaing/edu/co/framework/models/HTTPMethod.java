@@ -0,0 +1,26 @@
+package escuelaing.edu.co.framework.models;
+
+/**
+ * The request methods the server can route.
+ */
+public enum HTTPMethod {
+    GET, HEAD, POST, PUT, DELETE, OPTIONS, PATCH;
+
+    /**
+     * Resolves a request-line method token.
+     * @param token the method as sent by the client, which is case-sensitive
+     * @return the method, or null if it is not supported
+     */
+    public static HTTPMethod from(String token) {
+        switch (token) {
+            case "GET": return GET;
+            case "HEAD": return HEAD;
+            case "POST": return POST;
+            case "PUT": return PUT;
+            case "DELETE": return DELETE;
+            case "OPTIONS": return OPTIONS;
+            case "PATCH": return PATCH;
+            default: return null;
+        }
+    }
+}
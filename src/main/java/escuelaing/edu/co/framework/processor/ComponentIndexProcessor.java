@@ -0,0 +1,224 @@
+package escuelaing.edu.co.framework.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes the index of components, controllers and routes that the injector loads at startup instead of
+ * scanning the classpath. The index is a UTF-8 text resource with one tab-separated entry per line:
+ * <pre>
+ * component   &lt;class&gt;
+ * autowired   &lt;class&gt;
+ * controller  &lt;class&gt;
+ * route       &lt;method&gt; &lt;path&gt; &lt;class&gt; &lt;java method&gt; &lt;parameter types, comma separated&gt;
+ * </pre>
+ * Class names are binary names, as accepted by {@link Class#forName(String)}. The processor is registered
+ * as a service, so any project compiled with this framework on its classpath gets its own index.
+ * An incremental compilation only sees the classes it recompiles, so the entries of the index already in the
+ * class output are kept for the other classes, as long as they still exist and carry their annotation.
+ */
+public class ComponentIndexProcessor extends AbstractProcessor {
+    public static final String INDEX = "META-INF/framework/components.index";
+
+    private static final String ANNOTATIONS = "escuelaing.edu.co.framework.annotations.";
+    private static final String COMPONENT = ANNOTATIONS + "Component";
+    private static final String AUTOWIRED = ANNOTATIONS + "Autowired";
+    private static final String REST_CONTROLLER = ANNOTATIONS + "RestController";
+    private static final String[][] MAPPINGS = {
+            {ANNOTATIONS + "GetMapping", "GET"},
+            {ANNOTATIONS + "PostMapping", "POST"},
+            {ANNOTATIONS + "PutMapping", "PUT"},
+            {ANNOTATIONS + "DeleteMapping", "DELETE"}};
+
+    private final Set<String> entries = new LinkedHashSet<>();
+    /** Binary names of the annotated classes seen in this compilation, whose previous entries are replaced. */
+    private final Set<String> processed = new HashSet<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Set.of(COMPONENT, AUTOWIRED, REST_CONTROLLER);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        for (TypeElement annotation : annotations) {
+            String name = annotation.getQualifiedName().toString();
+            for (Element element : round.getElementsAnnotatedWith(annotation)) {
+                if (!element.getKind().isClass() || element.getKind() == ElementKind.ENUM) {
+                    continue;
+                }
+                TypeElement type = (TypeElement) element;
+                String binaryName = binaryName(type);
+                processed.add(binaryName);
+                switch (name) {
+                    case COMPONENT -> entries.add("component\t" + binaryName);
+                    case AUTOWIRED -> entries.add("autowired\t" + binaryName);
+                    default -> {
+                        entries.add("controller\t" + binaryName);
+                        addRoutes(type, binaryName);
+                    }
+                }
+            }
+        }
+        if (round.processingOver() && !entries.isEmpty()) {
+            writeIndex();
+        }
+        return false;
+    }
+
+    private void addRoutes(TypeElement controller, String binaryName) {
+        String root = annotationValue(controller, REST_CONTROLLER);
+        for (Element member : controller.getEnclosedElements()) {
+            if (member.getKind() != ElementKind.METHOD) {
+                continue;
+            }
+            ExecutableElement method = (ExecutableElement) member;
+            for (String[] mapping : MAPPINGS) {
+                String value = annotationValue(method, mapping[0]);
+                if (value == null) {
+                    continue;
+                }
+                List<String> parameters = new ArrayList<>();
+                for (VariableElement parameter : method.getParameters()) {
+                    parameters.add(className(parameter.asType()));
+                }
+                entries.add("route\t" + mapping[1] + "\t" + (root == null ? "" : root) + value + "\t" + binaryName
+                        + "\t" + method.getSimpleName() + "\t" + String.join(",", parameters));
+            }
+        }
+    }
+
+    /**
+     * Returns the {@code value} of an annotation on an element, "" when it is not set, or null if the
+     * element does not carry the annotation.
+     */
+    private String annotationValue(Element element, String annotation) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (!((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotation)) {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals("value")) {
+                    return String.valueOf(entry.getValue().getValue());
+                }
+            }
+            return "";
+        }
+        return null;
+    }
+
+    /**
+     * Returns the name {@link Class#forName(String)} or the primitive type names resolve to the erasure of a type.
+     */
+    private String className(TypeMirror type) {
+        TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+        if (erased.getKind().isPrimitive()) {
+            return erased.toString();
+        }
+        if (erased.getKind() == TypeKind.ARRAY) {
+            return "[" + descriptor(((ArrayType) erased).getComponentType());
+        }
+        return binaryName((TypeElement) ((DeclaredType) erased).asElement());
+    }
+
+    private String descriptor(TypeMirror type) {
+        return switch (type.getKind()) {
+            case BOOLEAN -> "Z";
+            case BYTE -> "B";
+            case CHAR -> "C";
+            case SHORT -> "S";
+            case INT -> "I";
+            case LONG -> "J";
+            case FLOAT -> "F";
+            case DOUBLE -> "D";
+            case ARRAY -> "[" + descriptor(((ArrayType) type).getComponentType());
+            default -> "L" + className(type) + ";";
+        };
+    }
+
+    private String binaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    /**
+     * Returns the entries of the index written by a previous compilation that still hold: those of classes
+     * this compilation did not see which still exist with the annotation their entry was made for.
+     */
+    private List<String> previousEntries() {
+        List<String> kept = new ArrayList<>();
+        String content;
+        try {
+            content = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", INDEX).getCharContent(true).toString();
+        } catch (IOException | IllegalArgumentException e) {
+            // No previous index: this is a full compilation.
+            return kept;
+        }
+        for (String line : content.split("\n")) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] entry = line.split("\t", -1);
+            String className = entry[0].equals("route") ? entry[3] : entry[1];
+            if (processed.contains(className)) {
+                continue;
+            }
+            String annotation = switch (entry[0]) {
+                case "component" -> COMPONENT;
+                case "autowired" -> AUTOWIRED;
+                default -> REST_CONTROLLER;
+            };
+            TypeElement type = processingEnv.getElementUtils().getTypeElement(className.replace('$', '.'));
+            if (type != null && annotationValue(type, annotation) != null) {
+                kept.add(line);
+            }
+        }
+        return kept;
+    }
+
+    private void writeIndex() {
+        Set<String> merged = new LinkedHashSet<>(previousEntries());
+        merged.addAll(entries);
+        try {
+            FileObject index = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX);
+            try (Writer writer = new OutputStreamWriter(index.openOutputStream(), StandardCharsets.UTF_8)) {
+                writer.write("# Generated by " + getClass().getName() + ", do not edit.\n");
+                for (String entry : merged) {
+                    writer.write(entry);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Cannot write " + INDEX + ": " + e);
+        }
+    }
+}
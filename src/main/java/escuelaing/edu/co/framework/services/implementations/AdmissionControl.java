@@ -0,0 +1,269 @@
+package escuelaing.edu.co.framework.services.implementations;
+
+import escuelaing.edu.co.framework.errors.HttpServerErrors;
+
+import java.net.InetAddress;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides whether the server takes a request or sheds it. A request is admitted while the requests in flight,
+ * in the whole server and on its route, are below their limits and, when rate limiting is on, its client
+ * still has a token in its bucket; anything else is rejected right away with
+ * {@link HttpServerErrors#SERVICE_UNAVAILABLE_503}, so an overloaded server answers fast instead of letting
+ * every request wait. Counting is lock-free; each client bucket has its own lock.
+ * The client buckets are bounded: past the cap the oldest bucket not used since the last pass is evicted, as in
+ * the CLOCK algorithm, and buckets that are full again are swept at most once per {@link #SWEEP_INTERVAL_NANOS}.
+ */
+final class AdmissionControl {
+    /** The default number of client buckets kept. */
+    private static final int MAX_BUCKETS = 10_000;
+    /** The minimum time between two sweeps of the client buckets. */
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    /** Recently used buckets skipped by one eviction, so that it stays O(1) when every client is active. */
+    private static final int SECOND_CHANCES = 8;
+
+    /**
+     * The number of requests in flight against a limit.
+     */
+    static final class Limit {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile int max;
+
+        private Limit(int max) {
+            this.max = max;
+        }
+
+        private boolean tryAcquire() {
+            int limit = max;
+            if (limit <= 0) {
+                inFlight.incrementAndGet();
+                return true;
+            }
+            int current;
+            do {
+                current = inFlight.get();
+                if (current >= limit) {
+                    return false;
+                }
+            } while (!inFlight.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        private void release() {
+            inFlight.decrementAndGet();
+        }
+
+        int inFlight() {
+            return inFlight.get();
+        }
+    }
+
+    /**
+     * The tokens of one client, refilled continuously at the configured rate up to the burst size.
+     */
+    private static final class TokenBucket {
+        private final InetAddress client;
+        private double tokens;
+        private long refilledAt;
+        private volatile boolean referenced;
+
+        private TokenBucket(InetAddress client, double tokens, long now) {
+            this.client = client;
+            this.tokens = tokens;
+            this.refilledAt = now;
+        }
+
+        private synchronized boolean tryTake(double perNano, int burst, long now) {
+            referenced = true;
+            refill(perNano, burst, now);
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+
+        private synchronized boolean isFull(double perNano, int burst, long now) {
+            refill(perNano, burst, now);
+            return tokens >= burst;
+        }
+
+        private void refill(double perNano, int burst, long now) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) * perNano);
+            refilledAt = now;
+        }
+    }
+
+    private final Limit global = new Limit(0);
+    private final Map<String, Limit> routes = new ConcurrentHashMap<>();
+    private final Map<InetAddress, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final Queue<TokenBucket> evictionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicLong nextSweep = new AtomicLong(System.nanoTime());
+    private final int maxBuckets;
+    private final LongAdder rejected = new LongAdder();
+    private volatile double tokensPerNano;
+    private volatile int burst;
+
+    AdmissionControl() {
+        this(MAX_BUCKETS);
+    }
+
+    /**
+     * Creates an admission control without limits.
+     * @param maxBuckets the number of client buckets kept when rate limiting
+     */
+    AdmissionControl(int maxBuckets) {
+        if (maxBuckets < 1) {
+            throw new IllegalArgumentException("At least one client bucket must be kept");
+        }
+        this.maxBuckets = maxBuckets;
+    }
+
+    /**
+     * Limits the requests handled at the same time by the whole server.
+     * @param max the limit, or 0 for none
+     */
+    void maxInFlight(int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException("The in-flight limit must not be negative");
+        }
+        global.max = max;
+    }
+
+    /**
+     * Limits the requests handled at the same time by one route.
+     * @param pattern the route pattern, as registered
+     * @param max the limit, or 0 for none
+     */
+    void maxInFlight(String pattern, int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException("The in-flight limit must not be negative");
+        }
+        routes.computeIfAbsent(pattern, p -> new Limit(0)).max = max;
+    }
+
+    /**
+     * Limits the request rate of each client address with a token bucket.
+     * @param requestsPerSecond the sustained rate, or 0 to stop rate limiting
+     * @param burst the requests a client can send at once after being idle
+     */
+    void rateLimit(double requestsPerSecond, int burst) {
+        if (requestsPerSecond < 0 || (requestsPerSecond > 0 && burst < 1)) {
+            throw new IllegalArgumentException("The rate must not be negative and the burst must be at least 1");
+        }
+        this.burst = burst;
+        this.tokensPerNano = requestsPerSecond / 1e9;
+        buckets.clear();
+        evictionOrder.clear();
+    }
+
+    /**
+     * Admits a request, counting it as in flight until {@link #release} is called with the returned limit.
+     * @param client the client address, or null if unknown, in which case it is not rate limited
+     * @param pattern the pattern of the matched route, or null for requests outside the routes
+     * @return the route limit the request holds, or null if it only holds the global one
+     * @throws HttpServerErrors SERVICE_UNAVAILABLE_503 if the request is shed
+     */
+    Limit admit(InetAddress client, String pattern) {
+        double rate = tokensPerNano;
+        if (rate > 0 && client != null && !takeToken(client, rate)) {
+            throw reject();
+        }
+        if (!global.tryAcquire()) {
+            throw reject();
+        }
+        Limit route = pattern == null ? null : routes.get(pattern);
+        if (route != null && !route.tryAcquire()) {
+            global.release();
+            throw reject();
+        }
+        return route;
+    }
+
+    /**
+     * Ends a request admitted by {@link #admit}.
+     * @param route the limit returned by {@link #admit}
+     */
+    void release(Limit route) {
+        if (route != null) {
+            route.release();
+        }
+        global.release();
+    }
+
+    private boolean takeToken(InetAddress client, double rate) {
+        long now = System.nanoTime();
+        int size = burst;
+        long sweep = nextSweep.get();
+        if (now - sweep >= 0 && nextSweep.compareAndSet(sweep, now + SWEEP_INTERVAL_NANOS)) {
+            sweep(rate, size, now);
+        }
+        TokenBucket bucket = buckets.get(client);
+        if (bucket == null) {
+            // The first token is taken on creation, so a sweep never mistakes a new bucket for an idle one.
+            TokenBucket created = new TokenBucket(client, size - 1, now);
+            bucket = buckets.putIfAbsent(client, created);
+            if (bucket == null) {
+                evictionOrder.add(created);
+                evictOverCap();
+                return true;
+            }
+        }
+        return bucket.tryTake(rate, size, now);
+    }
+
+    /**
+     * Evicts buckets in insertion order while there are more than the cap, giving the ones used since the
+     * last pass a second chance.
+     */
+    private void evictOverCap() {
+        int chances = SECOND_CHANCES;
+        while (buckets.size() > maxBuckets) {
+            TokenBucket oldest = evictionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            if (buckets.get(oldest.client) != oldest) {
+                continue;
+            }
+            if (oldest.referenced && chances-- > 0) {
+                oldest.referenced = false;
+                evictionOrder.add(oldest);
+                continue;
+            }
+            buckets.remove(oldest.client, oldest);
+        }
+    }
+
+    /**
+     * Drops the buckets that refilled completely, which hold no state a new bucket would not.
+     */
+    private void sweep(double rate, int size, long now) {
+        evictionOrder.removeIf(bucket -> bucket.isFull(rate, size, now) && buckets.remove(bucket.client, bucket)
+                || buckets.get(bucket.client) != bucket);
+    }
+
+    private HttpServerErrors reject() {
+        rejected.increment();
+        return HttpServerErrors.SERVICE_UNAVAILABLE_503;
+    }
+
+    int inFlight() {
+        return global.inFlight();
+    }
+
+    long rejected() {
+        return rejected.sum();
+    }
+
+    int clients() {
+        return buckets.size();
+    }
+}
@@ -0,0 +1,133 @@
+package escuelaing.edu.co.framework.services.implementations;
+
+import java.util.Arrays;
+
+/**
+ * Parses the {@code Range} request header of static file requests, RFC 9110 section 14.
+ * Only the {@code bytes} unit is understood. Ranges are clamped to the representation, sorted, and
+ * overlapping or adjacent ranges are coalesced, so a request cannot make the server send the same bytes
+ * more than once.
+ */
+final class ByteRanges {
+    /** Range headers with more ranges than this are ignored and the whole file is sent. */
+    static final int MAX_RANGES = 64;
+
+    private ByteRanges() {
+    }
+
+    /**
+     * Parses a Range header against a representation length.
+     * @param range the Range request header
+     * @param length the length of the selected representation
+     * @return the satisfiable ranges as consecutive inclusive {@code first, last} pairs, an empty array if
+     *         none is satisfiable, or null if the header is malformed or uses another unit and must be ignored
+     */
+    static long[] parse(String range, long length) {
+        if (!range.regionMatches(true, 0, "bytes=", 0, 6)) {
+            return null;
+        }
+        long[] ranges = new long[8];
+        int count = 0;
+        int specs = 0;
+        int start = 6;
+        while (start <= range.length()) {
+            int comma = range.indexOf(',', start);
+            int end = comma < 0 ? range.length() : comma;
+            String spec = range.substring(start, end).trim();
+            start = end + 1;
+            if (spec.isEmpty()) {
+                continue;
+            }
+            if (++specs > MAX_RANGES) {
+                return null;
+            }
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            long first;
+            long last;
+            try {
+                if (dash == 0) {
+                    long suffix = parseLength(spec.substring(1));
+                    if (suffix == 0) {
+                        continue;
+                    }
+                    first = Math.max(0, length - suffix);
+                    last = length - 1;
+                } else {
+                    first = parseLength(spec.substring(0, dash));
+                    last = length - 1;
+                    if (dash < spec.length() - 1) {
+                        long requested = parseLength(spec.substring(dash + 1));
+                        if (requested < first) {
+                            return null;
+                        }
+                        last = Math.min(last, requested);
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (first >= length) {
+                continue;
+            }
+            if (count == ranges.length) {
+                ranges = Arrays.copyOf(ranges, count * 2);
+            }
+            ranges[count++] = first;
+            ranges[count++] = last;
+        }
+        if (specs == 0) {
+            return null;
+        }
+        return coalesce(ranges, count);
+    }
+
+    /**
+     * Returns the number of bytes covered by parsed ranges.
+     * @param ranges the pairs returned by {@link #parse}
+     * @return the sum of the range lengths
+     */
+    static long size(long[] ranges) {
+        long size = 0;
+        for (int i = 0; i < ranges.length; i += 2) {
+            size += ranges[i + 1] - ranges[i] + 1;
+        }
+        return size;
+    }
+
+    private static long parseLength(String digits) {
+        if (digits.isEmpty() || digits.length() > 18) {
+            throw new NumberFormatException(digits);
+        }
+        for (int i = 0; i < digits.length(); i++) {
+            if (digits.charAt(i) < '0' || digits.charAt(i) > '9') {
+                throw new NumberFormatException(digits);
+            }
+        }
+        return Long.parseLong(digits);
+    }
+
+    private static long[] coalesce(long[] ranges, int count) {
+        int pairs = count / 2;
+        Integer[] order = new Integer[pairs];
+        for (int i = 0; i < pairs; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(ranges[a * 2], ranges[b * 2]));
+        long[] merged = new long[count];
+        int size = 0;
+        for (int index : order) {
+            long first = ranges[index * 2];
+            long last = ranges[index * 2 + 1];
+            if (size > 0 && first <= merged[size - 1] + 1) {
+                merged[size - 1] = Math.max(merged[size - 1], last);
+            } else {
+                merged[size++] = first;
+                merged[size++] = last;
+            }
+        }
+        return Arrays.copyOf(merged, size);
+    }
+}
@@ -0,0 +1,64 @@
+package escuelaing.edu.co.framework.services.implementations;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The stream a response is written to, able to send file regions without copying them through the heap.
+ * Each engine provides its own implementation bound to the client connection.
+ */
+abstract class ConnectionOutputStream extends OutputStream {
+
+    /**
+     * Sends a region of a file after everything written so far.
+     * Implementations hand the region to the socket with {@link FileChannel#transferTo}, which lets the
+     * kernel copy the bytes (sendfile) instead of reading them into a heap buffer.
+     * @param file the file to send
+     * @param position the offset of the first byte to send
+     * @param count the number of bytes to send
+     * @throws IOException if the file cannot be read or the connection fails
+     */
+    abstract void transferFrom(Path file, long position, long count) throws IOException;
+
+    /**
+     * Sends a region of a file to any stream, using zero-copy when it is a connection stream.
+     * @param out the stream connected to the client
+     * @param file the file to send
+     * @param position the offset of the first byte to send
+     * @param count the number of bytes to send
+     * @throws IOException if the file cannot be read or the stream fails
+     */
+    static void transfer(OutputStream out, Path file, long position, long count) throws IOException {
+        if (out instanceof ConnectionOutputStream) {
+            ((ConnectionOutputStream) out).transferFrom(file, position, count);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            transferFully(channel, position, count, Channels.newChannel(out));
+        }
+    }
+
+    /**
+     * Transfers a file region to a blocking channel, failing if the file is shorter than expected.
+     * @param file the open file
+     * @param position the offset of the first byte to send
+     * @param count the number of bytes to send
+     * @param target the blocking channel to write to
+     * @throws IOException if the file was truncated or the channel fails
+     */
+    static void transferFully(FileChannel file, long position, long count, WritableByteChannel target) throws IOException {
+        long end = position + count;
+        while (position < end) {
+            long sent = file.transferTo(position, end - position, target);
+            if (sent <= 0 && position >= file.size()) {
+                throw new IOException("File truncated while being sent");
+            }
+            position += sent;
+        }
+    }
+}
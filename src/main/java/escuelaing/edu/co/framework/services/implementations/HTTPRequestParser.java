@@ -0,0 +1,233 @@
+package escuelaing.edu.co.framework.services.implementations;
+
+import escuelaing.edu.co.framework.errors.HttpServerErrors;
+import escuelaing.edu.co.framework.models.HTTPFrameworkRequest;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses request heads straight from the bytes a connection read into its buffer.
+ * The request line and every header are parsed in a single pass over the buffer, without decoding it to a
+ * String first or splitting it with regular expressions. Method tokens, versions and common header names
+ * are matched against constants, so parsing a typical request only allocates the target and header values.
+ * Heads that break the limits on line length or header count are rejected before anything else is read.
+ */
+final class HTTPRequestParser {
+    static final int MAX_HEAD_SIZE = 64 * 1024;
+    static final int MAX_REQUEST_LINE = 8 * 1024;
+    static final int MAX_HEADER_LINE = 8 * 1024;
+    static final int MAX_HEADERS = 100;
+
+    private static final String[] METHODS = {"GET", "POST", "PUT", "DELETE", "HEAD", "OPTIONS", "PATCH"};
+    private static final String[] HEADER_NAMES = {
+            "host", "connection", "accept", "accept-encoding", "accept-language", "user-agent", "content-length",
+            "content-type", "transfer-encoding", "expect", "cookie", "if-none-match", "if-modified-since",
+            "range", "if-range", "origin", "referer", "authorization", "cache-control", "upgrade", "pragma"};
+
+    private HTTPRequestParser() {
+    }
+
+    /**
+     * Finds the end of a request head, the byte after the empty line that ends it.
+     * @param bytes the buffer holding the bytes read so far
+     * @param from the index where the search resumes; bytes before it were already searched
+     * @param limit the index after the last byte read
+     * @return the index just past the head, or -1 if the head is incomplete
+     */
+    static int findHeadEnd(byte[] bytes, int from, int limit) {
+        for (int i = from; i < limit; i++) {
+            if (bytes[i] != '\n') {
+                continue;
+            }
+            if (i + 1 < limit && bytes[i + 1] == '\n') {
+                return i + 2;
+            }
+            if (i + 2 < limit && bytes[i + 1] == '\r' && bytes[i + 2] == '\n') {
+                return i + 3;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses a complete request head. Empty lines before the request line are skipped, as allowed
+     * between pipelined requests.
+     * @param bytes the buffer holding the head
+     * @param start the index of the first byte of the head
+     * @param end the index just past the empty line ending the head
+     * @return the request, or null if the head only held empty lines
+     * @throws HttpServerErrors BAD_REQUEST_400 if the head is malformed, URI_TOO_LONG_414 if the request line
+     * is too long, REQUEST_HEADER_FIELDS_TOO_LARGE_431 if a header line is too long or there are too many
+     */
+    static HTTPFrameworkRequest parse(byte[] bytes, int start, int end) {
+        int i = start;
+        while (i < end && (bytes[i] == '\r' || bytes[i] == '\n')) {
+            i++;
+        }
+        if (i >= end) {
+            return null;
+        }
+        int lineEnd = lineEnd(bytes, i, end);
+        int contentEnd = trimCR(bytes, i, lineEnd);
+        if (contentEnd - i > MAX_REQUEST_LINE) {
+            throw HttpServerErrors.URI_TOO_LONG_414;
+        }
+        int methodEnd = indexOf(bytes, (byte) ' ', i, contentEnd);
+        if (methodEnd <= i) {
+            throw HttpServerErrors.BAD_REQUEST_400;
+        }
+        String method = method(bytes, i, methodEnd);
+        int targetStart = methodEnd + 1;
+        int targetEnd = indexOf(bytes, (byte) ' ', targetStart, contentEnd);
+        String version;
+        if (targetEnd < 0) {
+            targetEnd = contentEnd;
+            version = "HTTP/1.0";
+        } else {
+            version = version(bytes, targetEnd + 1, contentEnd);
+        }
+        if (targetEnd == targetStart) {
+            throw HttpServerErrors.BAD_REQUEST_400;
+        }
+        for (int k = targetStart; k < targetEnd; k++) {
+            if (bytes[k] <= ' ' || bytes[k] == 0x7F) {
+                throw HttpServerErrors.BAD_REQUEST_400;
+            }
+        }
+        HTTPFrameworkRequest request = new HTTPFrameworkRequest(
+                new String(bytes, targetStart, targetEnd - targetStart, StandardCharsets.ISO_8859_1));
+        request.setMethod(method);
+        request.setVersion(version);
+        parseHeaders(request, bytes, lineEnd + 1, end);
+        return request;
+    }
+
+    private static void parseHeaders(HTTPFrameworkRequest request, byte[] bytes, int start, int end) {
+        int count = 0;
+        int i = start;
+        while (i < end) {
+            int lineEnd = lineEnd(bytes, i, end);
+            int contentEnd = trimCR(bytes, i, lineEnd);
+            if (contentEnd == i) {
+                return;
+            }
+            if (contentEnd - i > MAX_HEADER_LINE || ++count > MAX_HEADERS) {
+                throw HttpServerErrors.REQUEST_HEADER_FIELDS_TOO_LARGE_431;
+            }
+            int colon = indexOf(bytes, (byte) ':', i, contentEnd);
+            if (colon <= i) {
+                // Also rejects obsolete line folding, whose continuation lines start with whitespace.
+                throw HttpServerErrors.BAD_REQUEST_400;
+            }
+            for (int k = i; k < colon; k++) {
+                if (!isTokenChar(bytes[k])) {
+                    throw HttpServerErrors.BAD_REQUEST_400;
+                }
+            }
+            int valueStart = colon + 1;
+            int valueEnd = contentEnd;
+            while (valueStart < valueEnd && (bytes[valueStart] == ' ' || bytes[valueStart] == '\t')) {
+                valueStart++;
+            }
+            while (valueEnd > valueStart && (bytes[valueEnd - 1] == ' ' || bytes[valueEnd - 1] == '\t')) {
+                valueEnd--;
+            }
+            request.setHeader(headerName(bytes, i, colon),
+                    new String(bytes, valueStart, valueEnd - valueStart, StandardCharsets.ISO_8859_1));
+            i = lineEnd + 1;
+        }
+    }
+
+    private static String method(byte[] bytes, int start, int end) {
+        for (String known : METHODS) {
+            if (matches(bytes, start, end, known, false)) {
+                return known;
+            }
+        }
+        for (int k = start; k < end; k++) {
+            if (!isTokenChar(bytes[k])) {
+                throw HttpServerErrors.BAD_REQUEST_400;
+            }
+        }
+        return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    private static String version(byte[] bytes, int start, int end) {
+        if (matches(bytes, start, end, "HTTP/1.1", false)) {
+            return "HTTP/1.1";
+        }
+        if (matches(bytes, start, end, "HTTP/1.0", false)) {
+            return "HTTP/1.0";
+        }
+        if (end - start != 8 || !matches(bytes, start, start + 5, "HTTP/", false)
+                || !isDigit(bytes[start + 5]) || bytes[start + 6] != '.' || !isDigit(bytes[start + 7])) {
+            throw HttpServerErrors.BAD_REQUEST_400;
+        }
+        return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Returns the lower-case header name, reusing a constant for common headers.
+     */
+    private static String headerName(byte[] bytes, int start, int end) {
+        for (String known : HEADER_NAMES) {
+            if (matches(bytes, start, end, known, true)) {
+                return known;
+            }
+        }
+        char[] name = new char[end - start];
+        for (int k = 0; k < name.length; k++) {
+            byte b = bytes[start + k];
+            name[k] = (char) (b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b);
+        }
+        return new String(name);
+    }
+
+    private static boolean matches(byte[] bytes, int start, int end, String expected, boolean ignoreCase) {
+        if (end - start != expected.length()) {
+            return false;
+        }
+        for (int k = 0; k < expected.length(); k++) {
+            int b = bytes[start + k];
+            if (ignoreCase && b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != expected.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int lineEnd(byte[] bytes, int start, int end) {
+        int newline = indexOf(bytes, (byte) '\n', start, end);
+        return newline < 0 ? end : newline;
+    }
+
+    private static int trimCR(byte[] bytes, int start, int lineEnd) {
+        return lineEnd > start && bytes[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+    }
+
+    private static int indexOf(byte[] bytes, byte value, int start, int end) {
+        for (int k = start; k < end; k++) {
+            if (bytes[k] == value) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    /**
+     * Tells whether a byte may appear in a method or header name token (RFC 9110 tchar).
+     */
+    private static boolean isTokenChar(byte b) {
+        if (b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z' || isDigit(b)) {
+            return true;
+        }
+        return "!#$%&'*+-.^_`|~".indexOf(b) >= 0;
+    }
+}
@@ -3,13 +3,25 @@ package escuelaing.edu.co.framework.services.implementations;
 import escuelaing.edu.co.framework.errors.HttpServerErrors;
 import escuelaing.edu.co.framework.models.HTTPFrameworkRequest;
 import escuelaing.edu.co.framework.models.HTTPFrameworkResponse;
+import escuelaing.edu.co.framework.models.HTTPMethod;
 import escuelaing.edu.co.framework.services.interfaces.HTTPServerHandler;
 
+import java.lang.reflect.Method;
 import java.net.*;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -19,18 +31,52 @@ import java.util.logging.Logger;
  * @since 2025-08-22
  */
 public class HTTPServerImpl {
-    private static String RESOURCES_PATH = "src/main/resources";
+    /**
+     * The available connection engines.
+     * BLOCKING serves each connection on its own task with blocking socket streams,
+     * NIO multiplexes connections on selector event loops and only runs handlers on worker threads.
+     */
+    public enum Engine { BLOCKING, NIO }
+
+    private static volatile String RESOURCES_PATH = "src/main/resources";
     private static final Logger logger = Logger.getLogger(HTTPServerImpl.class.getName());
-    private static final Map<String, HTTPServerHandler> routes = new HashMap<>();
-    private static boolean running = false;
+    private static final Router routes = new Router();
+    private static final int POOL_SIZE = Math.max(16, Runtime.getRuntime().availableProcessors() * 8);
+    private static final int POOL_QUEUE_CAPACITY = 1024;
+    private static final StaticFileCache staticCache = new StaticFileCache(64L * 1024 * 1024, 1024 * 1024);
+    private static volatile boolean running = false;
+    private static volatile ServerSocket serverSocket;
+    private static volatile ExecutorService executor;
+    private static volatile int keepAliveTimeout = 5000;
+    private static volatile int maxKeepAliveRequests = 100;
+    private static volatile byte[] keepAliveHeaders = keepAliveHeaders(keepAliveTimeout, maxKeepAliveRequests);
+    private static final byte[] CLOSE_HEADERS = "Connection: close\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    private static final String STATIC_ALLOW = "GET, HEAD, OPTIONS";
+    private static final long MAX_BODY_DRAIN = 64 * 1024;
+    private static final String SERVER_ALLOW = "GET, HEAD, POST, PUT, DELETE, OPTIONS";
+    private static volatile Engine engine = Engine.BLOCKING;
+    private static volatile NIOServerEngine nioServer;
+    private static volatile long maxBodySize = 16L * 1024 * 1024;
+    private static final ServerMetrics metrics = new ServerMetrics();
+    private static volatile String metricsPath = "/metrics";
+    private static volatile ExecutorService workers;
+    private static final AdmissionControl admission = new AdmissionControl();
+    private static volatile int retryAfter = 1;
+    private static volatile boolean http2 = false;
+    static final int DEFAULT_MAX_HTTP2_CONNECTIONS = POOL_SIZE / 4;
+    private static volatile int maxHttp2Connections = DEFAULT_MAX_HTTP2_CONNECTIONS;
 
     /**
      * Registers a GET route with the specified URL and callback handler.
-     * @param url the URL path for the GET request
+     * The URL may contain {@code {name}} path variables and end with a {@code {*name}} or {@code *} wildcard;
+     * captured values are available from {@link HTTPFrameworkRequest#getPathVariable(String)}.
+     * @param url the URL path pattern for the GET request
+     * HEAD requests to the URL are answered by the same handler without sending the body.
      * @param callback the handler to process the GET request
+     * @throws IllegalArgumentException if the pattern is malformed or conflicts with a registered route
      */
     public static void get(String url, HTTPServerHandler callback) {
-        routes.put(url, callback);
+        routes.add(HTTPMethod.GET, url, callback);
     }
 
     public static void staticFiles(String path) {
@@ -45,41 +91,221 @@ public class HTTPServerImpl {
         RESOURCES_PATH += path;
     }
 
-    // TODO: Implement POST, PUT, DELETE methods
+    /**
+     * Sets the executor that serves accepted connections.
+     * When no executor is configured, the server uses virtual threads if the runtime
+     * supports them and a bounded platform thread pool otherwise.
+     * @param executorService the executor that will run one task per accepted connection, or null for the default
+     */
+    public static void executor(ExecutorService executorService) {
+        executor = executorService;
+    }
+
+    /**
+     * Configures persistent connections.
+     * A connection is closed once it stays idle for the given timeout or after serving the given number of requests.
+     * @param idleTimeoutMillis how long an idle connection is kept open, in milliseconds
+     * @param maxRequests the maximum number of requests served on a single connection
+     */
+    public static void keepAlive(int idleTimeoutMillis, int maxRequests) {
+        if (idleTimeoutMillis <= 0 || maxRequests <= 0) {
+            throw new IllegalArgumentException("Keep-alive timeout and request limit must be positive");
+        }
+        keepAliveTimeout = idleTimeoutMillis;
+        maxKeepAliveRequests = maxRequests;
+        keepAliveHeaders = keepAliveHeaders(idleTimeoutMillis, maxRequests);
+    }
+
+    /**
+     * Sets the memory budget of the static file cache.
+     * @param maxBytes the maximum number of file bytes kept in memory, 0 disables caching
+     */
+    public static void staticCache(long maxBytes) {
+        staticCache.resize(maxBytes);
+    }
+
+    /**
+     * Sets the file size above which static files are streamed from disk with zero-copy transfers
+     * instead of being loaded into memory.
+     * @param bytes the largest file size, in bytes, held in memory
+     */
+    public static void zeroCopyThreshold(long bytes) {
+        staticCache.setStreamingThreshold(bytes);
+    }
+
+    /**
+     * Returns the static file cache, whose hit and miss counters help sizing it.
+     * @return the static file cache
+     */
+    public static StaticFileCache staticFileCache() {
+        return staticCache;
+    }
+
+    /**
+     * Sets the largest request body accepted. Larger bodies are answered with a 413, before any byte is read
+     * when the client declares the length, and as soon as the limit is crossed for chunked bodies.
+     * @param bytes the maximum body size, in bytes
+     */
+    public static void maxBodySize(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Maximum body size must not be negative");
+        }
+        maxBodySize = bytes;
+    }
+
+    /**
+     * Returns the server metrics: latency and errors per route, bytes in and out, open connections and
+     * error responses by status code.
+     * @return the metrics of this server
+     */
+    public static ServerMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the path where the metrics are served in the Prometheus text format, {@code /metrics} by default.
+     * A route registered on the same path takes precedence.
+     * @param path the path, or null to stop serving the metrics
+     */
+    public static void metricsPath(String path) {
+        metricsPath = path;
+    }
+
+    /**
+     * Limits the requests handled at the same time. Requests beyond the limit are not queued: they are
+     * answered right away with a 503 and a {@code Retry-After} header. Static files count toward this limit.
+     * @param max the limit, or 0 for none, the default
+     * @throws IllegalArgumentException if the limit is negative
+     */
+    public static void maxInFlight(int max) {
+        admission.maxInFlight(max);
+    }
+
+    /**
+     * Limits the requests a route handles at the same time, on top of the server limit.
+     * @param url the route pattern, as registered
+     * @param max the limit, or 0 for none
+     * @throws IllegalArgumentException if the limit is negative
+     */
+    public static void maxInFlight(String url, int max) {
+        admission.maxInFlight(url, max);
+    }
+
+    /**
+     * Limits how fast each client address can send requests, with a token bucket per address.
+     * Requests over the rate are answered with a 503 and a {@code Retry-After} header.
+     * @param requestsPerSecond the sustained rate per client, or 0 to stop limiting, the default
+     * @param burst how many requests a client can send at once after being idle
+     * @throws IllegalArgumentException if the rate is negative or the burst is below 1
+     */
+    public static void rateLimit(double requestsPerSecond, int burst) {
+        admission.rateLimit(requestsPerSecond, burst);
+    }
+
+    /**
+     * Sets the {@code Retry-After} sent with 503 responses.
+     * @param seconds how long clients should wait before retrying, 1 by default
+     */
+    public static void retryAfter(int seconds) {
+        if (seconds < 0) {
+            throw new IllegalArgumentException("Retry-After must not be negative");
+        }
+        retryAfter = seconds;
+    }
+
+    /**
+     * Enables HTTP/2 over cleartext connections (h2c), for clients that start with the HTTP/2 preface or that
+     * ask to upgrade an HTTP/1.1 request with {@code Upgrade: h2c}. Streams are answered by the same routes and
+     * static files, concurrently over a single connection. HTTP/1.1 keeps working either way.
+     * @param enabled whether HTTP/2 is accepted, false by default
+     */
+    public static void http2(boolean enabled) {
+        http2 = enabled;
+    }
+
+    /**
+     * Caps the HTTP/2 connections the NIO engine serves at once. Each one holds a worker thread for as long as it
+     * is open, reading its frames, so without a cap HTTP/2 clients could take every worker. Beyond the cap,
+     * {@code Upgrade: h2c} requests are answered over HTTP/1.1 and connections opening with the HTTP/2 preface
+     * get a 503. The blocking engine already spends a thread per connection and is not affected.
+     * @param max the maximum number of concurrent HTTP/2 connections, a quarter of the default pool by default
+     * @throws IllegalArgumentException if max is below 1
+     */
+    public static void maxHttp2Connections(int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("The HTTP/2 connection limit must be positive");
+        }
+        maxHttp2Connections = max;
+    }
+
+    /**
+     * Selects the engine used by {@link #start(int)}.
+     * @param serverEngine the engine that accepts and serves connections
+     */
+    public static void engine(Engine serverEngine) {
+        engine = serverEngine;
+    }
+
+    /**
+     * Registers a POST route with the specified URL and callback handler.
+     * @param url the URL path pattern for the POST request
+     * @param callback the handler to process the POST request
+     * @throws IllegalArgumentException if the pattern is malformed or conflicts with a registered route
+     */
     public static void post(String url, HTTPServerHandler callback) {
-        logger.warning("POST method is not implemented yet.");
+        routes.add(HTTPMethod.POST, url, callback);
     }
 
+    /**
+     * Registers a PUT route with the specified URL and callback handler.
+     * @param url the URL path pattern for the PUT request
+     * @param callback the handler to process the PUT request
+     * @throws IllegalArgumentException if the pattern is malformed or conflicts with a registered route
+     */
     public static void put(String url, HTTPServerHandler callback) {
-        logger.warning("PUT method is not implemented yet.");
+        routes.add(HTTPMethod.PUT, url, callback);
     }
 
+    /**
+     * Registers a DELETE route with the specified URL and callback handler.
+     * @param url the URL path pattern for the DELETE request
+     * @param callback the handler to process the DELETE request
+     * @throws IllegalArgumentException if the pattern is malformed or conflicts with a registered route
+     */
     public static void delete(String url, HTTPServerHandler callback) {
-        logger.warning("DELETE method is not implemented yet.");
+        routes.add(HTTPMethod.DELETE, url, callback);
     }
 
     /**
      * Main method to start the HTTP server.
-     * The server listens on given port and handles incoming requests.
+     * The server listens on given port and hands every accepted connection to the configured executor,
+     * so a slow client or handler does not block the accept loop.
      * @param port the server port to listen on
      */
     public static void start(int port) {
-        ServerSocket serverSocket = null;
         running = true;
+        if (engine == Engine.NIO) {
+            startNio(port);
+            return;
+        }
         try {
-            serverSocket = new ServerSocket(port);
+            serverSocket = ServerSocketChannel.open().socket();
+            serverSocket.bind(new InetSocketAddress(port));
             logger.info("Running Server... on port: " + port);
         } catch (IOException e) {
             logger.warning("Could not listen on port: " + port);
             System.exit(1);
         }
-        Socket clientSocket = null;
+        ExecutorService workers = executor != null ? executor : defaultExecutor();
+        HTTPServerImpl.workers = workers;
         while (running){
             try {
-                clientSocket = acceptClient(serverSocket);
-                handleRequest(clientSocket);
+                Socket clientSocket = acceptClient(serverSocket);
+                dispatchClient(workers, clientSocket);
             } catch (IOException e) {
-                logger.severe("Error handling request: " + e.getMessage());
+                if (running) {
+                    logger.severe("Error accepting connection: " + e.getMessage());
+                }
             }
         }
         try {
@@ -87,6 +313,33 @@ public class HTTPServerImpl {
         } catch (IOException e) {
             logger.warning("Could not close the server socket.");
         }
+        if (workers != executor) {
+            workers.shutdown();
+        }
+    }
+
+    /**
+     * Starts the non-blocking engine with one event loop per available core.
+     * Handler invocation runs on the configured executor, so the event loops never block on application code.
+     * @param port the server port to listen on
+     */
+    private static void startNio(int port) {
+        ExecutorService workers = executor != null ? executor : defaultExecutor();
+        HTTPServerImpl.workers = workers;
+        NIOServerEngine server = new NIOServerEngine(workers, Runtime.getRuntime().availableProcessors(),
+                keepAliveTimeout, maxKeepAliveRequests, maxHttp2Connections);
+        nioServer = server;
+        try {
+            server.start(port);
+        } catch (IOException e) {
+            logger.warning("Could not listen on port: " + port);
+            System.exit(1);
+        } finally {
+            nioServer = null;
+            if (workers != executor) {
+                workers.shutdown();
+            }
+        }
     }
 
     /**
@@ -104,233 +357,972 @@ public class HTTPServerImpl {
      * @throws IOException if an I/O error occurs when accepting the connection
      */
     private static Socket acceptClient(ServerSocket serverSocket) throws IOException {
-        logger.info("Waiting for a client connection...");
+        logger.fine("Waiting for a client connection...");
         Socket clientSocket;
         clientSocket = serverSocket.accept();
-        logger.info("New connection accepted");
+        logger.fine("New connection accepted");
         return clientSocket;
     }
 
     /**
-     * Handles the incoming request from the client.
-     * It reads the request line, validates it, and processes the request based on the URI.
+     * Submits the accepted connection to the executor.
+     * If the executor refuses the task the connection is answered with a 503 and closed.
+     * @param workers the executor that serves the connection
+     * @param clientSocket the socket connected to the client
+     */
+    private static void dispatchClient(ExecutorService workers, Socket clientSocket) {
+        try {
+            workers.execute(() -> serveClient(clientSocket));
+        } catch (RejectedExecutionException e) {
+            logger.warning("Connection rejected, executor is saturated or shut down.");
+            try {
+                OutputStream out = clientSocket.getOutputStream();
+                handleErrorRequest(out, HttpServerErrors.SERVICE_UNAVAILABLE_503, false);
+                out.flush();
+                clientSocket.close();
+            } catch (IOException ignored) {
+                // The client is gone, nothing else to do.
+            }
+        }
+    }
+
+    /**
+     * Serves a single connection on a worker thread, logging any I/O failure.
+     * @param clientSocket the socket connected to the client
+     */
+    private static void serveClient(Socket clientSocket) {
+        metrics.connectionOpened();
+        try {
+            handleConnection(clientSocket);
+        } catch (IOException e) {
+            logger.fine("Connection closed: " + e.getMessage());
+        } finally {
+            metrics.connectionClosed();
+            try {
+                clientSocket.close();
+            } catch (IOException ignored) {
+                // Already closed by the client.
+            }
+        }
+    }
+
+    /**
+     * Creates the default connection executor.
+     * Virtual threads are used when the runtime provides them (Java 21+), otherwise a bounded
+     * platform pool is created that rejects tasks once it and its queue are full, so overflow is answered with
+     * a 503 and never served on the accepting thread or an event loop.
+     * @return the executor to serve connections with
+     */
+    private static ExecutorService defaultExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            logger.info("Serving connections on virtual threads");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.log(Level.FINE, "Virtual threads not available, using a platform thread pool", e);
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread t = new Thread(r, "http-worker-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        logger.info("Serving connections on a pool of " + POOL_SIZE + " platform threads");
+        return new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(POOL_QUEUE_CAPACITY), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Serves every request received on a connection.
+     * Requests are read and answered in order, so pipelined requests are answered one after another on the same
+     * socket. The connection stays open while the client asks for it, until it is idle for longer than the
+     * keep-alive timeout or it reaches the maximum number of requests per connection.
+     * A connection that switches to HTTP/2 is served by {@link Http2Connection} from then on.
      * @param clientSocket the socket connected to the client
      * @throws IOException if an I/O error occurs when reading from or writing to the socket
      */
-    private static void handleRequest(Socket clientSocket) throws IOException {
-        BufferedReader in = new BufferedReader( new InputStreamReader( clientSocket.getInputStream()));
-        String line = in.readLine();
-        if (line == null || line.split(" ").length <= 1) {
-            handleErrorRequest(clientSocket, HttpServerErrors.BAD_REQUEST_400);
-            clientSocket.close();
-            return;
+    private static void handleConnection(Socket clientSocket) throws IOException {
+        clientSocket.setSoTimeout(keepAliveTimeout);
+        SocketInputStream in = new SocketInputStream(clientSocket.getInputStream());
+        SocketOutputStream out = new SocketOutputStream(clientSocket);
+        int served = 0;
+        boolean keepAlive = true;
+        while (keepAlive && running) {
+            HTTPFrameworkRequest request;
+            try {
+                request = in.readRequest();
+            } catch (SocketTimeoutException e) {
+                return;
+            } catch (HttpServerErrors e) {
+                handleErrorRequest(out, e, false);
+                out.flush();
+                return;
+            }
+            if (request == null) {
+                return;
+            }
+            request.setRemoteAddress(clientSocket.getInetAddress());
+            if (startsHttp2(request)) {
+                new Http2Connection(in, out, clientSocket.getInetAddress(), workers, keepAliveTimeout).serve(request);
+                return;
+            }
+            served++;
+            request.setKeepAlive(request.isKeepAlive() && served < maxKeepAliveRequests);
+            keepAlive = handleRequest(request, in, out);
+            out.flush();
         }
-        String[] parts = line.split(" ");
-        String uri = parts[1]; // images/logo.png
-        String path = obtainFilePath(uri);
+    }
+
+    /**
+     * Tells whether a request head starts HTTP/2 on its connection, with the preface or an h2c upgrade.
+     * @param request the first request head read after the previous response
+     * @return true if HTTP/2 is enabled and the client asked for it
+     */
+    static boolean startsHttp2(HTTPFrameworkRequest request) {
+        return http2 && (Http2Connection.isPriorKnowledge(request) || Http2Connection.isUpgrade(request));
+    }
 
+    /**
+     * Handles a parsed request, dispatching it to a registered route or to the static files.
+     * The path is looked up once and the handler for the request method is taken from the matched route.
+     * OPTIONS requests without a handler are answered with the allowed methods, and methods a route or
+     * the static files do not answer get a 405 listing the allowed ones.
+     * The request body is exposed to the handler as a stream over the connection input; whatever the
+     * handler leaves unread is discarded before the response, or the connection is closed if that is too much.
+     * The time to answer is recorded in the metrics of the matched route, or of the static files.
+     * Requests to routes and static files pass the admission control first, and are shed with a 503 when
+     * the server or the route is at its in-flight limit or the client is over its rate.
+     * Asynchronous responses are waited for on the calling thread.
+     * @param request the request to answer
+     * @param in the connection input, positioned at the first byte of the request body
+     * @param out the stream connected to the client
+     * @return true if the connection can serve another request
+     * @throws IOException if an I/O error occurs when writing to the socket
+     */
+    static boolean handleRequest(HTTPFrameworkRequest request, InputStream in, OutputStream out) throws IOException {
+        return handleRequest(request, in, out, null).join();
+    }
+
+    /**
+     * Handles a parsed request like {@link #handleRequest(HTTPFrameworkRequest, InputStream, OutputStream)},
+     * releasing the calling thread while an asynchronous response is pending.
+     * @param request the request to answer
+     * @param in the connection input, positioned at the first byte of the request body
+     * @param out the stream connected to the client
+     * @param resume the executor that writes an asynchronous response once it completes, or null to wait for
+     * it on the calling thread
+     * @return a future completing with true if the connection can serve another request, already complete
+     * unless the response is asynchronous; it fails with an {@link UncheckedIOException} if writing
+     * the asynchronous response fails
+     * @throws IOException if an I/O error occurs when writing to the socket
+     */
+    static CompletableFuture<Boolean> handleRequest(HTTPFrameworkRequest request, InputStream in, OutputStream out,
+                                                    Executor resume) throws IOException {
+        String path = obtainFilePath(request.getUrl());
+        HTTPMethod method = HTTPMethod.from(request.getMethod());
+        ResponseOutputStream stream = null;
+        long started = System.nanoTime();
+        ServerMetrics.RouteMetrics timed = null;
+        boolean failed = false;
+        boolean admitted = false;
+        AdmissionControl.Limit held = null;
         try {
-            if (routes.containsKey(path)) {
-                HTTPFrameworkResponse response = routes.get(path).handleRequest(new HTTPFrameworkRequest(uri), new HTTPFrameworkResponse());
-                handleDynamicRoute(response, clientSocket);
+            attachBody(request, in, out);
+            Router.RouteMatch route = routes.match(path);
+            if (route != null) {
+                HTTPServerHandler handler = method == null ? null : route.getHandler(method);
+                if (method != null) {
+                    timed = metrics.route(route.getPattern(), method);
+                }
+                if (handler != null) {
+                    held = admission.admit(request.getRemoteAddress(), route.getPattern());
+                    admitted = true;
+                    request.setPathVariables(route.getVariables());
+                    stream = new ResponseOutputStream(request, out);
+                    HTTPFrameworkResponse response = handler.handleRequest(request, stream.response());
+                    if (response.getAsync() != null && !stream.isWritten()) {
+                        finishBody(request);
+                        ServerMetrics.RouteMetrics pending = timed;
+                        timed = null;
+                        admitted = false;
+                        return completeAsync(request, response, out, resume, pending, held, started);
+                    }
+                    if (stream.isWritten()) {
+                        response = stream.response();
+                        stream.close();
+                        finishBody(request);
+                    } else {
+                        finishBody(request);
+                        handleDynamicRoute(request, response, out);
+                    }
+                    failed = response.getStatus() >= 400;
+                    if (failed) {
+                        metrics.error(response.getStatus());
+                    }
+                } else {
+                    failed = method != HTTPMethod.OPTIONS;
+                    finishBody(request);
+                    handleUnsupportedMethod(request, method, route.getAllow(), out);
+                }
+            } else if ((method == HTTPMethod.GET || method == HTTPMethod.HEAD) && path.equals(metricsPath)) {
+                finishBody(request);
+                sendMetrics(request, out);
+            } else if (method == HTTPMethod.GET || method == HTTPMethod.HEAD) {
+                timed = metrics.route(ServerMetrics.STATIC_ROUTE, method);
+                held = admission.admit(request.getRemoteAddress(), null);
+                admitted = true;
+                finishBody(request);
+                handleStaticRoute(request, path, out);
+            } else {
+                finishBody(request);
+                handleUnsupportedMethod(request, method, path.equals("*") ? SERVER_ALLOW : STATIC_ALLOW, out);
             }
-            handleStaticRoute(path, clientSocket);
         } catch (HttpServerErrors e) {
+            failed = true;
             logger.warning("Error handling request: " + e.getMessage());
-            handleErrorRequest(clientSocket, e);
-            clientSocket.close();
+            if (stream != null && stream.isCommitted()) {
+                return CompletableFuture.completedFuture(false);
+            }
+            finishBody(request);
+            sendError(request, out, e, null);
+        } catch (IOException e) {
+            throw e;
         } catch (Exception e) {
-            BufferedOutputStream outData = new BufferedOutputStream(clientSocket.getOutputStream());
-            logger.severe("Unexpected error: " + e.getMessage());
-            logger.severe("Stack trace: ");
-            e.printStackTrace();
-            sendResponse(new PrintWriter(clientSocket.getOutputStream(), true), outData,"500 Internal Server Error");
-            outData.close();
+            failed = true;
+            logger.log(Level.SEVERE, "Unexpected error: " + e.getMessage(), e);
+            if (stream != null && stream.isCommitted()) {
+                // The head is already on the wire; closing is the only way left to signal the failure.
+                return CompletableFuture.completedFuture(false);
+            }
+            request.setKeepAlive(false);
+            sendError(request, out, HttpServerErrors.INTERNAL_SERVER_ERROR_500, null);
+            return CompletableFuture.completedFuture(false);
+        } finally {
+            if (admitted) {
+                admission.release(held);
+            }
+            if (timed != null) {
+                timed.record(System.nanoTime() - started, failed);
+            }
         }
-        in.close();
-        clientSocket.close();
+        return CompletableFuture.completedFuture(request.isKeepAlive());
     }
 
     /**
-     * Handles error requests by sending an appropriate HTTP error response.
-     * It constructs the response based on the provided HttpServerErrors instance.
-     * @param clientSocket the socket connected to the client
-     * @param error the HttpServerErrors instance representing the error
+     * Sends an asynchronous response once its stage completes, or a 504 if it does not complete in time.
+     * The stage is copied before the timeout is applied, so a timeout does not complete the handler's own stage.
+     * @param request the request being answered
+     * @param response the response holding the stage
+     * @param out the stream connected to the client
+     * @param resume the executor that writes the response, or null to wait and write on the calling thread
+     * @param route the metrics of the route, or null
+     * @param held the route limit the request was admitted under, released once the response is written
+     * @param started when the request started being handled, from {@link System#nanoTime()}
+     * @return a future completing with true if the connection can serve another request
+     * @throws IOException if waiting on the calling thread and writing the response fails
+     */
+    private static CompletableFuture<Boolean> completeAsync(HTTPFrameworkRequest request, HTTPFrameworkResponse response,
+                                                            OutputStream out, Executor resume, ServerMetrics.RouteMetrics route,
+                                                            AdmissionControl.Limit held, long started) throws IOException {
+        CompletableFuture<HTTPFrameworkResponse> result = response.getAsync().toCompletableFuture().copy()
+                .orTimeout(response.getAsyncTimeout(), TimeUnit.MILLISECONDS);
+        if (resume == null) {
+            HTTPFrameworkResponse completed = null;
+            Throwable error = null;
+            try {
+                completed = result.join();
+            } catch (CompletionException | CancellationException e) {
+                error = e;
+            }
+            return CompletableFuture.completedFuture(sendAsync(request, completed, error, out, route, held, started));
+        }
+        return result.handleAsync((completed, error) -> {
+            try {
+                return sendAsync(request, completed, error, out, route, held, started);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, resume);
+    }
+
+    /**
+     * Writes the outcome of an asynchronous response.
+     * @return true if the connection can serve another request
+     */
+    private static boolean sendAsync(HTTPFrameworkRequest request, HTTPFrameworkResponse response, Throwable error,
+                                     OutputStream out, ServerMetrics.RouteMetrics route, AdmissionControl.Limit held,
+                                     long started) throws IOException {
+        boolean failed = true;
+        try {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof TimeoutException) {
+                cause = HttpServerErrors.GATEWAY_TIMEOUT_504;
+            }
+            if (cause instanceof HttpServerErrors) {
+                logger.warning("Error handling request: " + cause.getMessage());
+                sendError(request, out, (HttpServerErrors) cause, null);
+                return request.isKeepAlive();
+            }
+            if (cause != null || response == null) {
+                logger.log(Level.SEVERE, "Asynchronous handler failed for " + request.getUrl(), cause);
+                request.setKeepAlive(false);
+                sendError(request, out, HttpServerErrors.INTERNAL_SERVER_ERROR_500, null);
+                return false;
+            }
+            handleDynamicRoute(request, response, out);
+            failed = response.getStatus() >= 400;
+            if (failed) {
+                metrics.error(response.getStatus());
+            }
+            return request.isKeepAlive();
+        } finally {
+            admission.release(held);
+            if (route != null) {
+                route.record(System.nanoTime() - started, failed);
+            }
+        }
+    }
+
+    /**
+     * Answers a scrape of the metrics endpoint in the Prometheus text format.
+     * @param request the request being answered
+     * @param out the stream connected to the client
      * @throws IOException if an I/O error occurs when writing to the socket
      */
-    private static void handleErrorRequest(Socket clientSocket, HttpServerErrors error) throws IOException {
-        PrintWriter out = new PrintWriter(clientSocket.getOutputStream(), true);
-        BufferedOutputStream outData = new BufferedOutputStream(clientSocket.getOutputStream());
-        byte[] body = error.getMessage().getBytes(StandardCharsets.UTF_8);
+    private static void sendMetrics(HTTPFrameworkRequest request, OutputStream out) throws IOException {
+        StringBuilder text = new StringBuilder(4096);
+        ExecutorService pool = workers;
+        metrics.writePrometheus(text, pool instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) pool).getQueue().size() : 0);
+        byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+        StringBuilder head = statusLine("200 OK");
+        header(head, "Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        header(head, "Content-Length", body.length);
+        writeHead(out, head, request.isKeepAlive());
+        if (!isHead(request)) {
+            out.write(body);
+        }
+    }
 
-        out.println("HTTP/1.1 " + error.CODE + " " + error.getMessage());
-        out.println("Content-Type: text/plain; charset=UTF-8");
-        addCORSHeaders(out);
-        out.println("Content-Length: " + body.length);
-        out.println();
-        out.flush();
+    /**
+     * Exposes the request body, if the request has one, as a stream over the connection input.
+     * @throws HttpServerErrors if the body framing is invalid or too large, in which case the connection is
+     * closed after the error because the position of the next request is unknown
+     */
+    private static void attachBody(HTTPFrameworkRequest request, InputStream in, OutputStream out) {
+        RequestBodyInputStream body;
+        try {
+            body = RequestBodyInputStream.open(request, in, out, maxBodySize);
+        } catch (HttpServerErrors e) {
+            request.setKeepAlive(false);
+            throw e;
+        }
+        if (body != null) {
+            request.setBody(body);
+        }
+    }
 
-        outData.write(body);
-        outData.flush();
+    /**
+     * Discards the part of the request body the handler did not read, so the next request on the connection
+     * starts where expected. The connection is closed after the response when the rest of the body is
+     * too large to be worth reading, its framing is broken, or the client is still waiting for a 100 Continue.
+     * @param request the request about to be answered
+     */
+    private static void finishBody(HTTPFrameworkRequest request) {
+        if (request.getBody() instanceof RequestBodyInputStream
+                && !((RequestBodyInputStream) request.getBody()).finish(MAX_BODY_DRAIN)) {
+            request.setKeepAlive(false);
+        }
+    }
 
-        outData.close();
-        out.close();
+    /**
+     * Answers a request whose method has no handler: OPTIONS gets a 204 with the allowed methods,
+     * anything else a 405 listing them.
+     * @param request the request being answered
+     * @param method the request method, or null if it is not a known method
+     * @param allow the methods the requested resource answers
+     * @param out the stream connected to the client
+     * @throws IOException if an I/O error occurs when writing to the socket
+     */
+    private static void handleUnsupportedMethod(HTTPFrameworkRequest request, HTTPMethod method, String allow, OutputStream out) throws IOException {
+        if (method == HTTPMethod.OPTIONS) {
+            StringBuilder head = statusLine("204 No Content");
+            header(head, "Allow", allow);
+            addCORSHeaders(head);
+            writeHead(out, head, request.isKeepAlive());
+            return;
+        }
+        logger.fine("Method " + request.getMethod() + " not allowed for " + request.getUrl());
+        sendError(request, out, HttpServerErrors.METHOD_NOT_ALLOWED_405, allow);
+    }
+
+    /**
+     * Handles error requests by sending an appropriate HTTP error response.
+     * It constructs the response based on the provided HttpServerErrors instance.
+     * @param out the stream connected to the client
+     * @param error the HttpServerErrors instance representing the error
+     * @param keepAlive whether the connection stays open after the response
+     * @throws IOException if an I/O error occurs when writing to the socket
+     */
+    static void handleErrorRequest(OutputStream out, HttpServerErrors error, boolean keepAlive) throws IOException {
+        writeError(out, error, null, keepAlive, true);
     }
 
+    /**
+     * Sends an error response to a request, omitting the body for HEAD requests.
+     * @param request the request being answered
+     * @param out the stream connected to the client
+     * @param error the error to report
+     * @param allow the value of the Allow header, or null to omit it
+     * @throws IOException if an I/O error occurs when writing to the socket
+     */
+    private static void sendError(HTTPFrameworkRequest request, OutputStream out, HttpServerErrors error, String allow) throws IOException {
+        writeError(out, error, allow, request.isKeepAlive(), !isHead(request));
+    }
 
+    private static void writeError(OutputStream out, HttpServerErrors error, String allow, boolean keepAlive, boolean withBody) throws IOException {
+        metrics.error(error.CODE);
+        byte[] body = error.getMessage().getBytes(StandardCharsets.UTF_8);
+        StringBuilder head = statusLine(error.getMessage());
+        if (allow != null) {
+            header(head, "Allow", allow);
+        }
+        if (error.CODE == 503) {
+            header(head, "Retry-After", retryAfter);
+        }
+        header(head, "Content-Type", "text/plain; charset=UTF-8");
+        addCORSHeaders(head);
+        header(head, "Content-Length", body.length);
+        writeHead(out, head, keepAlive);
+        if (withBody) {
+            out.write(body);
+        }
+    }
 
     /**
-     * Handles valid routes based on the URI.
-     * It serves files or processes specific requests like "/stop", "/name", and "/books".
-     * @param uri the requested URI
-     * @param clientSocket the socket connected to the client
+     * Handles static routes by sending the requested file from the resources directory.
+     * @param request the request being answered
+     * @param path the requested file path
+     * @param out the stream connected to the client
      * @throws IOException if an I/O error occurs when reading from or writing to the socket
      */
-    private static void handleStaticRoute(String uri, Socket clientSocket) throws IOException {
-        PrintWriter out = new PrintWriter(clientSocket.getOutputStream(), true);
-        BufferedOutputStream outData = new BufferedOutputStream(clientSocket.getOutputStream());
-        sendAnyFile(out, outData,uri);
-        outData.close();
-        out.close();
+    private static void handleStaticRoute(HTTPFrameworkRequest request, String path, OutputStream out) throws IOException {
+        sendAnyFile(request, out, path);
     }
 
     /**
      * Handles dynamic routes by sending the response generated by the route handler.
-     * It writes the response body to the client socket.
-     * @param response the HTTPFrameworkResponse containing the response body
-     * @param clientSocket the socket connected to the client
+     * It writes the status, the headers and the body the handler set to the client socket.
+     * Responses with a status that cannot carry a body (1xx, 204 and 304) are sent without one.
+     * @param request the request being answered
+     * @param response the HTTPFrameworkResponse containing the response status, headers and body
+     * @param out the stream connected to the client
      * @throws IOException if an I/O error occurs when writing to the socket
      */
-    private static void handleDynamicRoute(HTTPFrameworkResponse response, Socket clientSocket) throws IOException {
-        PrintWriter out = new PrintWriter(clientSocket.getOutputStream(), true);
-        BufferedOutputStream outData = new BufferedOutputStream(clientSocket.getOutputStream());
-        String responseRaw = response.getBody();
-        sendResponse(out, outData, responseRaw);
-        outData.close();
-        out.close();
+    private static void handleDynamicRoute(HTTPFrameworkRequest request, HTTPFrameworkResponse response, OutputStream out) throws IOException {
+        StringBuilder head = responseHead(response);
+        if (!allowsBody(response.getStatus())) {
+            writeHead(out, head, request.isKeepAlive());
+            return;
+        }
+        ByteBuffer body = response.getBodyBuffer();
+        header(head, "Content-Length", body.remaining());
+        writeHead(out, head, request.isKeepAlive());
+        if (!isHead(request)) {
+            writeBuffer(out, body);
+        }
+    }
+
+    /**
+     * Writes the head of a response whose body the handler streams through {@link ResponseOutputStream}.
+     * Responses with a status that cannot carry a body get no framing header at all.
+     * @param request the request being answered
+     * @param response the response whose body is being streamed
+     * @param out the stream connected to the client
+     * @param chunked whether the body is sent with chunked encoding rather than an announced length
+     * @throws IOException if an I/O error occurs when writing to the socket
+     */
+    static void writeStreamingHead(HTTPFrameworkRequest request, HTTPFrameworkResponse response, OutputStream out, boolean chunked) throws IOException {
+        StringBuilder head = responseHead(response);
+        if (!allowsBody(response.getStatus())) {
+            writeHead(out, head, request.isKeepAlive());
+            return;
+        }
+        if (chunked) {
+            header(head, "Transfer-Encoding", "chunked");
+        } else if (response.getContentLength() >= 0) {
+            header(head, "Content-Length", response.getContentLength());
+        }
+        writeHead(out, head, request.isKeepAlive());
+    }
+
+    /**
+     * Starts the head of a handler response: its status line, the headers the handler set and the defaults
+     * for the ones it did not (a plain text Content-Type and the CORS headers). Framing and connection
+     * headers are left to the server.
+     * @param response the response produced by the handler
+     * @return the head being built, without framing headers
+     */
+    private static StringBuilder responseHead(HTTPFrameworkResponse response) {
+        StringBuilder head = statusLine(reasonPhrase(response.getStatus()));
+        Map<String, String> headers = response.getHeaders();
+        if (!headers.containsKey("Content-Type") && allowsBody(response.getStatus())) {
+            header(head, "Content-Type", "text/plain; charset=UTF-8");
+        }
+        if (!headers.containsKey("Access-Control-Allow-Origin")) {
+            addCORSHeaders(head);
+        }
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            if (!isManagedHeader(entry.getKey())) {
+                header(head, entry.getKey(), entry.getValue());
+            }
+        }
+        return head;
+    }
+
+    private static boolean isManagedHeader(String name) {
+        return name.equalsIgnoreCase("Content-Length") || name.equalsIgnoreCase("Transfer-Encoding")
+                || name.equalsIgnoreCase("Connection") || name.equalsIgnoreCase("Keep-Alive");
+    }
+
+    static boolean allowsBody(int status) {
+        return status >= 200 && status != 204 && status != 304;
+    }
+
+    /**
+     * Returns the status code with its standard reason phrase, as written in the status line.
+     * @param status the status code
+     * @return e.g. {@code 201 Created}, or the bare code followed by a space for unregistered codes
+     */
+    static String reasonPhrase(int status) {
+        switch (status) {
+            case 100: return "100 Continue";
+            case 200: return "200 OK";
+            case 201: return "201 Created";
+            case 202: return "202 Accepted";
+            case 204: return "204 No Content";
+            case 206: return "206 Partial Content";
+            case 301: return "301 Moved Permanently";
+            case 302: return "302 Found";
+            case 303: return "303 See Other";
+            case 304: return "304 Not Modified";
+            case 307: return "307 Temporary Redirect";
+            case 308: return "308 Permanent Redirect";
+            case 400: return "400 Bad Request";
+            case 401: return "401 Unauthorized";
+            case 403: return "403 Forbidden";
+            case 404: return "404 Not Found";
+            case 405: return "405 Method Not Allowed";
+            case 409: return "409 Conflict";
+            case 410: return "410 Gone";
+            case 412: return "412 Precondition Failed";
+            case 413: return "413 Payload Too Large";
+            case 414: return "414 URI Too Long";
+            case 415: return "415 Unsupported Media Type";
+            case 416: return "416 Range Not Satisfiable";
+            case 422: return "422 Unprocessable Entity";
+            case 429: return "429 Too Many Requests";
+            case 431: return "431 Request Header Fields Too Large";
+            case 500: return "500 Internal Server Error";
+            case 501: return "501 Not Implemented";
+            case 502: return "502 Bad Gateway";
+            case 503: return "503 Service Unavailable";
+            case 504: return "504 Gateway Timeout";
+            default: return status + " ";
+        }
     }
 
     /**
      * Sends a file response to the client.
-     * It reads the file from the resources directory and sends it back with the appropriate content type.
-     * @param out the PrintWriter to write the response
-     * @param outData the BufferedOutputStream to write the file data
+     * The file and its response head come from the static file cache, which only touches the disk
+     * when the file is not cached or changed since it was cached. Files above the zero-copy threshold
+     * are transferred from the file to the socket without passing through the heap.
+     * Conditional requests whose validators match the current file version get a 304 without body.
+     * The representation is negotiated with the client's Accept-Encoding, preferring precompressed files.
+     * GET requests with a Range header, whose If-Range still matches, get only the requested bytes.
+     * @param request the request being answered
+     * @param out the stream connected to the client
      * @param filePath the path of the file to be sent
      * @param contentType the content type of the file
      */
-    private static void sendFileResponse(PrintWriter out, BufferedOutputStream outData, String filePath, String contentType) throws IOException {
-        File file = new File(RESOURCES_PATH + filePath);
-        if (!file.exists()) {
+    private static void sendFileResponse(HTTPFrameworkRequest request, OutputStream out, String filePath, String contentType) throws IOException {
+        StaticFileCache.CachedFile file;
+        try {
+            file = staticCache.negotiate(staticCache.get(Paths.get(RESOURCES_PATH + filePath), contentType),
+                    request.getHeader("Accept-Encoding"));
+        } catch (NoSuchFileException e) {
+            throw HttpServerErrors.NOT_FOUND_404;
+        } catch (IOException e) {
+            logger.warning("File not found: " + filePath);
             throw HttpServerErrors.NOT_FOUND_404;
         }
-        try {
-            byte[] fileData = new byte[(int) file.length()];
-            FileInputStream fileIn = new FileInputStream(file);
-            fileIn.read(fileData);
-            fileIn.close();
+        if (file.isNotModified(request.getHeader("If-None-Match"), request.getHeader("If-Modified-Since"))) {
+            writeHead(out, file.notModifiedHead, request.isKeepAlive());
+            return;
+        }
+        String range = request.getHeader("Range");
+        if (range != null && !isHead(request) && file.matchesIfRange(request.getHeader("If-Range"))) {
+            long[] ranges = ByteRanges.parse(range, file.length);
+            if (ranges != null) {
+                sendRanges(request, out, file, ranges);
+                return;
+            }
+        }
+        writeHead(out, file.head, request.isKeepAlive());
+        if (isHead(request)) {
+            return;
+        }
+        writeRange(out, file, 0, file.length);
+    }
 
-            out.println("HTTP/1.1 200 OK");
-            out.println("Content-Type: " + contentType);
-            out.println("Content-Length: " + fileData.length);
-            out.println();
+    /**
+     * Answers a Range request with a 206 carrying one range, or a multipart/byteranges body for several,
+     * or with a 416 when no range overlaps the file. Every part is sent straight from its file position.
+     * @param request the request being answered
+     * @param out the stream connected to the client
+     * @param file the representation the ranges apply to
+     * @param ranges the inclusive first and last byte of each range, sorted and coalesced
+     * @throws IOException if an I/O error occurs when reading from or writing to the socket
+     */
+    private static void sendRanges(HTTPFrameworkRequest request, OutputStream out, StaticFileCache.CachedFile file, long[] ranges) throws IOException {
+        if (ranges.length == 0) {
+            HttpServerErrors error = HttpServerErrors.RANGE_NOT_SATISFIABLE_416;
+            metrics.error(error.CODE);
+            byte[] body = error.getMessage().getBytes(StandardCharsets.UTF_8);
+            StringBuilder head = statusLine(error.getMessage());
+            header(head, "Content-Range", "bytes */" + file.length);
+            header(head, "Content-Type", "text/plain; charset=UTF-8");
+            addCORSHeaders(head);
+            header(head, "Content-Length", body.length);
+            writeHead(out, head, request.isKeepAlive());
+            out.write(body);
+            return;
+        }
+        if (ranges.length == 2) {
+            long count = ranges[1] - ranges[0] + 1;
+            writeHead(out, file.partialHead(file.contentType, contentRange(ranges[0], ranges[1], file.length), count), request.isKeepAlive());
+            writeRange(out, file, ranges[0], count);
+            return;
+        }
+        String boundary = String.format("%016x", ThreadLocalRandom.current().nextLong());
+        byte[][] partHeads = new byte[ranges.length / 2][];
+        long length = ByteRanges.size(ranges);
+        for (int i = 0; i < partHeads.length; i++) {
+            partHeads[i] = ("\r\n--" + boundary + "\r\n"
+                    + "Content-Type: " + file.contentType + "\r\n"
+                    + "Content-Range: " + contentRange(ranges[i * 2], ranges[i * 2 + 1], file.length) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.ISO_8859_1);
+            length += partHeads[i].length;
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        length += closing.length;
+        writeHead(out, file.partialHead("multipart/byteranges; boundary=" + boundary, null, length), request.isKeepAlive());
+        for (int i = 0; i < partHeads.length; i++) {
+            out.write(partHeads[i]);
+            writeRange(out, file, ranges[i * 2], ranges[i * 2 + 1] - ranges[i * 2] + 1);
+        }
+        out.write(closing);
+    }
 
-            outData.write(fileData, 0, fileData.length);
-        } catch (IOException e) {
-            logger.warning("File not found: " + filePath);
-            sendResponse(out, outData,"404 Not Found");
+    private static String contentRange(long first, long last, long length) {
+        return "bytes " + first + "-" + last + "/" + length;
+    }
+
+    /**
+     * Writes part of a file body, from memory when it is cached, otherwise transferred from the file.
+     * @param out the stream connected to the client
+     * @param file the representation being sent
+     * @param position the offset of the first byte to send
+     * @param count the number of bytes to send
+     * @throws IOException if an I/O error occurs when reading from or writing to the socket
+     */
+    private static void writeRange(OutputStream out, StaticFileCache.CachedFile file, long position, long count) throws IOException {
+        if (file.isStreamed()) {
+            ConnectionOutputStream.transfer(out, file.path, position, count);
+        } else {
+            out.write(file.body, (int) position, (int) count);
         }
     }
 
     /**
      * Sends any file based on the provided file path.
      * It determines the content type based on the file extension and sends the file response.
-     * @param out the PrintWriter to write the response
-     * @param outData the BufferedOutputStream to write the file data
+     * @param request the request being answered
+     * @param out the stream connected to the client
      * @param filePath the path of the file to be sent
      * @throws IOException if an I/O error occurs when reading from or writing to the socket
      */
-    private static void sendAnyFile(PrintWriter out, BufferedOutputStream outData, String filePath) throws IOException {
-        File file = new File(RESOURCES_PATH+filePath);
-        if (!file.exists()) {
-            throw HttpServerErrors.NOT_FOUND_404;
-        }
+    private static void sendAnyFile(HTTPFrameworkRequest request, OutputStream out, String filePath) throws IOException {
         if(filePath.contains(".png") || filePath.contains(".jpg") || filePath.contains(".jpeg")) {
-            sendFileResponse(out, outData, filePath, "image/png");
+            sendFileResponse(request, out, filePath, "image/png");
         } else if(filePath.contains(".css")) {
-            sendFileResponse(out, outData, filePath, "text/css");
+            sendFileResponse(request, out, filePath, "text/css");
         } else if(filePath.contains(".js")) {
-            sendFileResponse(out, outData, filePath, "application/javascript");
+            sendFileResponse(request, out, filePath, "application/javascript");
         } else if(filePath.contains(".html")) {
-            sendFileResponse(out, outData, filePath, "text/html");
+            sendFileResponse(request, out, filePath, "text/html");
         } else {
-            sendFileResponse(out, outData, filePath, "application/octet-stream");
+            sendFileResponse(request, out, filePath, "application/octet-stream");
         }
     }
 
 
 
     /**
-     * Sends a JSON response to the client.
-     * It constructs a JSON string and sends it back with the appropriate content type.
-     * @param out the PrintWriter to write the response
-     * @param outData the BufferedOutputStream to write the JSON data
-     * @param jsonContent the JSON content to be sent
+     * Writes the remaining bytes of a buffer, straight from its array when it has one.
+     * @param out the stream connected to the client
+     * @param buffer the bytes to write
      * @throws IOException if an I/O error occurs when writing to the socket
      */
-    private static void sendJSONResponse(PrintWriter out, BufferedOutputStream outData, String jsonContent) throws IOException {
-        byte[] body = jsonContent.getBytes(StandardCharsets.UTF_8);
-        out.println("HTTP/1.1 200 OK");
-        out.println("Content-Type: application/json; charset=UTF-8");
-        addCORSHeaders(out);
-        out.println("Content-Length: " + body.length);
-        out.println();
-        out.flush();
-        outData.write(body);
-        outData.flush();
-    }
-
-
-    /**
-     * Sends a plain text response to the client.
-     * It constructs a response with the given content and sends it back with the appropriate headers.
-     * @param out the PrintWriter to write the response
-     * @param outData the BufferedOutputStream to write the response data
-     * @param content the content to be sent in the response
-     * @throws IOException if an I/O error occurs when writing to the socket
-     */
-    private static void sendResponse(PrintWriter out, BufferedOutputStream outData, String content) throws IOException {
-        byte[] body = content.getBytes(StandardCharsets.UTF_8);
-        out.println("HTTP/1.1 200 OK");
-        out.println("Content-Type: text/plain; charset=UTF-8");
-        addCORSHeaders(out);
-        out.println("Content-Length: " + body.length);
-        out.println();
-        out.flush();
-        outData.write(body);
-        outData.flush();
+    private static void writeBuffer(OutputStream out, ByteBuffer buffer) throws IOException {
+        if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            return;
+        }
+        byte[] copy = new byte[Math.min(buffer.remaining(), 16 * 1024)];
+        ByteBuffer source = buffer.duplicate();
+        while (source.hasRemaining()) {
+            int count = Math.min(copy.length, source.remaining());
+            source.get(copy, 0, count);
+            out.write(copy, 0, count);
+        }
     }
 
 
     private static void stopServer() {
         running = false;
         logger.info("Server is stopping...");
+        NIOServerEngine server = nioServer;
+        if (server != null) {
+            server.stop();
+        }
+        ServerSocket socket = serverSocket;
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                logger.warning("Could not close the server socket.");
+            }
+        }
     }
 
-    private static String obtainFilePath(String uri) {
-        String path = uri.split("\\?")[0];
+    private static String obtainFilePath(String path) {
         if (path.equals("/")) {
             return "/index.html";
         }
         return path;
     }
 
+    /**
+     * Starts the head of a response with its status line.
+     * @param status the status code and reason phrase
+     * @return a builder holding the status line
+     */
+    private static StringBuilder statusLine(String status) {
+        return new StringBuilder(256).append("HTTP/1.1 ").append(status).append("\r\n");
+    }
+
+    /**
+     * Appends a header line to the head of a response.
+     * @param head the response head being built
+     * @param name the header name
+     * @param value the header value
+     */
+    private static void header(StringBuilder head, String name, Object value) {
+        head.append(name).append(": ").append(value).append("\r\n");
+    }
+
+    /**
+     * Completes the head of a response with the connection headers and writes it.
+     * @param out the stream connected to the client
+     * @param head the response head being built
+     * @param keepAlive whether the connection stays open after the response
+     * @throws IOException if an I/O error occurs when writing to the socket
+     */
+    private static void writeHead(OutputStream out, StringBuilder head, boolean keepAlive) throws IOException {
+        writeHead(out, head.toString().getBytes(StandardCharsets.ISO_8859_1), keepAlive);
+    }
+
+    /**
+     * Writes a precomputed response head followed by the connection headers and the empty line.
+     * @param out the stream connected to the client
+     * @param head the status line and headers, each ending with CRLF
+     * @param keepAlive whether the connection stays open after the response
+     * @throws IOException if an I/O error occurs when writing to the socket
+     */
+    private static void writeHead(OutputStream out, byte[] head, boolean keepAlive) throws IOException {
+        out.write(head);
+        out.write(keepAlive ? keepAliveHeaders : CLOSE_HEADERS);
+    }
+
+    private static boolean isHead(HTTPFrameworkRequest request) {
+        return "HEAD".equals(request.getMethod());
+    }
+
+    private static byte[] keepAliveHeaders(int idleTimeoutMillis, int maxRequests) {
+        return ("Connection: keep-alive\r\nKeep-Alive: timeout=" + Math.max(1, idleTimeoutMillis / 1000)
+                + ", max=" + maxRequests + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+    }
+
     /**
      * Adds CORS headers to the response.
-     * @param out the PrintWriter to write the headers
+     * @param head the response head being built
+     */
+    private static void addCORSHeaders(StringBuilder head) {
+        header(head, "Access-Control-Allow-Origin", "*");
+        header(head, "Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
+        header(head, "Access-Control-Allow-Headers", "Content-Type");
+    }
+
+    /**
+     * Buffered input of a blocking connection.
+     * Request heads are parsed in place from a buffer reused for the whole connection, and the bytes read
+     * past a head are served first to its body and then to the next pipelined request.
      */
-    private static void addCORSHeaders(PrintWriter out) {
-        out.println("Access-Control-Allow-Origin: *");
-        out.println("Access-Control-Allow-Methods: GET, POST, PUT, DELETE, OPTIONS");
-        out.println("Access-Control-Allow-Headers: Content-Type");
+    private static final class SocketInputStream extends InputStream {
+        private static final int BUFFER_SIZE = 8 * 1024;
+
+        private final InputStream source;
+        private byte[] buffer = new byte[BUFFER_SIZE];
+        private int position;
+        private int limit;
+
+        private SocketInputStream(InputStream source) {
+            this.source = source;
+        }
+
+        /**
+         * Reads and parses the next request head, leaving the stream at the first byte of its body.
+         * @return the request, or null if the client closed the connection between requests
+         * @throws IOException if an I/O error occurs when reading from the socket
+         * @throws HttpServerErrors if the head is malformed or exceeds the parser limits
+         */
+        private HTTPFrameworkRequest readRequest() throws IOException {
+            while (true) {
+                int scanned = 0;
+                int headEnd;
+                while ((headEnd = HTTPRequestParser.findHeadEnd(buffer, position + scanned, limit)) < 0) {
+                    // Offsets are relative to the position, which moves when fill compacts the buffer.
+                    scanned = Math.max(0, limit - position - 2);
+                    if (!fill()) {
+                        return null;
+                    }
+                }
+                HTTPFrameworkRequest request = HTTPRequestParser.parse(buffer, position, headEnd);
+                position = headEnd;
+                if (request != null) {
+                    return request;
+                }
+            }
+        }
+
+        /**
+         * Reads more bytes after the buffered ones, compacting or growing the buffer when it is full.
+         * @return false if the connection ended
+         */
+        private boolean fill() throws IOException {
+            if (limit == buffer.length) {
+                int buffered = limit - position;
+                if (buffered >= HTTPRequestParser.MAX_HEAD_SIZE) {
+                    throw HttpServerErrors.REQUEST_HEADER_FIELDS_TOO_LARGE_431;
+                }
+                byte[] target = position > 0 ? buffer : new byte[Math.min(buffer.length * 2, HTTPRequestParser.MAX_HEAD_SIZE)];
+                System.arraycopy(buffer, position, target, 0, buffered);
+                buffer = target;
+                position = 0;
+                limit = buffered;
+            }
+            int read = source.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                return false;
+            }
+            metrics.bytesIn(read);
+            limit += read;
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position == limit) {
+                position = 0;
+                limit = 0;
+                if (!fill()) {
+                    return -1;
+                }
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position == limit) {
+                if (len >= buffer.length) {
+                    int read = source.read(bytes, off, len);
+                    if (read > 0) {
+                        metrics.bytesIn(read);
+                    }
+                    return read;
+                }
+                position = 0;
+                limit = 0;
+                if (!fill()) {
+                    return -1;
+                }
+            }
+            int count = Math.min(len, limit - position);
+            System.arraycopy(buffer, position, bytes, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return limit - position + source.available();
+        }
+    }
+
+    /**
+     * Buffered output of a blocking connection that sends file regions straight to the socket channel.
+     */
+    private static final class SocketOutputStream extends ConnectionOutputStream {
+        private final BufferedOutputStream buffered;
+        private final SocketChannel channel;
+
+        private SocketOutputStream(Socket socket) throws IOException {
+            this.buffered = new BufferedOutputStream(socket.getOutputStream());
+            this.channel = socket.getChannel();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            buffered.write(b);
+            metrics.bytesOut(1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int off, int len) throws IOException {
+            buffered.write(bytes, off, len);
+            metrics.bytesOut(len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            buffered.flush();
+        }
+
+        @Override
+        void transferFrom(Path file, long position, long count) throws IOException {
+            flush();
+            metrics.bytesOut(count);
+            if (channel == null) {
+                transfer(buffered, file, position, count);
+                return;
+            }
+            try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+                transferFully(source, position, count, channel);
+            }
+        }
     }
 }
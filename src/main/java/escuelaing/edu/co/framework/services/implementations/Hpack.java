@@ -0,0 +1,402 @@
+package escuelaing.edu.co.framework.services.implementations;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BiConsumer;
+
+/**
+ * HPACK, the header compression of HTTP/2 (RFC 7541).
+ * Both sides keep a table of recently sent fields, so a header repeated on every response, like the
+ * content type or the CORS headers, costs a single byte after its first use. Strings are Huffman coded
+ * whenever that makes them shorter. The Huffman code is canonical, so it is rebuilt at class load from the
+ * code length of each symbol instead of being listed code by code.
+ */
+final class Hpack {
+    /** The table size both sides start with, and the largest this server accepts. */
+    static final int DEFAULT_TABLE_SIZE = 4096;
+    private static final int ENTRY_OVERHEAD = 32;
+    private static final int EOS = 256;
+
+    private static final String[][] STATIC_TABLE = {
+            {":authority", ""}, {":method", "GET"}, {":method", "POST"}, {":path", "/"}, {":path", "/index.html"},
+            {":scheme", "http"}, {":scheme", "https"}, {":status", "200"}, {":status", "204"}, {":status", "206"},
+            {":status", "304"}, {":status", "400"}, {":status", "404"}, {":status", "500"}, {"accept-charset", ""},
+            {"accept-encoding", "gzip, deflate"}, {"accept-language", ""}, {"accept-ranges", ""}, {"accept", ""},
+            {"access-control-allow-origin", ""}, {"age", ""}, {"allow", ""}, {"authorization", ""},
+            {"cache-control", ""}, {"content-disposition", ""}, {"content-encoding", ""}, {"content-language", ""},
+            {"content-length", ""}, {"content-location", ""}, {"content-range", ""}, {"content-type", ""},
+            {"cookie", ""}, {"date", ""}, {"etag", ""}, {"expect", ""}, {"expires", ""}, {"from", ""}, {"host", ""},
+            {"if-match", ""}, {"if-modified-since", ""}, {"if-none-match", ""}, {"if-range", ""},
+            {"if-unmodified-since", ""}, {"last-modified", ""}, {"link", ""}, {"location", ""}, {"max-forwards", ""},
+            {"proxy-authenticate", ""}, {"proxy-authorization", ""}, {"range", ""}, {"referer", ""}, {"refresh", ""},
+            {"retry-after", ""}, {"server", ""}, {"set-cookie", ""}, {"strict-transport-security", ""},
+            {"transfer-encoding", ""}, {"user-agent", ""}, {"vary", ""}, {"via", ""}, {"www-authenticate", ""}};
+
+    /** The Huffman code length of every byte value and of EOS, from RFC 7541 Appendix B. */
+    private static final byte[] CODE_LENGTHS = {
+            13, 23, 28, 28, 28, 28, 28, 28, 28, 24, 30, 28, 28, 30, 28, 28, 28, 28, 28, 28, 28, 28, 30, 28, 28, 28, 28, 28, 28, 28, 28, 28,
+            6, 10, 10, 12, 13, 6, 8, 11, 10, 10, 8, 11, 8, 6, 6, 6, 5, 5, 5, 6, 6, 6, 6, 6, 6, 6, 7, 8, 15, 6, 12, 10,
+            13, 6, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 8, 7, 8, 13, 19, 13, 14, 6,
+            15, 5, 6, 5, 6, 5, 6, 6, 6, 5, 7, 7, 6, 6, 6, 5, 6, 7, 6, 5, 5, 6, 7, 7, 7, 7, 7, 15, 11, 14, 13, 28,
+            20, 22, 20, 20, 22, 22, 22, 23, 22, 23, 23, 23, 23, 23, 24, 23, 24, 24, 22, 23, 24, 23, 23, 23, 23, 21, 22, 23, 22, 23, 23, 24,
+            22, 21, 20, 22, 22, 23, 23, 21, 23, 22, 22, 24, 21, 22, 23, 23, 21, 21, 22, 21, 23, 22, 23, 23, 20, 22, 22, 22, 23, 22, 22, 23,
+            26, 26, 20, 19, 22, 23, 22, 25, 26, 26, 26, 27, 27, 26, 24, 25, 19, 21, 26, 27, 27, 26, 27, 24, 21, 21, 26, 26, 28, 27, 27, 27,
+            20, 24, 20, 21, 22, 21, 21, 23, 22, 22, 25, 25, 24, 24, 26, 23, 26, 27, 26, 26, 27, 27, 27, 27, 27, 28, 27, 27, 27, 27, 27, 26,
+            30};
+    private static final int MAX_CODE_LENGTH = 30;
+    private static final int[] CODES = new int[EOS + 1];
+    /** The symbols ordered by code, and for each length the first code and the position of its first symbol. */
+    private static final int[] SORTED = new int[EOS + 1];
+    private static final int[] FIRST_CODE = new int[MAX_CODE_LENGTH + 2];
+    private static final int[] FIRST_INDEX = new int[MAX_CODE_LENGTH + 2];
+    private static final int[] COUNT = new int[MAX_CODE_LENGTH + 2];
+
+    static {
+        int position = 0;
+        for (int length = 1; length <= MAX_CODE_LENGTH; length++) {
+            for (int symbol = 0; symbol <= EOS; symbol++) {
+                if (CODE_LENGTHS[symbol] == length) {
+                    SORTED[position++] = symbol;
+                    COUNT[length]++;
+                }
+            }
+        }
+        int code = 0;
+        int index = 0;
+        for (int length = 1; length <= MAX_CODE_LENGTH; length++) {
+            FIRST_CODE[length] = code;
+            FIRST_INDEX[length] = index;
+            for (int i = 0; i < COUNT[length]; i++) {
+                CODES[SORTED[index + i]] = code + i;
+            }
+            code = (code + COUNT[length]) << 1;
+            index += COUNT[length];
+        }
+    }
+
+    private Hpack() {
+    }
+
+    /**
+     * The fields added by header blocks, newest first, evicted from the oldest once the table outgrows its size.
+     */
+    private static final class HeaderTable {
+        private final List<String[]> entries = new ArrayList<>();
+        private int size;
+        private int maxSize = DEFAULT_TABLE_SIZE;
+
+        private String[] get(int index) throws IOException {
+            if (index <= 0) {
+                throw new IOException("Invalid HPACK index " + index);
+            }
+            if (index <= STATIC_TABLE.length) {
+                return STATIC_TABLE[index - 1];
+            }
+            int dynamic = index - STATIC_TABLE.length - 1;
+            if (dynamic >= entries.size()) {
+                throw new IOException("Invalid HPACK index " + index);
+            }
+            return entries.get(entries.size() - 1 - dynamic);
+        }
+
+        private void add(String name, String value) {
+            int entrySize = name.length() + value.length() + ENTRY_OVERHEAD;
+            size += entrySize;
+            entries.add(new String[]{name, value});
+            evict();
+        }
+
+        private void resize(int maxSize) {
+            this.maxSize = maxSize;
+            evict();
+        }
+
+        private void evict() {
+            while (size > maxSize && !entries.isEmpty()) {
+                String[] oldest = entries.remove(0);
+                size -= oldest[0].length() + oldest[1].length() + ENTRY_OVERHEAD;
+            }
+        }
+
+        /**
+         * Finds a field, preferring an entry with the same value.
+         * @return the index of an entry with the name and value, the negated index of one with the name only, or 0
+         */
+        private int find(String name, String value) {
+            int nameOnly = 0;
+            for (int i = 0; i < STATIC_TABLE.length; i++) {
+                if (STATIC_TABLE[i][0].equals(name)) {
+                    if (STATIC_TABLE[i][1].equals(value)) {
+                        return i + 1;
+                    }
+                    if (nameOnly == 0) {
+                        nameOnly = -(i + 1);
+                    }
+                }
+            }
+            for (int i = entries.size() - 1; i >= 0; i--) {
+                String[] entry = entries.get(i);
+                if (entry[0].equals(name)) {
+                    int index = STATIC_TABLE.length + entries.size() - i;
+                    if (entry[1].equals(value)) {
+                        return index;
+                    }
+                    if (nameOnly == 0) {
+                        nameOnly = -index;
+                    }
+                }
+            }
+            return nameOnly;
+        }
+    }
+
+    /**
+     * Decodes the header blocks a client sends on one connection, in the order they were sent.
+     */
+    static final class Decoder {
+        private final HeaderTable table = new HeaderTable();
+        private final int maxListSize;
+
+        /**
+         * @param maxListSize the largest decoded header list accepted, counted as HPACK entry sizes
+         */
+        Decoder(int maxListSize) {
+            this.maxListSize = maxListSize;
+        }
+
+        /**
+         * Decodes a complete header block.
+         * @param block the block, the fragments of a HEADERS frame and its CONTINUATION frames joined
+         * @param length the number of bytes of the block
+         * @param sink receives every field in order
+         * @throws IOException if the block is malformed, which breaks the connection since the table is out of sync
+         * @throws HeaderListTooLargeException if the decoded fields exceed the limit; the table stays in sync
+         */
+        void decode(byte[] block, int length, BiConsumer<String, String> sink) throws IOException {
+            int[] position = {0};
+            int listSize = 0;
+            while (position[0] < length) {
+                int b = block[position[0]] & 0xFF;
+                String name;
+                String value;
+                if ((b & 0x80) != 0) {
+                    String[] entry = table.get(readInt(block, position, length, 7));
+                    name = entry[0];
+                    value = entry[1];
+                } else if ((b & 0xE0) == 0x20) {
+                    int size = readInt(block, position, length, 5);
+                    if (size > DEFAULT_TABLE_SIZE) {
+                        throw new IOException("HPACK table size " + size + " above the advertised limit");
+                    }
+                    table.resize(size);
+                    continue;
+                } else {
+                    boolean indexed = (b & 0xC0) == 0x40;
+                    int nameIndex = readInt(block, position, length, indexed ? 6 : 4);
+                    name = nameIndex == 0 ? readString(block, position, length) : table.get(nameIndex)[0];
+                    value = readString(block, position, length);
+                    if (indexed) {
+                        table.add(name, value);
+                    }
+                }
+                listSize += name.length() + value.length() + ENTRY_OVERHEAD;
+                if (listSize <= maxListSize) {
+                    sink.accept(name, value);
+                }
+            }
+            if (listSize > maxListSize) {
+                throw new HeaderListTooLargeException();
+            }
+        }
+    }
+
+    /**
+     * Thrown when a header block decodes to more than the accepted size.
+     */
+    static final class HeaderListTooLargeException extends IOException {
+        HeaderListTooLargeException() {
+            super("Header list too large");
+        }
+    }
+
+    /**
+     * Encodes the header blocks the server sends on one connection. Blocks must be sent in the order they
+     * are encoded, since each one may refer to the fields the previous ones added.
+     */
+    static final class Encoder {
+        private final HeaderTable table = new HeaderTable();
+        private int pendingSize = -1;
+
+        /**
+         * Applies the table size the client allows, announced in the next block.
+         * @param size the client's SETTINGS_HEADER_TABLE_SIZE
+         */
+        void setMaxTableSize(int size) {
+            int bounded = Math.min(size, DEFAULT_TABLE_SIZE);
+            table.resize(bounded);
+            pendingSize = bounded;
+        }
+
+        /**
+         * Encodes one field. Names are lower-cased as HTTP/2 requires, and fields whose value changes from
+         * one response to the next are not added to the table, so they do not evict the ones that repeat.
+         * @param out the block being built
+         * @param name the field name
+         * @param value the field value
+         */
+        void encode(ByteArrayOutputStream out, String name, String value) {
+            if (pendingSize >= 0) {
+                writeInt(out, 0x20, 5, pendingSize);
+                pendingSize = -1;
+            }
+            String lower = name.toLowerCase(Locale.ROOT);
+            int found = table.find(lower, value);
+            if (found > 0) {
+                writeInt(out, 0x80, 7, found);
+                return;
+            }
+            boolean index = isIndexable(lower);
+            writeInt(out, index ? 0x40 : 0x00, index ? 6 : 4, -found);
+            if (found == 0) {
+                writeString(out, lower);
+            }
+            writeString(out, value);
+            if (index) {
+                table.add(lower, value);
+            }
+        }
+
+        private static boolean isIndexable(String name) {
+            switch (name) {
+                case "content-length":
+                case "content-range":
+                case "etag":
+                case "last-modified":
+                case "date":
+                case "location":
+                case "set-cookie":
+                    return false;
+                default:
+                    return true;
+            }
+        }
+    }
+
+    private static int readInt(byte[] block, int[] position, int length, int prefixBits) throws IOException {
+        int mask = (1 << prefixBits) - 1;
+        int value = block[position[0]++] & mask;
+        if (value < mask) {
+            return value;
+        }
+        int shift = 0;
+        int b;
+        do {
+            if (position[0] >= length || shift > 21) {
+                throw new IOException("Malformed HPACK integer");
+            }
+            b = block[position[0]++] & 0xFF;
+            value += (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static String readString(byte[] block, int[] position, int length) throws IOException {
+        if (position[0] >= length) {
+            throw new IOException("Truncated HPACK string");
+        }
+        boolean huffman = (block[position[0]] & 0x80) != 0;
+        int size = readInt(block, position, length, 7);
+        if (size > length - position[0]) {
+            throw new IOException("Truncated HPACK string");
+        }
+        int start = position[0];
+        position[0] += size;
+        return huffman ? huffmanDecode(block, start, start + size)
+                : new String(block, start, size, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Decodes a Huffman coded string one code at a time, walking the canonical code lengths.
+     * The last byte must be padded with the most significant bits of EOS, all ones, and EOS itself is invalid.
+     */
+    static String huffmanDecode(byte[] bytes, int start, int end) throws IOException {
+        StringBuilder decoded = new StringBuilder((end - start) * 8 / 5);
+        int code = 0;
+        int length = 0;
+        boolean ones = true;
+        for (int i = start; i < end; i++) {
+            for (int bit = 7; bit >= 0; bit--) {
+                int value = (bytes[i] >> bit) & 1;
+                code = (code << 1) | value;
+                ones &= value == 1;
+                length++;
+                int offset = code - FIRST_CODE[length];
+                if (offset >= 0 && offset < COUNT[length]) {
+                    int symbol = SORTED[FIRST_INDEX[length] + offset];
+                    if (symbol == EOS) {
+                        throw new IOException("EOS in Huffman coded string");
+                    }
+                    decoded.append((char) symbol);
+                    code = 0;
+                    length = 0;
+                    ones = true;
+                } else if (length >= MAX_CODE_LENGTH) {
+                    throw new IOException("Invalid Huffman code");
+                }
+            }
+        }
+        if (length > 7 || !ones) {
+            throw new IOException("Invalid Huffman padding");
+        }
+        return decoded.toString();
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int flags, int prefixBits, int value) {
+        int mask = (1 << prefixBits) - 1;
+        if (value < mask) {
+            out.write(flags | value);
+            return;
+        }
+        out.write(flags | mask);
+        value -= mask;
+        while (value >= 0x80) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        long bits = 0;
+        for (int i = 0; i < value.length(); i++) {
+            bits += CODE_LENGTHS[value.charAt(i) & 0xFF];
+        }
+        int huffmanLength = (int) ((bits + 7) / 8);
+        if (huffmanLength >= value.length()) {
+            byte[] raw = value.getBytes(StandardCharsets.ISO_8859_1);
+            writeInt(out, 0x00, 7, raw.length);
+            out.write(raw, 0, raw.length);
+            return;
+        }
+        writeInt(out, 0x80, 7, huffmanLength);
+        long buffer = 0;
+        int buffered = 0;
+        for (int i = 0; i < value.length(); i++) {
+            int symbol = value.charAt(i) & 0xFF;
+            buffer = (buffer << CODE_LENGTHS[symbol]) | CODES[symbol];
+            buffered += CODE_LENGTHS[symbol];
+            while (buffered >= 8) {
+                buffered -= 8;
+                out.write((int) (buffer >>> buffered));
+            }
+        }
+        if (buffered > 0) {
+            out.write((int) ((buffer << (8 - buffered)) | (0xFF >>> buffered)));
+        }
+    }
+}
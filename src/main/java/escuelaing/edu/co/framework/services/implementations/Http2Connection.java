@@ -0,0 +1,1069 @@
+package escuelaing.edu.co.framework.services.implementations;
+
+import escuelaing.edu.co.framework.errors.HttpServerErrors;
+import escuelaing.edu.co.framework.models.HTTPFrameworkRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An HTTP/2 connection over cleartext TCP (h2c), started with prior knowledge or by upgrading an HTTP/1.1 request.
+ * Frames are read on the thread that serves the connection, and every stream is handed to the worker executor
+ * as a request of version {@code HTTP/2.0} answered by {@link HTTPServerImpl#handleRequest}, so routes, static
+ * files, admission control and metrics work as they do for HTTP/1.1. The response the server writes for a
+ * stream is translated as it is written: its head becomes an HPACK coded HEADERS frame and its body DATA
+ * frames, sent as the client's flow-control windows allow. Frames of different streams interleave on the
+ * connection, so a page and all its images load over one connection without waiting for each other.
+ * Streams the workers cannot take are refused with REFUSED_STREAM and may be retried.
+ */
+final class Http2Connection {
+    private static final Logger logger = Logger.getLogger(Http2Connection.class.getName());
+    private static final byte[] PREFACE_END = "SM\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] SWITCHING_PROTOCOLS =
+            "HTTP/1.1 101 Switching Protocols\r\nConnection: Upgrade\r\nUpgrade: h2c\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    /** The CRLFCRLF ending a response head, as four bytes read into an int. */
+    private static final int HEAD_END = 0x0D0A0D0A;
+    private static final int FRAME_SIZE = 16384;
+    private static final int MAX_FRAME_SIZE = 16777215;
+    private static final int DEFAULT_WINDOW = 65535;
+    private static final int MAX_CONCURRENT_STREAMS = 100;
+    private static final int MAX_HEADER_LIST_SIZE = HTTPRequestParser.MAX_HEAD_SIZE;
+
+    private static final int DATA = 0x0;
+    private static final int HEADERS = 0x1;
+    private static final int PRIORITY = 0x2;
+    private static final int RST_STREAM = 0x3;
+    private static final int SETTINGS = 0x4;
+    private static final int PUSH_PROMISE = 0x5;
+    private static final int PING = 0x6;
+    private static final int GOAWAY = 0x7;
+    private static final int WINDOW_UPDATE = 0x8;
+    private static final int CONTINUATION = 0x9;
+
+    private static final int FLAG_END_STREAM = 0x1;
+    private static final int FLAG_ACK = 0x1;
+    private static final int FLAG_END_HEADERS = 0x4;
+    private static final int FLAG_PADDED = 0x8;
+    private static final int FLAG_PRIORITY = 0x20;
+
+    private static final int NO_ERROR = 0x0;
+    private static final int PROTOCOL_ERROR = 0x1;
+    private static final int INTERNAL_ERROR = 0x2;
+    private static final int FLOW_CONTROL_ERROR = 0x3;
+    private static final int STREAM_CLOSED = 0x5;
+    private static final int FRAME_SIZE_ERROR = 0x6;
+    private static final int REFUSED_STREAM = 0x7;
+    private static final int COMPRESSION_ERROR = 0x9;
+
+    private final InputStream in;
+    private final OutputStream out;
+    private final InetAddress remote;
+    private final Executor workers;
+    private final int timeout;
+    private final Hpack.Decoder decoder = new Hpack.Decoder(MAX_HEADER_LIST_SIZE);
+    private final Hpack.Encoder encoder = new Hpack.Encoder();
+    private final Object writeLock = new Object();
+    private final Map<Integer, Stream> streams = new ConcurrentHashMap<>();
+    private final byte[] frameHeader = new byte[9];
+    private final ByteArrayOutputStream headerBlock = new ByteArrayOutputStream();
+    private int headerStream;
+    private int headerFlags;
+    private int lastStreamId;
+    private long connectionWindow = DEFAULT_WINDOW;
+    private int initialWindow = DEFAULT_WINDOW;
+    private volatile int peerFrameSize = FRAME_SIZE;
+    private volatile boolean closed;
+
+    /**
+     * A connection error, which ends the connection with a GOAWAY frame carrying its code.
+     */
+    private static final class Http2Exception extends IOException {
+        private final int code;
+
+        private Http2Exception(int code, String message) {
+            super(message);
+            this.code = code;
+        }
+    }
+
+    /**
+     * Creates the connection.
+     * @param in the connection input, positioned right after the request head that started HTTP/2
+     * @param out the connection output
+     * @param remote the client address
+     * @param workers the executor that answers the streams
+     * @param timeout how long the connection may stay idle, and how long a stream waits for the client's
+     * data or flow-control window, in milliseconds
+     */
+    Http2Connection(InputStream in, OutputStream out, InetAddress remote, Executor workers, int timeout) {
+        this.in = in;
+        this.out = out;
+        this.remote = remote;
+        this.workers = workers;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Tells whether a request head is the start of the HTTP/2 connection preface, sent by clients that know
+     * the server speaks HTTP/2.
+     */
+    static boolean isPriorKnowledge(HTTPFrameworkRequest request) {
+        return "PRI".equals(request.getMethod()) && "HTTP/2.0".equals(request.getVersion()) && "*".equals(request.getUrl());
+    }
+
+    /**
+     * Tells whether a request asks to upgrade the connection to h2c. Requests with a body are answered over
+     * HTTP/1.1, since the body would have to be read before switching protocols.
+     */
+    static boolean isUpgrade(HTTPFrameworkRequest request) {
+        String upgrade = request.getHeader("Upgrade");
+        String connection = request.getHeader("Connection");
+        String contentLength = request.getHeader("Content-Length");
+        return "HTTP/1.1".equals(request.getVersion()) && upgrade != null && connection != null
+                && request.getHeader("HTTP2-Settings") != null
+                && hasToken(upgrade, "h2c") && hasToken(connection, "upgrade")
+                && request.getHeader("Transfer-Encoding") == null
+                && (contentLength == null || contentLength.trim().equals("0"));
+    }
+
+    private static boolean hasToken(String header, String token) {
+        for (String part : header.split(",")) {
+            if (part.trim().equalsIgnoreCase(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Serves the connection until the client closes it, it stays idle for the timeout, or a connection error.
+     * @param first the request that started HTTP/2: the preface, or the upgraded request, answered as stream 1
+     * @throws IOException if the connection fails
+     */
+    void serve(HTTPFrameworkRequest first) throws IOException {
+        try {
+            if (isPriorKnowledge(first)) {
+                readPreface(PREFACE_END);
+                sendSettings();
+            } else {
+                synchronized (writeLock) {
+                    out.write(SWITCHING_PROTOCOLS);
+                }
+                sendSettings();
+                byte[] settings = decodeSettings(first.getHeader("HTTP2-Settings"));
+                applySettings(settings, settings.length);
+                first.setVersion("HTTP/2.0");
+                lastStreamId = 1;
+                Stream stream = open(1);
+                stream.request = first;
+                stream.input.end();
+                dispatch(stream);
+                readPreface(PREFACE);
+            }
+            if (!readFrame() || frameHeader[3] != SETTINGS) {
+                throw new Http2Exception(PROTOCOL_ERROR, "The connection preface must end with a SETTINGS frame");
+            }
+            while (readFrame()) {
+                // Frames are handled as they are read.
+            }
+        } catch (Http2Exception e) {
+            logger.fine("HTTP/2 connection error: " + e.getMessage());
+            goAway(e.code);
+        } finally {
+            closed = true;
+            for (Stream stream : streams.values()) {
+                stream.input.fail();
+            }
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    private void readPreface(byte[] expected) throws IOException {
+        byte[] received = readFully(expected.length);
+        if (!Arrays.equals(received, expected)) {
+            throw new Http2Exception(PROTOCOL_ERROR, "Invalid connection preface");
+        }
+    }
+
+    private static byte[] decodeSettings(String header) throws Http2Exception {
+        try {
+            byte[] settings = Base64.getUrlDecoder().decode(header.trim());
+            if (settings.length % 6 != 0) {
+                throw new Http2Exception(PROTOCOL_ERROR, "Malformed HTTP2-Settings header");
+            }
+            return settings;
+        } catch (IllegalArgumentException e) {
+            throw new Http2Exception(PROTOCOL_ERROR, "Malformed HTTP2-Settings header");
+        }
+    }
+
+    /**
+     * Reads and handles one frame.
+     * @return false once the client closed the connection, or left it idle with no stream open
+     */
+    private boolean readFrame() throws IOException {
+        int first;
+        try {
+            first = in.read();
+        } catch (SocketTimeoutException e) {
+            if (streams.isEmpty()) {
+                goAway(NO_ERROR);
+                return false;
+            }
+            return true;
+        }
+        if (first < 0) {
+            return false;
+        }
+        frameHeader[0] = (byte) first;
+        if (in.readNBytes(frameHeader, 1, 8) < 8) {
+            throw new EOFException("Connection closed inside a frame header");
+        }
+        int length = (first << 16) | ((frameHeader[1] & 0xFF) << 8) | (frameHeader[2] & 0xFF);
+        int type = frameHeader[3] & 0xFF;
+        int flags = frameHeader[4] & 0xFF;
+        int streamId = readInt(frameHeader, 5) & 0x7FFFFFFF;
+        if (length > FRAME_SIZE) {
+            throw new Http2Exception(FRAME_SIZE_ERROR, "Frame of " + length + " bytes above the maximum frame size");
+        }
+        byte[] payload = readFully(length);
+        if (headerStream != 0 && type != CONTINUATION) {
+            throw new Http2Exception(PROTOCOL_ERROR, "Header block interrupted by another frame");
+        }
+        switch (type) {
+            case DATA -> onData(streamId, flags, payload);
+            case HEADERS -> onHeaders(streamId, flags, payload);
+            case PRIORITY -> requireLength(payload, 5);
+            case RST_STREAM -> onReset(streamId, payload);
+            case SETTINGS -> onSettings(streamId, flags, payload);
+            case PUSH_PROMISE -> throw new Http2Exception(PROTOCOL_ERROR, "Clients cannot push streams");
+            case PING -> onPing(streamId, flags, payload);
+            case GOAWAY -> requireConnection(streamId);
+            case WINDOW_UPDATE -> onWindowUpdate(streamId, payload);
+            case CONTINUATION -> onContinuation(streamId, flags, payload);
+            default -> {
+                // Unknown frame types are ignored.
+            }
+        }
+        return true;
+    }
+
+    private void onData(int streamId, int flags, byte[] payload) throws IOException {
+        requireStream(streamId);
+        int padding = padding(flags, payload);
+        int start = (flags & FLAG_PADDED) != 0 ? 1 : 0;
+        if (payload.length > 0) {
+            // Bytes are buffered per stream under the stream window, so the connection window is refilled at once.
+            sendWindowUpdate(0, payload.length);
+        }
+        Stream stream = streams.get(streamId);
+        if (stream == null) {
+            if (streamId > lastStreamId) {
+                throw new Http2Exception(PROTOCOL_ERROR, "DATA on idle stream " + streamId);
+            }
+            return;
+        }
+        if (stream.input.isEnded()) {
+            reset(stream, STREAM_CLOSED);
+            return;
+        }
+        byte[] data = Arrays.copyOfRange(payload, start, payload.length - padding);
+        if (!stream.input.receive(data, payload.length - data.length)) {
+            reset(stream, FLOW_CONTROL_ERROR);
+            return;
+        }
+        if (payload.length > data.length) {
+            sendWindowUpdate(streamId, payload.length - data.length);
+        }
+        if ((flags & FLAG_END_STREAM) != 0) {
+            stream.input.end();
+        }
+    }
+
+    private void onHeaders(int streamId, int flags, byte[] payload) throws IOException {
+        requireStream(streamId);
+        int padding = padding(flags, payload);
+        int start = (flags & FLAG_PADDED) != 0 ? 1 : 0;
+        if ((flags & FLAG_PRIORITY) != 0) {
+            start += 5;
+        }
+        if (start > payload.length - padding) {
+            throw new Http2Exception(PROTOCOL_ERROR, "HEADERS frame too short");
+        }
+        headerBlock.reset();
+        headerBlock.write(payload, start, payload.length - padding - start);
+        headerFlags = flags;
+        if ((flags & FLAG_END_HEADERS) != 0) {
+            onHeaderBlock(streamId);
+        } else {
+            headerStream = streamId;
+        }
+    }
+
+    private void onContinuation(int streamId, int flags, byte[] payload) throws IOException {
+        if (streamId == 0 || streamId != headerStream) {
+            throw new Http2Exception(PROTOCOL_ERROR, "Unexpected CONTINUATION frame");
+        }
+        if (headerBlock.size() + payload.length > 2 * MAX_HEADER_LIST_SIZE) {
+            throw new Http2Exception(PROTOCOL_ERROR, "Header block too large");
+        }
+        headerBlock.write(payload, 0, payload.length);
+        if ((flags & FLAG_END_HEADERS) != 0) {
+            headerStream = 0;
+            onHeaderBlock(streamId);
+        }
+    }
+
+    /**
+     * Decodes a complete header block and opens its stream, or ends the request body of an open stream
+     * when the block is a trailer section.
+     */
+    private void onHeaderBlock(int streamId) throws IOException {
+        List<String[]> fields = new ArrayList<>();
+        boolean tooLarge = false;
+        try {
+            decoder.decode(headerBlock.toByteArray(), headerBlock.size(), (name, value) -> fields.add(new String[]{name, value}));
+        } catch (Hpack.HeaderListTooLargeException e) {
+            tooLarge = true;
+        } catch (IOException e) {
+            throw new Http2Exception(COMPRESSION_ERROR, e.getMessage());
+        }
+        boolean endStream = (headerFlags & FLAG_END_STREAM) != 0;
+        if (streamId <= lastStreamId) {
+            Stream stream = streams.get(streamId);
+            if (stream != null && endStream && !stream.input.isEnded()) {
+                // Trailers carry nothing the handlers can read, so they only end the body.
+                stream.input.end();
+            } else if (stream != null) {
+                reset(stream, PROTOCOL_ERROR);
+            }
+            return;
+        }
+        if (streamId % 2 == 0) {
+            throw new Http2Exception(PROTOCOL_ERROR, "Clients must open odd-numbered streams");
+        }
+        lastStreamId = streamId;
+        if (streams.size() >= MAX_CONCURRENT_STREAMS) {
+            writeFrame(RST_STREAM, 0, streamId, code(REFUSED_STREAM));
+            return;
+        }
+        Stream stream = open(streamId);
+        if (endStream) {
+            stream.input.end();
+        }
+        try {
+            if (tooLarge) {
+                throw HttpServerErrors.REQUEST_HEADER_FIELDS_TOO_LARGE_431;
+            }
+            stream.request = request(fields);
+        } catch (HttpServerErrors e) {
+            respondWithError(stream, e);
+            return;
+        }
+        dispatch(stream);
+    }
+
+    /**
+     * Builds the request of a stream from its decoded fields, moving the pseudo-headers to the request line.
+     * Connection-specific headers, which HTTP/2 forbids, are dropped, and split cookies are joined again.
+     * @throws HttpServerErrors BAD_REQUEST_400 if the method or path is missing or invalid
+     */
+    private HTTPFrameworkRequest request(List<String[]> fields) {
+        String method = null;
+        String path = null;
+        String authority = null;
+        StringBuilder cookies = null;
+        for (String[] field : fields) {
+            switch (field[0]) {
+                case ":method" -> method = field[1];
+                case ":path" -> path = field[1];
+                case ":authority" -> authority = field[1];
+                case ":scheme" -> {
+                    // Always http on a cleartext connection.
+                }
+                case "cookie" -> cookies = (cookies == null ? new StringBuilder() : cookies.append("; ")).append(field[1]);
+                default -> {
+                    if (field[0].startsWith(":")) {
+                        throw HttpServerErrors.BAD_REQUEST_400;
+                    }
+                }
+            }
+        }
+        if (method == null || path == null || path.isEmpty()) {
+            throw HttpServerErrors.BAD_REQUEST_400;
+        }
+        HTTPFrameworkRequest request = new HTTPFrameworkRequest(path);
+        request.setMethod(method);
+        request.setVersion("HTTP/2.0");
+        request.setRemoteAddress(remote);
+        for (String[] field : fields) {
+            if (!field[0].startsWith(":") && !field[0].equals("cookie") && !isConnectionSpecific(field[0])) {
+                request.setHeader(field[0], field[1]);
+            }
+        }
+        if (cookies != null) {
+            request.setHeader("cookie", cookies.toString());
+        }
+        if (authority != null && request.getHeader("Host") == null) {
+            request.setHeader("host", authority);
+        }
+        return request;
+    }
+
+    private static boolean isConnectionSpecific(String name) {
+        return name.equals("connection") || name.equals("keep-alive") || name.equals("proxy-connection")
+                || name.equals("transfer-encoding") || name.equals("upgrade") || name.equals("http2-settings");
+    }
+
+    private void onReset(int streamId, byte[] payload) throws IOException {
+        requireStream(streamId);
+        requireLength(payload, 4);
+        Stream stream = streams.get(streamId);
+        if (stream != null) {
+            stream.reset = true;
+            stream.input.fail();
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    private void onSettings(int streamId, int flags, byte[] payload) throws IOException {
+        requireConnection(streamId);
+        if ((flags & FLAG_ACK) != 0) {
+            requireLength(payload, 0);
+            return;
+        }
+        if (payload.length % 6 != 0) {
+            throw new Http2Exception(FRAME_SIZE_ERROR, "SETTINGS length must be a multiple of 6");
+        }
+        applySettings(payload, payload.length);
+        writeFrame(SETTINGS, FLAG_ACK, 0, new byte[0]);
+    }
+
+    private void applySettings(byte[] settings, int length) throws Http2Exception {
+        for (int i = 0; i < length; i += 6) {
+            int id = ((settings[i] & 0xFF) << 8) | (settings[i + 1] & 0xFF);
+            int value = readInt(settings, i + 2);
+            switch (id) {
+                case 0x1 -> {
+                    synchronized (writeLock) {
+                        encoder.setMaxTableSize(value < 0 ? Integer.MAX_VALUE : value);
+                    }
+                }
+                case 0x4 -> {
+                    if (value < 0) {
+                        throw new Http2Exception(FLOW_CONTROL_ERROR, "Initial window size above the maximum");
+                    }
+                    synchronized (this) {
+                        int delta = value - initialWindow;
+                        initialWindow = value;
+                        for (Stream stream : streams.values()) {
+                            stream.sendWindow += delta;
+                        }
+                        notifyAll();
+                    }
+                }
+                case 0x5 -> {
+                    if (value < FRAME_SIZE || value > MAX_FRAME_SIZE) {
+                        throw new Http2Exception(PROTOCOL_ERROR, "Invalid maximum frame size " + value);
+                    }
+                    peerFrameSize = value;
+                }
+                default -> {
+                    // Push is never used and the other settings only limit what clients send.
+                }
+            }
+        }
+    }
+
+    private void onPing(int streamId, int flags, byte[] payload) throws IOException {
+        requireConnection(streamId);
+        requireLength(payload, 8);
+        if ((flags & FLAG_ACK) == 0) {
+            writeFrame(PING, FLAG_ACK, 0, payload);
+        }
+    }
+
+    private void onWindowUpdate(int streamId, byte[] payload) throws IOException {
+        requireLength(payload, 4);
+        int increment = readInt(payload, 0) & 0x7FFFFFFF;
+        if (streamId == 0) {
+            if (increment == 0) {
+                throw new Http2Exception(PROTOCOL_ERROR, "Window increment of 0");
+            }
+            synchronized (this) {
+                connectionWindow += increment;
+                if (connectionWindow > Integer.MAX_VALUE) {
+                    throw new Http2Exception(FLOW_CONTROL_ERROR, "Connection window above the maximum");
+                }
+                notifyAll();
+            }
+            return;
+        }
+        Stream stream = streams.get(streamId);
+        if (stream == null) {
+            return;
+        }
+        boolean overflow;
+        synchronized (this) {
+            stream.sendWindow += increment;
+            overflow = increment == 0 || stream.sendWindow > Integer.MAX_VALUE;
+            notifyAll();
+        }
+        if (overflow) {
+            reset(stream, increment == 0 ? PROTOCOL_ERROR : FLOW_CONTROL_ERROR);
+        }
+    }
+
+    private static void requireStream(int streamId) throws Http2Exception {
+        if (streamId == 0) {
+            throw new Http2Exception(PROTOCOL_ERROR, "Frame must belong to a stream");
+        }
+    }
+
+    private static void requireConnection(int streamId) throws Http2Exception {
+        if (streamId != 0) {
+            throw new Http2Exception(PROTOCOL_ERROR, "Frame must belong to the connection");
+        }
+    }
+
+    private static void requireLength(byte[] payload, int length) throws Http2Exception {
+        if (payload.length != length) {
+            throw new Http2Exception(FRAME_SIZE_ERROR, "Frame must be " + length + " bytes long");
+        }
+    }
+
+    private static int padding(int flags, byte[] payload) throws Http2Exception {
+        if ((flags & FLAG_PADDED) == 0) {
+            return 0;
+        }
+        if (payload.length == 0 || (payload[0] & 0xFF) >= payload.length) {
+            throw new Http2Exception(PROTOCOL_ERROR, "Padding longer than the frame");
+        }
+        return payload[0] & 0xFF;
+    }
+
+    private synchronized Stream open(int id) {
+        Stream stream = new Stream(id, initialWindow);
+        streams.put(id, stream);
+        return stream;
+    }
+
+    /**
+     * Hands a stream to a worker, or refuses it when the workers cannot take it. A refused stream was not
+     * processed, so the client can send it again.
+     */
+    private void dispatch(Stream stream) {
+        try {
+            workers.execute(() -> handle(stream));
+        } catch (RejectedExecutionException e) {
+            logger.warning("Stream refused, executor is saturated or shut down.");
+            reset(stream, REFUSED_STREAM);
+            complete(stream, null);
+        }
+    }
+
+    /**
+     * Runs on a worker: answers the stream like an HTTP/1.1 request and ends it once the response is written,
+     * which for asynchronous responses happens after the worker is released.
+     */
+    private void handle(Stream stream) {
+        CompletableFuture<Boolean> handled;
+        try {
+            handled = HTTPServerImpl.handleRequest(stream.request, stream.input, stream.output, this::resume);
+        } catch (IOException | RuntimeException e) {
+            handled = CompletableFuture.failedFuture(e);
+        }
+        handled.whenComplete((persistent, error) -> complete(stream, error));
+    }
+
+    /**
+     * Runs the writing of a completed asynchronous response on a worker, or on the completing thread when the
+     * workers are saturated, so the response is never lost.
+     */
+    private void resume(Runnable write) {
+        try {
+            workers.execute(write);
+        } catch (RejectedExecutionException e) {
+            write.run();
+        }
+    }
+
+    private void respondWithError(Stream stream, HttpServerErrors error) {
+        try {
+            HTTPServerImpl.handleErrorRequest(stream.output, error, true);
+            complete(stream, null);
+        } catch (IOException e) {
+            complete(stream, e);
+        }
+    }
+
+    /**
+     * Ends a stream whose response was written, resetting it instead if the response failed. A client still
+     * sending the request body is told to stop, since the response no longer needs it.
+     */
+    private void complete(Stream stream, Throwable error) {
+        try {
+            if (error == null && !stream.reset) {
+                stream.output.finish();
+            } else if (!stream.reset) {
+                logger.log(Level.FINE, "HTTP/2 stream " + stream.id + " failed", error);
+                reset(stream, INTERNAL_ERROR);
+            }
+            if (!stream.reset && !stream.input.isEnded()) {
+                reset(stream, NO_ERROR);
+            }
+        } catch (IOException e) {
+            if (!stream.reset) {
+                reset(stream, INTERNAL_ERROR);
+            }
+        } finally {
+            streams.remove(stream.id);
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    private void reset(Stream stream, int code) {
+        stream.reset = true;
+        stream.input.fail();
+        try {
+            writeFrame(RST_STREAM, 0, stream.id, code(code));
+        } catch (IOException e) {
+            logger.fine("Could not reset HTTP/2 stream " + stream.id + ": " + e.getMessage());
+        }
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    private void goAway(int code) {
+        byte[] payload = new byte[8];
+        writeInt(payload, 0, lastStreamId);
+        writeInt(payload, 4, code);
+        try {
+            writeFrame(GOAWAY, 0, 0, payload);
+        } catch (IOException e) {
+            logger.fine("Could not send GOAWAY: " + e.getMessage());
+        }
+    }
+
+    private void sendSettings() throws IOException {
+        byte[] settings = new byte[12];
+        settings[1] = 0x3;
+        writeInt(settings, 2, MAX_CONCURRENT_STREAMS);
+        settings[7] = 0x6;
+        writeInt(settings, 8, MAX_HEADER_LIST_SIZE);
+        writeFrame(SETTINGS, 0, 0, settings);
+    }
+
+    private void sendWindowUpdate(int streamId, int increment) throws IOException {
+        byte[] payload = new byte[4];
+        writeInt(payload, 0, increment);
+        writeFrame(WINDOW_UPDATE, 0, streamId, payload);
+    }
+
+    /**
+     * Takes up to the wanted number of bytes from the connection and stream send windows, waiting for the
+     * client to open them if they are exhausted.
+     * @return the number of bytes the caller may send in one DATA frame
+     * @throws IOException if the stream is reset, the connection closes, or the windows stay closed for the timeout
+     */
+    private synchronized int reserve(Stream stream, int wanted) throws IOException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (true) {
+            if (closed || stream.reset) {
+                throw new IOException("HTTP/2 stream " + stream.id + " closed");
+            }
+            long available = Math.min(Math.min(connectionWindow, stream.sendWindow), Math.min(wanted, peerFrameSize));
+            if (available > 0) {
+                connectionWindow -= available;
+                stream.sendWindow -= available;
+                return (int) available;
+            }
+            long wait = deadline - System.currentTimeMillis();
+            if (wait <= 0) {
+                throw new SocketTimeoutException("Timed out waiting for the HTTP/2 flow-control window");
+            }
+            try {
+                wait(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the flow-control window", e);
+            }
+        }
+    }
+
+    private void writeFrame(int type, int flags, int streamId, byte[] payload) throws IOException {
+        writeFrame(type, flags, streamId, payload, 0, payload.length);
+    }
+
+    private void writeFrame(int type, int flags, int streamId, byte[] payload, int off, int len) throws IOException {
+        synchronized (writeLock) {
+            writeFrameLocked(type, flags, streamId, payload, off, len);
+            out.flush();
+        }
+    }
+
+    private void writeFrameLocked(int type, int flags, int streamId, byte[] payload, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("HTTP/2 connection closed");
+        }
+        byte[] header = new byte[9];
+        header[0] = (byte) (len >>> 16);
+        header[1] = (byte) (len >>> 8);
+        header[2] = (byte) len;
+        header[3] = (byte) type;
+        header[4] = (byte) flags;
+        writeInt(header, 5, streamId);
+        out.write(header);
+        out.write(payload, off, len);
+    }
+
+    private byte[] readFully(int length) throws IOException {
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length < length) {
+            throw new EOFException("Connection closed inside a frame");
+        }
+        return bytes;
+    }
+
+    private static int readInt(byte[] bytes, int off) {
+        return ((bytes[off] & 0xFF) << 24) | ((bytes[off + 1] & 0xFF) << 16) | ((bytes[off + 2] & 0xFF) << 8) | (bytes[off + 3] & 0xFF);
+    }
+
+    private static void writeInt(byte[] bytes, int off, int value) {
+        bytes[off] = (byte) (value >>> 24);
+        bytes[off + 1] = (byte) (value >>> 16);
+        bytes[off + 2] = (byte) (value >>> 8);
+        bytes[off + 3] = (byte) value;
+    }
+
+    private static byte[] code(int code) {
+        byte[] payload = new byte[4];
+        writeInt(payload, 0, code);
+        return payload;
+    }
+
+    /**
+     * One request and its response.
+     */
+    private final class Stream {
+        private final int id;
+        private final StreamInput input = new StreamInput(this);
+        private final StreamOutput output = new StreamOutput(this);
+        private HTTPFrameworkRequest request;
+        /** Guarded by the connection. */
+        private long sendWindow;
+        private volatile boolean reset;
+
+        private Stream(int id, int sendWindow) {
+            this.id = id;
+            this.sendWindow = sendWindow;
+        }
+    }
+
+    /**
+     * The request body of a stream, made of the DATA frames the reader thread hands over. The stream window
+     * is reopened as the handler consumes the body, so a client uploads no faster than the handler reads.
+     */
+    private final class StreamInput extends InputStream {
+        private final Stream stream;
+        private final ArrayDeque<byte[]> chunks = new ArrayDeque<>();
+        private byte[] current;
+        private int position;
+        private int window = DEFAULT_WINDOW;
+        private boolean ended;
+        private boolean failed;
+
+        private StreamInput(Stream stream) {
+            this.stream = stream;
+        }
+
+        /**
+         * Adds the data of a frame.
+         * @param padding the frame bytes that are not data, given back to the window at once
+         * @return false if the frame exceeds the stream window
+         */
+        private synchronized boolean receive(byte[] data, int padding) {
+            window -= data.length + padding;
+            if (window < 0) {
+                return false;
+            }
+            window += padding;
+            if (data.length > 0) {
+                chunks.add(data);
+            }
+            notifyAll();
+            return true;
+        }
+
+        private synchronized void end() {
+            ended = true;
+            notifyAll();
+        }
+
+        private synchronized void fail() {
+            failed = true;
+            notifyAll();
+        }
+
+        private synchronized boolean isEnded() {
+            return ended;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int count;
+            int consumed = 0;
+            synchronized (this) {
+                long deadline = System.currentTimeMillis() + timeout;
+                while (current == null) {
+                    current = chunks.poll();
+                    position = 0;
+                    if (current != null) {
+                        break;
+                    }
+                    if (failed) {
+                        throw new IOException("HTTP/2 stream " + stream.id + " closed before the end of the request body");
+                    }
+                    if (ended) {
+                        return -1;
+                    }
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) {
+                        throw new SocketTimeoutException("Timed out waiting for the request body");
+                    }
+                    try {
+                        wait(wait);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while reading the request body", e);
+                    }
+                }
+                count = Math.min(len, current.length - position);
+                System.arraycopy(current, position, bytes, off, count);
+                position += count;
+                if (position == current.length) {
+                    window += current.length;
+                    consumed = ended ? 0 : current.length;
+                    current = null;
+                }
+            }
+            if (consumed > 0 && !stream.reset) {
+                sendWindowUpdate(stream.id, consumed);
+            }
+            return count;
+        }
+
+        @Override
+        public synchronized int available() {
+            return current == null ? 0 : current.length - position;
+        }
+    }
+
+    /**
+     * The stream the server writes a response to, in HTTP/1.1 form. The status line and headers are collected
+     * until the empty line and turned into a HEADERS frame, dropping the headers that only make sense for a
+     * single HTTP/1.1 connection; the body that follows is cut into DATA frames. The last frame carries
+     * END_STREAM, so small responses need no extra empty frame.
+     */
+    private final class StreamOutput extends ConnectionOutputStream {
+        private final Stream stream;
+        private final ByteArrayOutputStream head = new ByteArrayOutputStream(256);
+        /** The last four bytes of the head being collected, most recent lowest, to spot the empty line. */
+        private int headTail;
+        private final byte[] single = new byte[1];
+        private List<String[]> headers;
+        private boolean headersSent;
+        private final byte[] data = new byte[FRAME_SIZE];
+        private int count;
+
+        private StreamOutput(Stream stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            single[0] = (byte) b;
+            write(single, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int off, int len) throws IOException {
+            if (stream.reset || closed) {
+                throw new IOException("HTTP/2 stream " + stream.id + " closed");
+            }
+            while (headers == null && len > 0) {
+                byte b = bytes[off++];
+                len--;
+                head.write(b);
+                headTail = headTail << 8 | (b & 0xFF);
+                if (headTail == HEAD_END) {
+                    parseHead();
+                }
+            }
+            while (len > 0) {
+                if (count == data.length) {
+                    sendData(false);
+                }
+                int chunk = Math.min(len, data.length - count);
+                System.arraycopy(bytes, off, data, count, chunk);
+                count += chunk;
+                off += chunk;
+                len -= chunk;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (headers != null && !stream.reset && !closed) {
+                sendData(false);
+            }
+        }
+
+        @Override
+        void transferFrom(Path file, long position, long length) throws IOException {
+            byte[] chunk = new byte[FRAME_SIZE];
+            try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+                long end = position + length;
+                while (position < end) {
+                    int read = source.read(ByteBuffer.wrap(chunk, 0, (int) Math.min(chunk.length, end - position)), position);
+                    if (read <= 0) {
+                        throw new IOException("File truncated while being sent");
+                    }
+                    write(chunk, 0, read);
+                    position += read;
+                }
+            }
+        }
+
+        /**
+         * Sends what is buffered with END_STREAM.
+         * @throws IOException if the response head was never completed or the stream cannot be written
+         */
+        private void finish() throws IOException {
+            if (headers == null) {
+                throw new IOException("Response of HTTP/2 stream " + stream.id + " has no complete head");
+            }
+            sendData(true);
+        }
+
+        /**
+         * Turns the collected status line and headers into HTTP/2 fields. Interim 1xx heads are sent right away
+         * and the next head is collected.
+         */
+        private void parseHead() throws IOException {
+            String[] lines = head.toString(StandardCharsets.ISO_8859_1).split("\r\n");
+            head.reset();
+            headTail = 0;
+            List<String[]> fields = new ArrayList<>(lines.length);
+            String status = lines[0].length() >= 12 ? lines[0].substring(9, 12) : "500";
+            fields.add(new String[]{":status", status});
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon <= 0) {
+                    continue;
+                }
+                String name = lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                if (!isConnectionSpecific(name)) {
+                    fields.add(new String[]{name, lines[i].substring(colon + 1).trim()});
+                }
+            }
+            if (status.startsWith("1")) {
+                sendHeaders(fields, false);
+                return;
+            }
+            headers = fields;
+        }
+
+        /**
+         * Sends the HEADERS frame if it is still pending, then the buffered body as DATA frames.
+         * A response without body ends with the HEADERS frame itself.
+         */
+        private void sendData(boolean end) throws IOException {
+            if (!headersSent) {
+                headersSent = true;
+                if (end && count == 0) {
+                    sendHeaders(headers, true);
+                    return;
+                }
+                sendHeaders(headers, false);
+            }
+            int off = 0;
+            while (off < count || (end && off == count)) {
+                int chunk = count - off == 0 ? 0 : reserve(stream, count - off);
+                boolean last = end && off + chunk == count;
+                writeFrame(DATA, last ? FLAG_END_STREAM : 0, stream.id, data, off, chunk);
+                off += chunk;
+                if (last) {
+                    break;
+                }
+            }
+            count = 0;
+        }
+
+        /**
+         * Encodes and sends a header block, split into CONTINUATION frames if it exceeds the client's frame size.
+         * Encoding and sending hold the write lock together, since blocks must arrive in the order they are encoded.
+         */
+        private void sendHeaders(List<String[]> fields, boolean end) throws IOException {
+            synchronized (writeLock) {
+                ByteArrayOutputStream block = new ByteArrayOutputStream(128);
+                for (String[] field : fields) {
+                    encoder.encode(block, field[0], field[1]);
+                }
+                byte[] bytes = block.toByteArray();
+                int frameSize = peerFrameSize;
+                int off = 0;
+                int type = HEADERS;
+                do {
+                    int len = Math.min(frameSize, bytes.length - off);
+                    boolean lastFrame = off + len == bytes.length;
+                    int flags = (lastFrame ? FLAG_END_HEADERS : 0) | (type == HEADERS && end ? FLAG_END_STREAM : 0);
+                    writeFrameLocked(type, flags, stream.id, bytes, off, len);
+                    off += len;
+                    type = CONTINUATION;
+                } while (off < bytes.length);
+                out.flush();
+            }
+        }
+    }
+}
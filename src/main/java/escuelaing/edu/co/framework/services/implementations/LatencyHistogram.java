@@ -0,0 +1,90 @@
+package escuelaing.edu.co.framework.services.implementations;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram with HDR-style log-linear buckets.
+ * Values are recorded in microseconds; each power of two is split into {@link #SUB_BUCKETS} linear
+ * buckets, so any recorded value is known within about 3% whatever its magnitude, from one microsecond
+ * up to {@link #MAX_MICROS}. Recording is one atomic increment and never allocates.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    /** Values below this get one bucket each. */
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+    static final long MAX_MICROS = (1L << 36) - 1;
+    private static final int BUCKETS = index(MAX_MICROS) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+
+    /**
+     * Records one latency.
+     * @param nanos the elapsed time in nanoseconds; values beyond the range are clamped to it
+     */
+    public void record(long nanos) {
+        long micros = Math.min(MAX_MICROS, Math.max(0, nanos / 1000));
+        counts.incrementAndGet(index(micros));
+        count.increment();
+        sumMicros.add(micros);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the sum of the recorded latencies.
+     * @return the sum in microseconds
+     */
+    public long getSumMicros() {
+        return sumMicros.sum();
+    }
+
+    /**
+     * Returns the latency below which a given fraction of the recorded values fall.
+     * Concurrent recordings may or may not be included.
+     * @param quantile the fraction, between 0 and 1, e.g. 0.99
+     * @return the highest value of the bucket holding that quantile, in microseconds, or 0 if nothing was recorded
+     */
+    public long getQuantileMicros(double quantile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return highestValue(i);
+            }
+        }
+        return MAX_MICROS;
+    }
+
+    static int index(long micros) {
+        if (micros < LINEAR_LIMIT) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BITS;
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + (int) (micros >>> shift) - SUB_BUCKETS;
+    }
+
+    static long highestValue(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = (index - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        long top = (index - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+}
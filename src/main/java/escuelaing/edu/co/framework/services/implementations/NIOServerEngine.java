@@ -0,0 +1,805 @@
+package escuelaing.edu.co.framework.services.implementations;
+
+import escuelaing.edu.co.framework.errors.HttpServerErrors;
+import escuelaing.edu.co.framework.models.HTTPFrameworkRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Non-blocking server engine built on {@link Selector} event loops.
+ * The accepting thread spreads connections over a fixed number of event loops, each one reading and
+ * parsing requests straight from its connections' buffers. Only the handling of a complete request is
+ * handed to the worker executor, so thousands of idle keep-alive connections cost no threads.
+ * Requests on the same connection are answered one at a time, in order. Request bodies are read by the
+ * event loop only when the handler asks for more of them, so a slow handler holds back a fast uploader.
+ */
+class NIOServerEngine {
+    private static final Logger logger = Logger.getLogger(NIOServerEngine.class.getName());
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+    private static final int WRITE_CHUNK_SIZE = 16 * 1024;
+    private static final long WRITE_HIGH_WATER = 256 * 1024;
+    private static final long IDLE_CHECK_INTERVAL = 1000;
+
+    private final ExecutorService workers;
+    private final EventLoop[] loops;
+    private final int keepAliveTimeout;
+    private final int maxKeepAliveRequests;
+    /** Permits for the HTTP/2 connections, each of which holds a worker while it is open. */
+    private final Semaphore http2Connections;
+    private volatile boolean running;
+    private volatile ServerSocketChannel serverChannel;
+
+    /**
+     * Creates the engine.
+     * @param workers the executor that runs request handlers
+     * @param loopCount the number of selector event loops
+     * @param keepAliveTimeout how long an idle connection is kept open, in milliseconds
+     * @param maxKeepAliveRequests the maximum number of requests served on a single connection
+     * @param maxHttp2Connections the maximum number of HTTP/2 connections served at once
+     */
+    NIOServerEngine(ExecutorService workers, int loopCount, int keepAliveTimeout, int maxKeepAliveRequests,
+                    int maxHttp2Connections) {
+        this.workers = workers;
+        this.loops = new EventLoop[Math.max(1, loopCount)];
+        this.keepAliveTimeout = keepAliveTimeout;
+        this.maxKeepAliveRequests = maxKeepAliveRequests;
+        this.http2Connections = new Semaphore(maxHttp2Connections);
+    }
+
+    /**
+     * Binds the port and accepts connections on the calling thread until {@link #stop()} is called.
+     * @param port the server port to listen on
+     * @throws IOException if the port cannot be bound or an event loop cannot be opened
+     */
+    void start(int port) throws IOException {
+        running = true;
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop(Selector.open());
+            Thread thread = new Thread(loops[i], "nio-loop-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+        logger.info("Running NIO Server... on port: " + port + " with " + loops.length + " event loops");
+        int next = 0;
+        try {
+            while (running) {
+                SocketChannel channel;
+                try {
+                    channel = serverChannel.accept();
+                } catch (IOException e) {
+                    if (running) {
+                        logger.severe("Error accepting connection: " + e.getMessage());
+                    }
+                    continue;
+                }
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                EventLoop loop = loops[next];
+                next = (next + 1) % loops.length;
+                loop.execute(() -> loop.register(channel));
+            }
+        } finally {
+            stop();
+        }
+    }
+
+    /**
+     * Stops accepting connections and closes every event loop with its connections.
+     */
+    void stop() {
+        running = false;
+        ServerSocketChannel channel = serverChannel;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warning("Could not close the server channel.");
+            }
+        }
+        for (EventLoop loop : loops) {
+            if (loop != null) {
+                loop.selector.wakeup();
+            }
+        }
+    }
+
+    /**
+     * A selector thread owning a set of connections.
+     * Every connection state change happens on this thread; other threads submit tasks through {@link #execute}.
+     */
+    private final class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private long lastIdleCheck = System.currentTimeMillis();
+
+        private EventLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        /**
+         * Runs the loop until the server stops. A failure while handling one connection, or one task, closes
+         * at most that connection; the loop and its other connections keep going.
+         */
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select(IDLE_CHECK_INTERVAL);
+                } catch (IOException e) {
+                    logger.severe("Event loop error: " + e.getMessage());
+                    continue;
+                }
+                runTasks();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (!key.isValid()) {
+                            connection.close();
+                            continue;
+                        }
+                        if (key.isWritable()) {
+                            connection.onWritable();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            connection.onReadable();
+                        }
+                    } catch (RuntimeException e) {
+                        logger.log(Level.SEVERE, "Closing connection after an event loop error", e);
+                        connection.close();
+                    }
+                }
+                try {
+                    closeIdleConnections();
+                } catch (RuntimeException e) {
+                    logger.log(Level.SEVERE, "Event loop error while closing idle connections", e);
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                try {
+                    ((Connection) key.attachment()).close();
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "Could not close a connection", e);
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                logger.warning("Could not close the selector.");
+            }
+        }
+
+        private void runTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    logger.log(Level.SEVERE, "Event loop task failed", e);
+                }
+            }
+        }
+
+        private void register(SocketChannel channel) {
+            try {
+                Connection connection = new Connection(this, channel);
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                HTTPServerImpl.metrics().connectionOpened();
+            } catch (IOException e) {
+                logger.warning("Could not register connection: " + e.getMessage());
+                closeQuietly(channel);
+            }
+        }
+
+        private void closeIdleConnections() {
+            long now = System.currentTimeMillis();
+            if (now - lastIdleCheck < IDLE_CHECK_INTERVAL) {
+                return;
+            }
+            lastIdleCheck = now;
+            for (SelectionKey key : selector.keys()) {
+                Connection connection = (Connection) key.attachment();
+                if (!connection.busy && now - connection.lastActive > keepAliveTimeout) {
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * The state of one client connection, owned by its event loop.
+     */
+    private final class Connection {
+        private final EventLoop loop;
+        private final SocketChannel channel;
+        private final InetAddress remote;
+        private final ArrayDeque<PendingWrite> pending = new ArrayDeque<>();
+        private final AtomicLong queuedBytes = new AtomicLong();
+        private SelectionKey key;
+        private ByteBuffer input = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private int scanned;
+        private volatile boolean open = true;
+        private boolean busy;
+        private boolean awaitingBody;
+        private ByteBuffer received;
+        private boolean responseDone;
+        private boolean keepAlive;
+        private int served;
+        private long lastActive = System.currentTimeMillis();
+
+        private Connection(EventLoop loop, SocketChannel channel) throws IOException {
+            this.loop = loop;
+            this.channel = channel;
+            this.remote = ((InetSocketAddress) channel.getRemoteAddress()).getAddress();
+        }
+
+        private void onReadable() {
+            int read;
+            try {
+                read = channel.read(input);
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            if (read < 0) {
+                close();
+                return;
+            }
+            HTTPServerImpl.metrics().bytesIn(read);
+            lastActive = System.currentTimeMillis();
+            if (awaitingBody) {
+                if (read > 0) {
+                    awaitingBody = false;
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                    deliverBody();
+                }
+            } else if (!busy) {
+                processInput();
+            }
+        }
+
+        /**
+         * Parses the next buffered request, if its head is complete, and hands it to a worker.
+         * Reading is paused until the response is written, which keeps pipelined responses in order.
+         */
+        private void processInput() {
+            HTTPFrameworkRequest request = null;
+            while (request == null) {
+                int headEnd = HTTPRequestParser.findHeadEnd(input.array(), scanned, input.position());
+                if (headEnd < 0) {
+                    scanned = Math.max(0, input.position() - 2);
+                    if (!input.hasRemaining()) {
+                        if (input.capacity() >= HTTPRequestParser.MAX_HEAD_SIZE) {
+                            reject(HttpServerErrors.REQUEST_HEADER_FIELDS_TOO_LARGE_431);
+                            return;
+                        }
+                        ByteBuffer larger = ByteBuffer.allocate(Math.min(input.capacity() * 2, HTTPRequestParser.MAX_HEAD_SIZE));
+                        input.flip();
+                        larger.put(input);
+                        input = larger;
+                    }
+                    key.interestOps(SelectionKey.OP_READ);
+                    return;
+                }
+                try {
+                    request = parseHead(headEnd);
+                } catch (HttpServerErrors e) {
+                    reject(e);
+                    return;
+                }
+            }
+            served++;
+            request.setKeepAlive(request.isKeepAlive() && served < maxKeepAliveRequests);
+            request.setRemoteAddress(remote);
+            busy = true;
+            responseDone = false;
+            key.interestOps(0);
+            HTTPFrameworkRequest accepted = request;
+            try {
+                if (HTTPServerImpl.startsHttp2(accepted)) {
+                    if (http2Connections.tryAcquire()) {
+                        try {
+                            workers.execute(() -> serveHttp2(accepted));
+                        } catch (RejectedExecutionException e) {
+                            http2Connections.release();
+                            throw e;
+                        }
+                        return;
+                    }
+                    if (Http2Connection.isPriorKnowledge(accepted)) {
+                        logger.warning("HTTP/2 connection rejected, too many HTTP/2 connections open.");
+                        reject(HttpServerErrors.SERVICE_UNAVAILABLE_503);
+                        return;
+                    }
+                    // Declining the upgrade is allowed; the request is answered over HTTP/1.1.
+                }
+                workers.execute(() -> serve(accepted));
+            } catch (RejectedExecutionException e) {
+                logger.warning("Request rejected, executor is saturated or shut down.");
+                reject(HttpServerErrors.SERVICE_UNAVAILABLE_503);
+            }
+        }
+
+        /**
+         * Parses the request line and headers in place and removes them from the input buffer.
+         * @param headEnd the index just past the head
+         * @return the request, or null if the head only held empty lines
+         */
+        private HTTPFrameworkRequest parseHead(int headEnd) {
+            HTTPFrameworkRequest request = HTTPRequestParser.parse(input.array(), 0, headEnd);
+            input.flip();
+            input.position(headEnd);
+            input.compact();
+            scanned = 0;
+            return request;
+        }
+
+        /**
+         * Runs on a worker thread: dispatches the request and streams the response back to the event loop.
+         * An asynchronous response releases the worker; it is written by another worker once it completes.
+         * Body bytes the handler received but did not consume belong to the next pipelined request and
+         * are handed back to the event loop with the completion.
+         */
+        private void serve(HTTPFrameworkRequest request) {
+            ChannelInputStream in = new ChannelInputStream(this);
+            ChannelOutputStream out = new ChannelOutputStream(this);
+            CompletableFuture<Boolean> handled;
+            try {
+                handled = HTTPServerImpl.handleRequest(request, in, out, this::resume);
+            } catch (IOException e) {
+                handled = CompletableFuture.completedFuture(false);
+            }
+            handled.whenComplete((persistent, error) -> {
+                boolean reuse = error == null && persistent;
+                try {
+                    out.flush();
+                } catch (IOException e) {
+                    reuse = false;
+                }
+                boolean keep = reuse;
+                ByteBuffer unread = in.chunk;
+                onLoop(() -> complete(keep, unread));
+            });
+        }
+
+        /**
+         * Runs on a worker thread: serves the connection as HTTP/2 until it ends, then closes it.
+         * The worker reads frames through the same hand-over as request bodies, so the event loop still owns
+         * the socket; the streams themselves are answered on other workers. The reading worker stays taken for
+         * the whole connection, which is why the number of HTTP/2 connections is capped.
+         */
+        private void serveHttp2(HTTPFrameworkRequest request) {
+            ChannelInputStream in = new ChannelInputStream(this);
+            ChannelOutputStream out = new ChannelOutputStream(this);
+            try {
+                new Http2Connection(in, out, remote, workers, keepAliveTimeout).serve(request);
+                out.flush();
+            } catch (IOException e) {
+                logger.fine("HTTP/2 connection closed: " + e.getMessage());
+            } finally {
+                http2Connections.release();
+            }
+            onLoop(() -> complete(false, null));
+        }
+
+        /**
+         * Runs a state change of this connection on its event loop, closing the connection if it fails.
+         */
+        private void onLoop(Runnable task) {
+            loop.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    logger.log(Level.SEVERE, "Closing connection after an event loop error", e);
+                    close();
+                }
+            });
+        }
+
+        /**
+         * Runs the writing of a completed asynchronous response on a worker, or on the completing thread
+         * when the workers are saturated, so the response is never lost.
+         */
+        private void resume(Runnable write) {
+            try {
+                workers.execute(write);
+            } catch (RejectedExecutionException e) {
+                write.run();
+            }
+        }
+
+        /**
+         * Called from a worker thread: waits for the event loop to hand over the next bytes of the request body.
+         * @return the bytes read from the connection, never empty
+         * @throws IOException if the connection closes or the client sends nothing for the keep-alive timeout
+         */
+        private ByteBuffer receive() throws IOException {
+            onLoop(this::readBody);
+            long deadline = System.currentTimeMillis() + keepAliveTimeout;
+            synchronized (this) {
+                while (open && received == null) {
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) {
+                        throw new SocketTimeoutException("Timed out waiting for the request body");
+                    }
+                    try {
+                        wait(wait);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while reading the request body", e);
+                    }
+                }
+                if (received == null) {
+                    throw new IOException("Connection closed");
+                }
+                ByteBuffer chunk = received;
+                received = null;
+                return chunk;
+            }
+        }
+
+        /**
+         * Hands the buffered input to the waiting worker, or reads the socket again once it has data.
+         */
+        private void readBody() {
+            if (!open) {
+                return;
+            }
+            synchronized (this) {
+                if (received != null) {
+                    // A previous request timed out after the bytes arrived; they are still waiting to be taken.
+                    return;
+                }
+            }
+            if (input.position() > 0) {
+                deliverBody();
+                return;
+            }
+            awaitingBody = true;
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+        }
+
+        private void deliverBody() {
+            ByteBuffer chunk = input;
+            chunk.flip();
+            input = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            synchronized (this) {
+                received = chunk;
+                notifyAll();
+            }
+        }
+
+        /**
+         * Answers with an error from the event loop and closes the connection once it is written.
+         */
+        private void reject(HttpServerErrors error) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                HTTPServerImpl.handleErrorRequest(out, error, false);
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            busy = true;
+            ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+            queuedBytes.addAndGet(buffer.remaining());
+            enqueue(new BufferWrite(buffer));
+            complete(false, null);
+        }
+
+        /**
+         * Called from a worker thread: queues a write for the event loop, waiting while too much output is pending.
+         */
+        private void send(PendingWrite write) throws IOException {
+            if (!open) {
+                write.release();
+                throw new IOException("Connection closed");
+            }
+            queuedBytes.addAndGet(write.remaining());
+            onLoop(() -> enqueue(write));
+            synchronized (this) {
+                while (open && queuedBytes.get() > WRITE_HIGH_WATER) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while writing the response", e);
+                    }
+                }
+            }
+            if (!open) {
+                throw new IOException("Connection closed");
+            }
+        }
+
+        private void enqueue(PendingWrite write) {
+            if (!open) {
+                write.release();
+                return;
+            }
+            pending.add(write);
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        }
+
+        private void complete(boolean reuse, ByteBuffer unread) {
+            if (unread != null && unread.hasRemaining()) {
+                input.flip();
+                ByteBuffer merged = ByteBuffer.allocate(Math.max(READ_BUFFER_SIZE, unread.remaining() + input.remaining()));
+                merged.put(unread).put(input);
+                input = merged;
+            }
+            awaitingBody = false;
+            responseDone = true;
+            keepAlive = reuse;
+            if (open && pending.isEmpty()) {
+                finishResponse();
+            }
+        }
+
+        private void onWritable() {
+            try {
+                while (!pending.isEmpty()) {
+                    PendingWrite write = pending.peek();
+                    long written = write.writeTo(channel);
+                    if (written > 0) {
+                        HTTPServerImpl.metrics().bytesOut(written);
+                        queuedBytes.addAndGet(-written);
+                        lastActive = System.currentTimeMillis();
+                    }
+                    if (write.remaining() > 0) {
+                        return;
+                    }
+                    pending.poll().release();
+                    synchronized (this) {
+                        notifyAll();
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            if (responseDone) {
+                finishResponse();
+            }
+        }
+
+        /**
+         * Closes the connection or resumes reading, parsing any pipelined request already buffered.
+         */
+        private void finishResponse() {
+            if (!keepAlive || !running) {
+                close();
+                return;
+            }
+            busy = false;
+            responseDone = false;
+            lastActive = System.currentTimeMillis();
+            processInput();
+        }
+
+        private void close() {
+            if (!open) {
+                return;
+            }
+            open = false;
+            for (PendingWrite write : pending) {
+                write.release();
+            }
+            pending.clear();
+            if (key != null) {
+                key.cancel();
+                HTTPServerImpl.metrics().connectionClosed();
+            }
+            closeQuietly(channel);
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * The connection input handed to request bodies on worker threads.
+     * Each refill asks the event loop for the bytes it has buffered or reads next, so nothing is read
+     * from the socket before the handler wants it.
+     */
+    private static final class ChannelInputStream extends InputStream {
+        private final Connection connection;
+        private ByteBuffer chunk;
+
+        private ChannelInputStream(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return chunk.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(len, chunk.remaining());
+            chunk.get(bytes, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return chunk == null ? 0 : chunk.remaining();
+        }
+
+        private boolean fill() throws IOException {
+            if (chunk == null || !chunk.hasRemaining()) {
+                chunk = connection.receive();
+            }
+            return chunk.hasRemaining();
+        }
+    }
+
+    /**
+     * The response stream handed to handlers on worker threads.
+     * Bytes are gathered into chunks that are queued on the connection's event loop, and file regions
+     * are queued as is so the event loop transfers them from the file to the socket.
+     */
+    private static final class ChannelOutputStream extends ConnectionOutputStream {
+        private final Connection connection;
+        private ByteBuffer buffer = ByteBuffer.allocate(WRITE_CHUNK_SIZE);
+
+        private ChannelOutputStream(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int off, int len) throws IOException {
+            while (len > 0) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int count = Math.min(len, buffer.remaining());
+                buffer.put(bytes, off, count);
+                off += count;
+                len -= count;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (buffer.position() == 0) {
+                return;
+            }
+            buffer.flip();
+            ByteBuffer chunk = buffer;
+            buffer = ByteBuffer.allocate(WRITE_CHUNK_SIZE);
+            connection.send(new BufferWrite(chunk));
+        }
+
+        @Override
+        void transferFrom(Path file, long position, long count) throws IOException {
+            flush();
+            connection.send(new FileRegionWrite(FileChannel.open(file, StandardOpenOption.READ), position, count));
+        }
+    }
+
+    /**
+     * Output queued on a connection, written by the event loop as the socket accepts it.
+     */
+    private interface PendingWrite {
+        long writeTo(SocketChannel channel) throws IOException;
+
+        long remaining();
+
+        void release();
+    }
+
+    private static final class BufferWrite implements PendingWrite {
+        private final ByteBuffer buffer;
+
+        private BufferWrite(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public long writeTo(SocketChannel channel) throws IOException {
+            return channel.write(buffer);
+        }
+
+        @Override
+        public long remaining() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public void release() {
+            // Heap buffers need no release.
+        }
+    }
+
+    /**
+     * A file region sent with {@link FileChannel#transferTo}; the file is closed once the region is written.
+     */
+    private static final class FileRegionWrite implements PendingWrite {
+        private final FileChannel file;
+        private long position;
+        private final long end;
+
+        private FileRegionWrite(FileChannel file, long position, long count) {
+            this.file = file;
+            this.position = position;
+            this.end = position + count;
+        }
+
+        @Override
+        public long writeTo(SocketChannel channel) throws IOException {
+            long sent = file.transferTo(position, end - position, channel);
+            if (sent == 0 && position >= file.size()) {
+                throw new IOException("File truncated while being sent");
+            }
+            position += sent;
+            return sent;
+        }
+
+        @Override
+        public long remaining() {
+            return end - position;
+        }
+
+        @Override
+        public void release() {
+            closeQuietly(file);
+        }
+    }
+
+    private static void closeQuietly(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Nothing left to release.
+        }
+    }
+}
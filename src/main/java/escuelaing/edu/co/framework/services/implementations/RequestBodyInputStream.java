@@ -0,0 +1,328 @@
+package escuelaing.edu.co.framework.services.implementations;
+
+import escuelaing.edu.co.framework.errors.HttpServerErrors;
+import escuelaing.edu.co.framework.models.HTTPFrameworkRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * The body of a request, decoded from the connection as the handler reads it.
+ * Bodies are framed by {@code Content-Length}, by {@code Transfer-Encoding: chunked} or, on HTTP/2 streams,
+ * by the end of the stream; none is
+ * buffered, so a handler can stream uploads far larger than the heap it would take to hold them.
+ * Bodies longer than the configured maximum fail with a 413 while being read, and malformed chunked
+ * framing fails with a 400. When the client sent {@code Expect: 100-continue}, the interim response is
+ * written on the first read, so a client whose request is rejected never uploads the body.
+ */
+abstract class RequestBodyInputStream extends InputStream {
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    private static final int MAX_CHUNK_LINE = 1024;
+    private static final int MAX_TRAILERS = 64;
+
+    protected final InputStream in;
+    protected final long maxBodySize;
+    private final byte[] single = new byte[1];
+    private OutputStream continueOut;
+    private boolean finished;
+    private boolean broken;
+
+    private RequestBodyInputStream(InputStream in, long maxBodySize) {
+        this.in = in;
+        this.maxBodySize = maxBodySize;
+    }
+
+    /**
+     * Creates the body stream of a request from its framing headers.
+     * @param request the request whose headers were read
+     * @param in the connection input, positioned at the first byte of the body
+     * @param out the connection output, used for the 100 Continue interim response
+     * @param maxBodySize the largest body accepted, in bytes
+     * @return the body stream, or null if the request has no body
+     * @throws HttpServerErrors BAD_REQUEST_400 if the framing headers are invalid or contradict each other,
+     * PAYLOAD_TOO_LARGE_413 if the declared length exceeds the maximum
+     */
+    static RequestBodyInputStream open(HTTPFrameworkRequest request, InputStream in, OutputStream out, long maxBodySize) {
+        String transferEncoding = request.getHeader("Transfer-Encoding");
+        String contentLength = request.getHeader("Content-Length");
+        RequestBodyInputStream body;
+        if (transferEncoding != null) {
+            if (contentLength != null || !transferEncoding.trim().equalsIgnoreCase("chunked")) {
+                throw HttpServerErrors.BAD_REQUEST_400;
+            }
+            body = new Chunked(in, maxBodySize);
+        } else if (contentLength != null) {
+            long length = parseContentLength(contentLength);
+            if (length > maxBodySize) {
+                throw HttpServerErrors.PAYLOAD_TOO_LARGE_413;
+            }
+            if (length == 0) {
+                return null;
+            }
+            body = new FixedLength(in, maxBodySize, length);
+        } else if ("HTTP/2.0".equals(request.getVersion())) {
+            body = new UntilEnd(in, maxBodySize);
+        } else {
+            return null;
+        }
+        String expect = request.getHeader("Expect");
+        if (expect != null && expect.toLowerCase(Locale.ROOT).contains("100-continue")
+                && !"HTTP/1.0".equals(request.getVersion())) {
+            body.continueOut = out;
+        }
+        return body;
+    }
+
+    /**
+     * Parses a Content-Length value, rejecting signs, separators and lists of different lengths.
+     */
+    static long parseContentLength(String value) {
+        long length = -1;
+        for (String part : value.split(",")) {
+            String digits = part.trim();
+            if (digits.isEmpty() || digits.length() > 18) {
+                throw HttpServerErrors.BAD_REQUEST_400;
+            }
+            long parsed = 0;
+            for (int i = 0; i < digits.length(); i++) {
+                char c = digits.charAt(i);
+                if (c < '0' || c > '9') {
+                    throw HttpServerErrors.BAD_REQUEST_400;
+                }
+                parsed = parsed * 10 + (c - '0');
+            }
+            if (length >= 0 && parsed != length) {
+                throw HttpServerErrors.BAD_REQUEST_400;
+            }
+            length = parsed;
+        }
+        return length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (finished) {
+            return -1;
+        }
+        sendContinue();
+        try {
+            int read = readBody(bytes, off, len);
+            if (read < 0) {
+                finished = true;
+            }
+            return read;
+        } catch (IOException | HttpServerErrors e) {
+            broken = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Consumes what the handler left unread so the connection can carry the next request.
+     * @param maxDrain the most bytes worth reading to keep the connection open
+     * @return true if the body was read to its end and the connection can be reused
+     */
+    boolean finish(long maxDrain) {
+        if (finished) {
+            return true;
+        }
+        if (broken || continueOut != null) {
+            // The client was never told to send the body, or its framing is unusable.
+            return false;
+        }
+        byte[] discard = new byte[8192];
+        long drained = 0;
+        try {
+            while (drained <= maxDrain) {
+                int read = read(discard, 0, discard.length);
+                if (read < 0) {
+                    return true;
+                }
+                drained += read;
+            }
+        } catch (IOException | HttpServerErrors e) {
+            return false;
+        }
+        return false;
+    }
+
+    private void sendContinue() throws IOException {
+        OutputStream out = continueOut;
+        if (out != null) {
+            continueOut = null;
+            out.write(CONTINUE);
+            out.flush();
+        }
+    }
+
+    /**
+     * Reads body bytes from the connection without reading past the end of the body.
+     * @return the number of bytes read, or -1 at the end of the body
+     */
+    protected abstract int readBody(byte[] bytes, int off, int len) throws IOException;
+
+    protected static IOException truncated() {
+        return new IOException("Connection closed before the end of the request body");
+    }
+
+    /**
+     * A body of a length declared by Content-Length.
+     */
+    private static final class FixedLength extends RequestBodyInputStream {
+        private long remaining;
+
+        private FixedLength(InputStream in, long maxBodySize, long length) {
+            super(in, maxBodySize);
+            this.remaining = length;
+        }
+
+        @Override
+        protected int readBody(byte[] bytes, int off, int len) throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            int read = in.read(bytes, off, (int) Math.min(len, remaining));
+            if (read < 0) {
+                throw truncated();
+            }
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+    }
+
+    /**
+     * A body that ends where its input ends, as the body of an HTTP/2 stream does with the END_STREAM flag.
+     */
+    private static final class UntilEnd extends RequestBodyInputStream {
+        private long total;
+
+        private UntilEnd(InputStream in, long maxBodySize) {
+            super(in, maxBodySize);
+        }
+
+        @Override
+        protected int readBody(byte[] bytes, int off, int len) throws IOException {
+            int read = in.read(bytes, off, len);
+            if (read > 0) {
+                total += read;
+                if (total > maxBodySize) {
+                    throw HttpServerErrors.PAYLOAD_TOO_LARGE_413;
+                }
+            }
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return in.available();
+        }
+    }
+
+    /**
+     * A body sent as a series of chunks, each prefixed with its size in hex, ending with an empty chunk
+     * and optional trailer fields, which are discarded.
+     */
+    private static final class Chunked extends RequestBodyInputStream {
+        private final StringBuilder line = new StringBuilder();
+        private long chunkRemaining;
+        private long total;
+        private boolean last;
+
+        private Chunked(InputStream in, long maxBodySize) {
+            super(in, maxBodySize);
+        }
+
+        @Override
+        protected int readBody(byte[] bytes, int off, int len) throws IOException {
+            if (last) {
+                return -1;
+            }
+            if (chunkRemaining == 0) {
+                chunkRemaining = readChunkSize();
+                if (chunkRemaining == 0) {
+                    readTrailers();
+                    last = true;
+                    return -1;
+                }
+                total += chunkRemaining;
+                if (total > maxBodySize) {
+                    throw HttpServerErrors.PAYLOAD_TOO_LARGE_413;
+                }
+            }
+            int read = in.read(bytes, off, (int) Math.min(len, chunkRemaining));
+            if (read < 0) {
+                throw truncated();
+            }
+            chunkRemaining -= read;
+            if (chunkRemaining == 0 && !readLine().isEmpty()) {
+                throw HttpServerErrors.BAD_REQUEST_400;
+            }
+            return read;
+        }
+
+        private long readChunkSize() throws IOException {
+            String sizeLine = readLine();
+            int end = sizeLine.indexOf(';');
+            String hex = (end < 0 ? sizeLine : sizeLine.substring(0, end)).trim();
+            if (hex.isEmpty() || hex.length() > 15) {
+                throw HttpServerErrors.BAD_REQUEST_400;
+            }
+            long size = 0;
+            for (int i = 0; i < hex.length(); i++) {
+                int digit = Character.digit(hex.charAt(i), 16);
+                if (digit < 0) {
+                    throw HttpServerErrors.BAD_REQUEST_400;
+                }
+                size = size * 16 + digit;
+            }
+            return size;
+        }
+
+        private void readTrailers() throws IOException {
+            for (int i = 0; i < MAX_TRAILERS; i++) {
+                if (readLine().isEmpty()) {
+                    return;
+                }
+            }
+            throw HttpServerErrors.BAD_REQUEST_400;
+        }
+
+        /**
+         * Reads a CRLF (or bare LF) terminated line of the chunk framing.
+         */
+        private String readLine() throws IOException {
+            line.setLength(0);
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b < 0) {
+                    throw truncated();
+                }
+                if (line.length() >= MAX_CHUNK_LINE) {
+                    throw HttpServerErrors.BAD_REQUEST_400;
+                }
+                line.append((char) b);
+            }
+            int length = line.length();
+            if (length > 0 && line.charAt(length - 1) == '\r') {
+                line.setLength(length - 1);
+            }
+            return line.toString();
+        }
+    }
+}
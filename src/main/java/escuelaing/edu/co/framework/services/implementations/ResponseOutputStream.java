@@ -0,0 +1,174 @@
+package escuelaing.edu.co.framework.services.implementations;
+
+import escuelaing.edu.co.framework.models.HTTPFrameworkRequest;
+import escuelaing.edu.co.framework.models.HTTPFrameworkResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The body stream of a response produced incrementally by a handler.
+ * The head is written on the first flush, with the length the handler announced or with
+ * {@code Transfer-Encoding: chunked}; written bytes are gathered into chunks of up to {@link #CHUNK_SIZE}
+ * bytes so many small writes do not turn into many tiny chunks. HTTP/1.0 clients, which do not understand
+ * chunked encoding, get the body unframed and the connection closed after it. HTTP/2 streams get it unframed
+ * too, since their DATA frames already delimit it.
+ */
+final class ResponseOutputStream extends OutputStream {
+    private static final int CHUNK_SIZE = 8 * 1024;
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    private final HTTPFrameworkRequest request;
+    private final HTTPFrameworkResponse response;
+    private final OutputStream out;
+    /** Allocated on the first buffered write, so handlers that never stream do not pay for it. */
+    private byte[] buffer;
+    private int count;
+    private boolean committed;
+    private boolean chunked;
+    private boolean discard;
+    private boolean closed;
+    private long written;
+
+    /**
+     * Creates the stream and the response it belongs to.
+     * @param request the request being answered
+     * @param out the stream connected to the client
+     */
+    ResponseOutputStream(HTTPFrameworkRequest request, OutputStream out) {
+        this.request = request;
+        this.out = out;
+        this.response = new HTTPFrameworkResponse(this);
+    }
+
+    HTTPFrameworkResponse response() {
+        return response;
+    }
+
+    /**
+     * Tells whether the response head was sent, after which the response can no longer be replaced by an error.
+     */
+    boolean isCommitted() {
+        return committed;
+    }
+
+    /**
+     * Tells whether the handler wrote to the stream, even if the bytes are still buffered, which makes
+     * the streamed body the response instead of the one set with {@code setBody}.
+     */
+    boolean isWritten() {
+        return committed || count > 0;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (buffer == null) {
+            buffer = new byte[CHUNK_SIZE];
+        } else if (count == buffer.length) {
+            flushBuffer();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int off, int len) throws IOException {
+        ensureOpen();
+        if (len >= CHUNK_SIZE) {
+            flushBuffer();
+            writeChunk(bytes, off, len);
+            return;
+        }
+        if (buffer == null) {
+            buffer = new byte[CHUNK_SIZE];
+        } else if (len > buffer.length - count) {
+            flushBuffer();
+        }
+        System.arraycopy(bytes, off, buffer, count, len);
+        count += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (closed) {
+            return;
+        }
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * Ends the body: sends what is buffered and the last chunk. The connection stream itself stays open.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        flushBuffer();
+        commit();
+        closed = true;
+        if (chunked && !discard) {
+            out.write(LAST_CHUNK);
+        }
+        long announced = response.getContentLength();
+        if (announced >= 0 && written != announced && !discard) {
+            // The framing the client relies on is wrong, so the next response cannot be found.
+            request.setKeepAlive(false);
+            throw new IOException("Response body of " + written + " bytes does not match its announced length " + announced);
+        }
+        out.flush();
+    }
+
+    private void flushBuffer() throws IOException {
+        commit();
+        if (count > 0) {
+            writeChunk(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    private void writeChunk(byte[] bytes, int off, int len) throws IOException {
+        commit();
+        written += len;
+        if (discard) {
+            return;
+        }
+        if (chunked) {
+            out.write(Integer.toHexString(len).getBytes(StandardCharsets.ISO_8859_1));
+            out.write(CRLF);
+            out.write(bytes, off, len);
+            out.write(CRLF);
+        } else {
+            out.write(bytes, off, len);
+        }
+    }
+
+    private void commit() throws IOException {
+        if (committed) {
+            return;
+        }
+        committed = true;
+        if (!HTTPServerImpl.allowsBody(response.getStatus())) {
+            // 1xx, 204 and 304 end at the head: no framing, no last chunk, and whatever the handler writes is dropped.
+            discard = true;
+            HTTPServerImpl.writeStreamingHead(request, response, out, false);
+            return;
+        }
+        boolean http10 = "HTTP/1.0".equals(request.getVersion());
+        chunked = response.getContentLength() < 0 && !http10 && !"HTTP/2.0".equals(request.getVersion());
+        if (response.getContentLength() < 0 && http10) {
+            request.setKeepAlive(false);
+        }
+        discard = "HEAD".equals(request.getMethod());
+        HTTPServerImpl.writeStreamingHead(request, response, out, chunked);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Response body already closed");
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package escuelaing.edu.co.framework.services.implementations;
+
+import escuelaing.edu.co.framework.models.HTTPMethod;
+import escuelaing.edu.co.framework.services.interfaces.HTTPServerHandler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Segment trie mapping path patterns to a handler per request method.
+ * Patterns are made of literal segments, {@code {name}} segments that capture one path segment, and an
+ * optional last {@code {*name}} or {@code *} segment that captures the rest of the path.
+ * Lookups walk the request path in place, comparing segments with {@link String#regionMatches}, and try
+ * literal children before captures and captures before wildcard tails. Conflicting patterns are
+ * rejected when they are added, so a lookup never has to choose between two routes.
+ * Each route keeps its handlers in an array indexed by {@link HTTPMethod#ordinal()}, so finding the handler
+ * for a method is a single array access; HEAD falls back to the GET handler unless one is registered.
+ * Routes are meant to be added at startup; lookups take no lock.
+ */
+public class Router {
+    private static final String WILDCARD_NAME = "*";
+
+    private volatile Node root = new Node(null);
+    private volatile int maxVariables;
+
+    /**
+     * Adds a route.
+     * @param method the request method the handler answers
+     * @param pattern the path pattern, e.g. {@code /api/v1/users/{id}}
+     * @param handler the handler for matching requests
+     * @throws IllegalArgumentException if the pattern is malformed or another route already matches the same
+     * paths and method, or uses different variable names for them
+     */
+    public synchronized void add(HTTPMethod method, String pattern, HTTPServerHandler handler) {
+        validatePattern(pattern);
+        List<String> variables = new ArrayList<>();
+        Node node = root;
+        for (String segment : segments(pattern)) {
+            if (segment.startsWith("{*")) {
+                variables.add(segment.substring(2, segment.length() - 1));
+                node = node.wildcardChild();
+            } else if (segment.equals(WILDCARD_NAME)) {
+                variables.add(WILDCARD_NAME);
+                node = node.wildcardChild();
+            } else if (segment.startsWith("{")) {
+                variables.add(segment.substring(1, segment.length() - 1));
+                node = node.variableChild();
+            } else {
+                node = node.literalChild(segment);
+            }
+        }
+        String[] variableNames = variables.toArray(new String[0]);
+        if (node.route == null) {
+            node.route = new Route(pattern, variableNames);
+        } else if (!Arrays.equals(node.route.variableNames, variableNames)) {
+            throw new IllegalArgumentException("Route " + pattern + " conflicts with " + node.route.pattern);
+        } else if (node.route.registered[method.ordinal()] != null) {
+            throw new IllegalArgumentException("Route " + method + " " + pattern + " conflicts with "
+                    + method + " " + node.route.pattern);
+        }
+        node.route.register(method, handler);
+        // The volatile write publishes the new nodes to lookups, which read it first.
+        maxVariables = Math.max(maxVariables, variables.size());
+    }
+
+    /**
+     * Finds the route matching a request path.
+     * @param path the request path without query string
+     * @return the match, or null if no route matches
+     */
+    public RouteMatch match(String path) {
+        int variables = maxVariables;
+        Node start = root;
+        if (start.isEmpty() || path.isEmpty() || path.charAt(0) != '/') {
+            return null;
+        }
+        int[] captures = variables == 0 ? null : new int[variables * 2];
+        Route route = match(start, path, 1, captures, 0);
+        if (route == null) {
+            return null;
+        }
+        return route.variableNames.length == 0 ? route.literalMatch : new RouteMatch(route, path, captures);
+    }
+
+    /**
+     * Removes every route.
+     */
+    public synchronized void clear() {
+        root = new Node(null);
+        maxVariables = 0;
+    }
+
+    /**
+     * Returns the names of the variables a path pattern captures, in path order; a bare {@code *} tail is
+     * named {@code *}.
+     * @param pattern a path pattern accepted by {@link #validatePattern}
+     * @return the variable names
+     */
+    public static List<String> variableNames(String pattern) {
+        List<String> variables = new ArrayList<>();
+        for (String segment : segments(pattern)) {
+            if (segment.startsWith("{*")) {
+                variables.add(segment.substring(2, segment.length() - 1));
+            } else if (segment.equals(WILDCARD_NAME)) {
+                variables.add(WILDCARD_NAME);
+            } else if (segment.startsWith("{")) {
+                variables.add(segment.substring(1, segment.length() - 1));
+            }
+        }
+        return variables;
+    }
+
+    /**
+     * Checks the syntax of a path pattern without adding it.
+     * @param pattern the path pattern
+     * @throws IllegalArgumentException if the pattern is malformed
+     */
+    public static void validatePattern(String pattern) {
+        if (!pattern.startsWith("/")) {
+            throw new IllegalArgumentException("Path must start with /");
+        }
+        List<String> segments = segments(pattern);
+        for (int i = 0; i < segments.size(); i++) {
+            String segment = segments.get(i);
+            boolean capture = segment.startsWith("{") || segment.endsWith("}");
+            if (capture && (!segment.startsWith("{") || !segment.endsWith("}") || segment.length() < 3
+                    || segment.indexOf('{', 1) >= 0 || segment.equals("{*}"))) {
+                throw new IllegalArgumentException("Malformed path variable " + segment + " in " + pattern);
+            }
+            boolean wildcard = segment.equals(WILDCARD_NAME) || segment.startsWith("{*");
+            if (wildcard && i != segments.size() - 1) {
+                throw new IllegalArgumentException("Wildcard must be the last segment of " + pattern);
+            }
+        }
+    }
+
+    /**
+     * Walks the trie from a node, trying literal children first, then the capture, then the wildcard tail.
+     * @param start the index of the first character of the current segment
+     * @param depth the number of variables captured so far
+     */
+    private static Route match(Node node, String path, int start, int[] captures, int depth) {
+        int end = path.indexOf('/', start);
+        if (end < 0) {
+            end = path.length();
+        }
+        int length = end - start;
+        boolean last = end == path.length();
+        for (Node child : node.literals) {
+            if (child.segment.length() == length && path.regionMatches(start, child.segment, 0, length)) {
+                Route route = last ? child.route : match(child, path, end + 1, captures, depth);
+                if (route != null) {
+                    return route;
+                }
+            }
+        }
+        if (node.variable != null && length > 0) {
+            captures[depth * 2] = start;
+            captures[depth * 2 + 1] = end;
+            Route route = last ? node.variable.route : match(node.variable, path, end + 1, captures, depth + 1);
+            if (route != null) {
+                return route;
+            }
+        }
+        if (node.wildcard != null && node.wildcard.route != null) {
+            captures[depth * 2] = start;
+            captures[depth * 2 + 1] = path.length();
+            return node.wildcard.route;
+        }
+        return null;
+    }
+
+    private static List<String> segments(String pattern) {
+        List<String> segments = new ArrayList<>();
+        int start = 1;
+        while (start <= pattern.length()) {
+            int end = pattern.indexOf('/', start);
+            if (end < 0) {
+                end = pattern.length();
+            }
+            segments.add(pattern.substring(start, end));
+            start = end + 1;
+        }
+        return segments;
+    }
+
+    private static final class Node {
+        private final String segment;
+        private Node[] literals = new Node[0];
+        private Node variable;
+        private Node wildcard;
+        private Route route;
+
+        private Node(String segment) {
+            this.segment = segment;
+        }
+
+        private Node literalChild(String name) {
+            for (Node child : literals) {
+                if (child.segment.equals(name)) {
+                    return child;
+                }
+            }
+            Node child = new Node(name);
+            Node[] grown = new Node[literals.length + 1];
+            System.arraycopy(literals, 0, grown, 0, literals.length);
+            grown[literals.length] = child;
+            literals = grown;
+            return child;
+        }
+
+        private Node variableChild() {
+            if (variable == null) {
+                variable = new Node(null);
+            }
+            return variable;
+        }
+
+        private Node wildcardChild() {
+            if (wildcard == null) {
+                wildcard = new Node(null);
+            }
+            return wildcard;
+        }
+
+        private boolean isEmpty() {
+            return route == null && literals.length == 0 && variable == null && wildcard == null;
+        }
+    }
+
+    /**
+     * A registered path pattern with its handlers and the names of its captured variables, in path order.
+     */
+    private static final class Route {
+        private static final HTTPMethod[] METHODS = HTTPMethod.values();
+
+        private final String pattern;
+        private final String[] variableNames;
+        private final HTTPServerHandler[] registered = new HTTPServerHandler[METHODS.length];
+        private final RouteMatch literalMatch;
+        private volatile HTTPServerHandler[] handlers = new HTTPServerHandler[METHODS.length];
+        private volatile String allow;
+
+        private Route(String pattern, String[] variableNames) {
+            this.pattern = pattern;
+            this.variableNames = variableNames;
+            this.literalMatch = new RouteMatch(this, null, null);
+        }
+
+        /**
+         * Registers a handler and recomputes the dispatch table and the Allow header value.
+         */
+        private void register(HTTPMethod method, HTTPServerHandler handler) {
+            registered[method.ordinal()] = handler;
+            HTTPServerHandler[] table = registered.clone();
+            if (table[HTTPMethod.HEAD.ordinal()] == null) {
+                table[HTTPMethod.HEAD.ordinal()] = table[HTTPMethod.GET.ordinal()];
+            }
+            StringBuilder methods = new StringBuilder();
+            for (HTTPMethod candidate : METHODS) {
+                if (table[candidate.ordinal()] != null || candidate == HTTPMethod.OPTIONS) {
+                    methods.append(methods.length() == 0 ? "" : ", ").append(candidate);
+                }
+            }
+            allow = methods.toString();
+            handlers = table;
+        }
+    }
+
+    /**
+     * The result of a lookup: the route's handler and the values captured from the path.
+     */
+    public static final class RouteMatch {
+        private final Route route;
+        private final String path;
+        private final int[] captures;
+
+        private RouteMatch(Route route, String path, int[] captures) {
+            this.route = route;
+            this.path = path;
+            this.captures = captures;
+        }
+
+        /**
+         * Returns the handler for a request method.
+         * @param method the request method
+         * @return the handler, or null if the route does not answer that method
+         */
+        public HTTPServerHandler getHandler(HTTPMethod method) {
+            return route.handlers[method.ordinal()];
+        }
+
+        /**
+         * Returns the methods this route answers, as the value of an Allow header.
+         * @return the comma separated methods, always including OPTIONS
+         */
+        public String getAllow() {
+            return route.allow;
+        }
+
+        public String getPattern() {
+            return route.pattern;
+        }
+
+        /**
+         * Returns the captured path variables, keyed by name. Wildcard tails declared as {@code *} use the name "*".
+         * @return the variables, empty for literal routes
+         */
+        public Map<String, String> getVariables() {
+            String[] names = route.variableNames;
+            if (names.length == 0) {
+                return Collections.emptyMap();
+            }
+            Map<String, String> variables = new HashMap<>(names.length * 2);
+            for (int i = 0; i < names.length; i++) {
+                variables.put(names[i], path.substring(captures[i * 2], captures[i * 2 + 1]));
+            }
+            return variables;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package escuelaing.edu.co.framework.services.implementations;
+
+import escuelaing.edu.co.framework.models.HTTPMethod;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters of a running server: latency and errors per route, bytes through the sockets, open
+ * connections and error responses by status code. Every counter is a {@link LongAdder} or an atomic array,
+ * so recording never takes a lock, and the per-route entries are created once and then only looked up.
+ * The whole set is exposed in the Prometheus text format by {@link #writePrometheus}.
+ */
+public final class ServerMetrics {
+    /** The label of requests answered from the static files. */
+    public static final String STATIC_ROUTE = "<static>";
+    private static final int MIN_ERROR = 400;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    /**
+     * The counters of one route and method.
+     */
+    public static final class RouteMetrics {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+
+        /**
+         * Records a request answered in the given time.
+         * @param nanos the time from the parsed head to the end of the response
+         * @param failed whether the response was an error (4xx or 5xx)
+         */
+        void record(long nanos, boolean failed) {
+            latency.record(nanos);
+            if (failed) {
+                errors.increment();
+            }
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+    }
+
+    private final Map<String, RouteMetrics[]> routes = new ConcurrentHashMap<>();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder activeConnections = new LongAdder();
+    private final LongAdder connections = new LongAdder();
+    private final AtomicLongArray errors = new AtomicLongArray(600 - MIN_ERROR);
+
+    /**
+     * Returns the counters of a route, creating them on its first request.
+     * @param pattern the route pattern as registered, or {@link #STATIC_ROUTE}
+     * @param method the request method
+     * @return the counters
+     */
+    public RouteMetrics route(String pattern, HTTPMethod method) {
+        RouteMetrics[] byMethod = routes.get(pattern);
+        if (byMethod == null) {
+            byMethod = routes.computeIfAbsent(pattern, p -> {
+                RouteMetrics[] created = new RouteMetrics[HTTPMethod.values().length];
+                for (int i = 0; i < created.length; i++) {
+                    created[i] = new RouteMetrics();
+                }
+                return created;
+            });
+        }
+        return byMethod[method.ordinal()];
+    }
+
+    void bytesIn(long count) {
+        bytesIn.add(count);
+    }
+
+    void bytesOut(long count) {
+        bytesOut.add(count);
+    }
+
+    void connectionOpened() {
+        activeConnections.increment();
+        connections.increment();
+    }
+
+    void connectionClosed() {
+        activeConnections.decrement();
+    }
+
+    void error(int status) {
+        if (status >= MIN_ERROR && status < 600) {
+            errors.incrementAndGet(status - MIN_ERROR);
+        }
+    }
+
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    public long getActiveConnections() {
+        return activeConnections.sum();
+    }
+
+    /**
+     * Returns the number of error responses sent with a status code.
+     * @param status a 4xx or 5xx status code
+     */
+    public long getErrors(int status) {
+        return status >= MIN_ERROR && status < 600 ? errors.get(status - MIN_ERROR) : 0;
+    }
+
+    /**
+     * Writes every metric in the Prometheus text exposition format, version 0.0.4.
+     * Latencies are summaries with the 50th, 90th, 99th and 99.9th percentiles, in seconds.
+     * @param out where the text is appended
+     * @param queueDepth the number of requests or connections waiting for a worker
+     */
+    public void writePrometheus(StringBuilder out, long queueDepth) {
+        type(out, "http_server_requests_seconds", "summary", "Time to answer requests, by route and method.");
+        for (Map.Entry<String, RouteMetrics[]> route : routes.entrySet()) {
+            for (HTTPMethod method : HTTPMethod.values()) {
+                LatencyHistogram latency = route.getValue()[method.ordinal()].latency;
+                long count = latency.getCount();
+                if (count == 0) {
+                    continue;
+                }
+                String labels = "route=\"" + escape(route.getKey()) + "\",method=\"" + method + "\"";
+                for (double quantile : QUANTILES) {
+                    sample(out, "http_server_requests_seconds", labels + ",quantile=\"" + quantile + "\"",
+                            seconds(latency.getQuantileMicros(quantile)));
+                }
+                sample(out, "http_server_requests_seconds_count", labels, Long.toString(count));
+                sample(out, "http_server_requests_seconds_sum", labels, seconds(latency.getSumMicros()));
+            }
+        }
+        type(out, "http_server_request_errors_total", "counter", "Requests answered with a 4xx or 5xx status, by route and method.");
+        for (Map.Entry<String, RouteMetrics[]> route : routes.entrySet()) {
+            for (HTTPMethod method : HTTPMethod.values()) {
+                RouteMetrics metrics = route.getValue()[method.ordinal()];
+                if (metrics.latency.getCount() > 0) {
+                    sample(out, "http_server_request_errors_total",
+                            "route=\"" + escape(route.getKey()) + "\",method=\"" + method + "\"", Long.toString(metrics.getErrors()));
+                }
+            }
+        }
+        type(out, "http_server_errors_total", "counter", "Error responses sent by the server, by status code.");
+        for (int i = 0; i < errors.length(); i++) {
+            long count = errors.get(i);
+            if (count > 0) {
+                sample(out, "http_server_errors_total", "code=\"" + (i + MIN_ERROR) + "\"", Long.toString(count));
+            }
+        }
+        value(out, "http_server_bytes_received_total", "counter", "Bytes read from client connections.", bytesIn.sum());
+        value(out, "http_server_bytes_sent_total", "counter", "Bytes written to client connections.", bytesOut.sum());
+        value(out, "http_server_connections_active", "gauge", "Open client connections.", activeConnections.sum());
+        value(out, "http_server_connections_total", "counter", "Client connections accepted.", connections.sum());
+        value(out, "http_server_queue_depth", "gauge", "Work waiting for a free worker thread.", queueDepth);
+    }
+
+    private static void type(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void value(StringBuilder out, String name, String type, String help, long value) {
+        type(out, name, type, help);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, String value) {
+        out.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+    }
+
+    private static String seconds(long micros) {
+        return Double.toString(micros / 1_000_000.0);
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
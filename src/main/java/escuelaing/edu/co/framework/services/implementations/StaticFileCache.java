@@ -0,0 +1,471 @@
+package escuelaing.edu.co.framework.services.implementations;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * In-memory cache of static files with their precomputed response heads.
+ * Entries are evicted in least-recently-used order once the cached bodies exceed the byte budget,
+ * and are reloaded when the file's last-modified time or size changes on disk.
+ * Files above the streaming threshold keep only their metadata and response head in memory;
+ * their bytes are streamed from disk on every request.
+ * Every file version carries its validators (ETag and Last-Modified), computed once when it is loaded.
+ * Compressed representations are negotiated with {@link #negotiate}: precompressed {@code .br} and
+ * {@code .gz} siblings are served when present and not older than the file, otherwise compressible text held
+ * by the cache is gzipped once per version and kept next to the original bytes.
+ * Every head advertises byte ranges; partial responses are built from the same validators.
+ */
+public class StaticFileCache {
+    private final LinkedHashMap<String, CachedFile> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile long maxBytes;
+    private volatile long streamingThreshold;
+    private long currentBytes;
+
+    /**
+     * Creates a cache.
+     * @param maxBytes the maximum number of bytes kept in memory, 0 disables caching
+     * @param streamingThreshold the size above which file bodies are streamed from disk instead of loaded
+     */
+    public StaticFileCache(long maxBytes, long streamingThreshold) {
+        if (maxBytes < 0 || streamingThreshold < 0) {
+            throw new IllegalArgumentException("Cache size and streaming threshold must not be negative");
+        }
+        this.maxBytes = maxBytes;
+        this.streamingThreshold = streamingThreshold;
+    }
+
+    /**
+     * Returns the file, from memory when the cached copy is still current.
+     * @param file the file to serve
+     * @param contentType the content type written in the response head
+     * @return the file contents and response head
+     * @throws NoSuchFileException if the path does not name a regular file
+     * @throws IOException if the file cannot be read
+     */
+    CachedFile get(Path file, String contentType) throws IOException {
+        return get(file, contentType, null);
+    }
+
+    /**
+     * Picks the representation of a file that best matches the client's {@code Accept-Encoding}.
+     * Brotli is only available from precompressed siblings, gzip from a sibling or from the
+     * in-memory compressed copy of compressible files.
+     * @param file the identity representation returned by {@link #get}
+     * @param acceptEncoding the Accept-Encoding request header, or null
+     * @return the representation to send, which is the file itself when no encoding applies
+     * @throws IOException if a sibling cannot be read
+     */
+    CachedFile negotiate(CachedFile file, String acceptEncoding) throws IOException {
+        if (acceptEncoding == null || !file.vary) {
+            return file;
+        }
+        if (file.brotliSibling != null && accepts(acceptEncoding, "br")) {
+            CachedFile sibling = getSibling(file, file.brotliSibling, "br");
+            if (sibling != null) {
+                return sibling;
+            }
+        }
+        if (!accepts(acceptEncoding, "gzip")) {
+            return file;
+        }
+        if (file.gzipSibling != null) {
+            CachedFile sibling = getSibling(file, file.gzipSibling, "gzip");
+            if (sibling != null) {
+                return sibling;
+            }
+        }
+        CachedFile gzipped = file.gzipped;
+        if (gzipped == null && file.compressible && !file.isStreamed() && isCached(file)) {
+            gzipped = compress(file);
+        }
+        return gzipped != null && gzipped.length < file.length ? gzipped : file;
+    }
+
+    private CachedFile get(Path file, String contentType, String encoding) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        if (!attributes.isRegularFile()) {
+            throw new NoSuchFileException(file.toString());
+        }
+        String key = file.toString();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        CachedFile cached;
+        synchronized (this) {
+            cached = entries.get(key);
+        }
+        if (cached != null && cached.lastModified == lastModified && cached.length == attributes.size()) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        byte[] body = attributes.size() > streamingThreshold ? null : Files.readAllBytes(file);
+        CachedFile loaded = encoding == null
+                ? new CachedFile(file, contentType, lastModified, attributes.size(), body, sibling(file, ".br"), sibling(file, ".gz"))
+                : new CachedFile(file, contentType, encoding, lastModified, attributes.size(), body);
+        store(key, loaded);
+        return loaded;
+    }
+
+    /**
+     * Loads a precompressed sibling, ignoring it when it is older than the file it was made from: the file was
+     * edited and the sibling not regenerated, so it holds stale content.
+     */
+    private CachedFile getSibling(CachedFile file, Path sibling, String encoding) throws IOException {
+        try {
+            CachedFile loaded = get(sibling, file.contentType, encoding);
+            return loaded.lastModified >= file.lastModified ? loaded : null;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Tells whether a file version is the one held by the cache. Versions that were not kept, because caching is
+     * disabled or the file is over the budget, are sent uncompressed instead of being gzipped on every request.
+     */
+    private synchronized boolean isCached(CachedFile file) {
+        return entries.get(file.path.toString()) == file;
+    }
+
+    /**
+     * Gzips a file version once and keeps the result on its entry, charging it to the budget.
+     */
+    private CachedFile compress(CachedFile file) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(file.body.length / 3 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed) {{ def.setLevel(Deflater.BEST_COMPRESSION); }}) {
+            gzip.write(file.body);
+        }
+        CachedFile gzipped = new CachedFile(null, file.contentType, "gzip", file.lastModified, compressed.size(), compressed.toByteArray());
+        synchronized (this) {
+            if (file.gzipped != null) {
+                return file.gzipped;
+            }
+            file.gzipped = gzipped;
+            if (entries.get(file.path.toString()) == file) {
+                currentBytes += gzipped.size();
+                evictOverBudget();
+            }
+        }
+        return gzipped;
+    }
+
+    private static Path sibling(Path file, String extension) {
+        Path sibling = file.resolveSibling(file.getFileName() + extension);
+        return Files.isRegularFile(sibling) ? sibling : null;
+    }
+
+    /**
+     * Tells whether an Accept-Encoding header allows a content coding, honoring {@code q=0} and {@code *}.
+     * @param acceptEncoding the Accept-Encoding request header
+     * @param coding the content coding, e.g. gzip
+     * @return true if the coding is acceptable
+     */
+    static boolean accepts(String acceptEncoding, String coding) {
+        boolean wildcard = false;
+        int start = 0;
+        while (start < acceptEncoding.length()) {
+            int comma = acceptEncoding.indexOf(',', start);
+            int end = comma < 0 ? acceptEncoding.length() : comma;
+            String token = acceptEncoding.substring(start, end).trim();
+            start = end + 1;
+            int semicolon = token.indexOf(';');
+            String name = (semicolon < 0 ? token : token.substring(0, semicolon)).trim();
+            boolean allowed = semicolon < 0 || !isZeroQuality(token.substring(semicolon + 1));
+            if (name.equalsIgnoreCase(coding)) {
+                return allowed;
+            }
+            if (name.equals("*")) {
+                wildcard = allowed;
+            }
+        }
+        return wildcard;
+    }
+
+    private static boolean isZeroQuality(String parameters) {
+        String q = parameters.trim().toLowerCase(Locale.ROOT);
+        if (!q.startsWith("q=")) {
+            return false;
+        }
+        try {
+            return Double.parseDouble(q.substring(2).trim()) == 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Tells whether a content type is text that shrinks with gzip; images and archives are already compressed.
+     * @param contentType the content type of the file
+     * @return true if the type is worth compressing
+     */
+    static boolean isCompressible(String contentType) {
+        return contentType.startsWith("text/") || contentType.contains("javascript")
+                || contentType.contains("json") || contentType.contains("xml");
+    }
+
+    /**
+     * Changes the size above which files are streamed from disk. Already cached files keep their mode.
+     * @param threshold the largest file size, in bytes, loaded into memory
+     */
+    public void setStreamingThreshold(long threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Streaming threshold must not be negative");
+        }
+        streamingThreshold = threshold;
+    }
+
+    public long getStreamingThreshold() {
+        return streamingThreshold;
+    }
+
+    /**
+     * Changes the byte budget, evicting entries if the cache is now over it.
+     * @param maxBytes the maximum number of bytes kept in memory, 0 disables caching
+     */
+    public synchronized void resize(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative");
+        }
+        this.maxBytes = maxBytes;
+        evictOverBudget();
+    }
+
+    /**
+     * Drops every cached file.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getCachedBytes() {
+        return currentBytes;
+    }
+
+    public synchronized int getCachedFiles() {
+        return entries.size();
+    }
+
+    private synchronized void store(String key, CachedFile loaded) {
+        CachedFile previous = entries.remove(key);
+        if (previous != null) {
+            currentBytes -= previous.totalSize();
+        }
+        if (loaded.size() > maxBytes) {
+            return;
+        }
+        entries.put(key, loaded);
+        currentBytes += loaded.size();
+        evictOverBudget();
+    }
+
+    private void evictOverBudget() {
+        Iterator<Map.Entry<String, CachedFile>> eldest = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && eldest.hasNext()) {
+            currentBytes -= eldest.next().getValue().totalSize();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * A file representation held in memory: its validators, the start of its 200 and 304 response heads and,
+     * unless it is streamed from disk, its body. Identity representations also know their precompressed
+     * siblings and keep their gzipped copy once it is computed.
+     */
+    static final class CachedFile {
+        final Path path;
+        final String contentType;
+        final String encoding;
+        final long lastModified;
+        final long length;
+        final String etag;
+        final String lastModifiedDate;
+        private final String validators;
+        final byte[] head;
+        final byte[] notModifiedHead;
+        final byte[] body;
+        final boolean compressible;
+        final boolean vary;
+        final Path brotliSibling;
+        final Path gzipSibling;
+        volatile CachedFile gzipped;
+
+        /**
+         * Creates the identity representation of a file.
+         */
+        CachedFile(Path path, String contentType, long lastModified, long length, byte[] body, Path brotliSibling, Path gzipSibling) {
+            this(path, contentType, null, lastModified, length, body, brotliSibling, gzipSibling);
+        }
+
+        /**
+         * Creates an encoded representation, either a precompressed sibling or a compressed copy.
+         */
+        CachedFile(Path path, String contentType, String encoding, long lastModified, long length, byte[] body) {
+            this(path, contentType, encoding, lastModified, length, body, null, null);
+        }
+
+        private CachedFile(Path path, String contentType, String encoding, long lastModified, long length, byte[] body,
+                           Path brotliSibling, Path gzipSibling) {
+            this.path = path;
+            this.contentType = contentType;
+            this.encoding = encoding;
+            this.lastModified = lastModified;
+            this.length = body == null ? length : body.length;
+            this.body = body;
+            this.compressible = isCompressible(contentType);
+            this.brotliSibling = brotliSibling;
+            this.gzipSibling = gzipSibling;
+            this.vary = encoding != null || compressible || brotliSibling != null || gzipSibling != null;
+            this.etag = "\"" + Long.toHexString(this.length) + "-" + Long.toHexString(lastModified) + "\"";
+            this.lastModifiedDate = DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                    Instant.ofEpochMilli(lastModified).atZone(ZoneOffset.UTC));
+            this.validators = "ETag: " + etag + "\r\n"
+                    + "Last-Modified: " + lastModifiedDate + "\r\n"
+                    + (vary ? "Vary: Accept-Encoding\r\n" : "");
+            this.head = ("HTTP/1.1 200 OK\r\n"
+                    + "Content-Type: " + contentType + "\r\n"
+                    + (encoding != null ? "Content-Encoding: " + encoding + "\r\n" : "")
+                    + "Content-Length: " + this.length + "\r\n"
+                    + "Accept-Ranges: bytes\r\n"
+                    + validators).getBytes(StandardCharsets.ISO_8859_1);
+            this.notModifiedHead = ("HTTP/1.1 304 Not Modified\r\n" + validators).getBytes(StandardCharsets.ISO_8859_1);
+        }
+
+        /**
+         * Evaluates the conditional request headers against this version.
+         * {@code If-None-Match} takes precedence; {@code If-Modified-Since} is only used without it.
+         * @param ifNoneMatch the If-None-Match header, or null
+         * @param ifModifiedSince the If-Modified-Since header, or null
+         * @return true if the client copy is current and a 304 can be sent
+         */
+        boolean isNotModified(String ifNoneMatch, String ifModifiedSince) {
+            if (ifNoneMatch != null) {
+                return matchesEtag(ifNoneMatch);
+            }
+            if (ifModifiedSince == null) {
+                return false;
+            }
+            if (ifModifiedSince.equals(lastModifiedDate)) {
+                return true;
+            }
+            try {
+                long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+                return lastModified / 1000 <= since / 1000;
+            } catch (DateTimeParseException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Evaluates an {@code If-Range} header: an entity tag must match this version's ETag with the strong
+         * comparison, and a date must be exactly this version's Last-Modified date.
+         * @param ifRange the If-Range header, or null
+         * @return true if the Range header applies to this version
+         */
+        boolean matchesIfRange(String ifRange) {
+            if (ifRange == null) {
+                return true;
+            }
+            String validator = ifRange.trim();
+            return validator.startsWith("\"") ? validator.equals(etag) : validator.equals(lastModifiedDate);
+        }
+
+        /**
+         * Builds the head of a 206 response carrying part of this version.
+         * @param contentType the content type of the response, multipart/byteranges for several ranges
+         * @param contentRange the Content-Range value for a single range, or null
+         * @param contentLength the number of bytes in the response body
+         * @return the status line and headers, each ending with CRLF
+         */
+        byte[] partialHead(String contentType, String contentRange, long contentLength) {
+            return ("HTTP/1.1 206 Partial Content\r\n"
+                    + "Content-Type: " + contentType + "\r\n"
+                    + (encoding != null ? "Content-Encoding: " + encoding + "\r\n" : "")
+                    + (contentRange != null ? "Content-Range: " + contentRange + "\r\n" : "")
+                    + "Content-Length: " + contentLength + "\r\n"
+                    + "Accept-Ranges: bytes\r\n"
+                    + validators).getBytes(StandardCharsets.ISO_8859_1);
+        }
+
+        /**
+         * Compares an If-None-Match list with this version's ETag using the weak comparison.
+         */
+        private boolean matchesEtag(String ifNoneMatch) {
+            int start = 0;
+            while (start < ifNoneMatch.length()) {
+                int comma = ifNoneMatch.indexOf(',', start);
+                int end = comma < 0 ? ifNoneMatch.length() : comma;
+                String candidate = ifNoneMatch.substring(start, end).trim();
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+                if (candidate.equals("*") || candidate.equals(etag)) {
+                    return true;
+                }
+                start = end + 1;
+            }
+            return false;
+        }
+
+        /**
+         * Tells whether the body must be streamed from the file instead of written from memory.
+         * @return true if the body is not held in memory
+         */
+        boolean isStreamed() {
+            return body == null;
+        }
+
+        /**
+         * Returns the number of bytes this representation holds in memory.
+         * @return the body and heads size
+         */
+        long size() {
+            return head.length + notModifiedHead.length + (body == null ? 0 : body.length);
+        }
+
+        /**
+         * Returns the number of bytes this entry holds in memory, including its gzipped copy.
+         * @return the size of every representation kept on this entry
+         */
+        long totalSize() {
+            CachedFile compressed = gzipped;
+            return size() + (compressed == null ? 0 : compressed.size());
+        }
+    }
+}
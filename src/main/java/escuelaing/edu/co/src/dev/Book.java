@@ -0,0 +1,4 @@
+package escuelaing.edu.co.src.dev;
+
+public record Book(long id, String title, String author) {
+}
@@ -1,12 +1,33 @@
 package escuelaing.edu.co.src.dev;
 
+import escuelaing.edu.co.framework.annotations.Cacheable;
 import escuelaing.edu.co.framework.annotations.GetMapping;
+import escuelaing.edu.co.framework.annotations.PathVariable;
 import escuelaing.edu.co.framework.annotations.RestController;
+import escuelaing.edu.co.framework.errors.HttpServerErrors;
+
+import java.util.List;
 
 @RestController("/api/v1")
 public class BooksController {
+    private static final List<Book> CATALOG = List.of(
+            new Book(1, "Cien años de soledad", "Gabriel García Márquez"),
+            new Book(2, "La vorágine", "José Eustasio Rivera"));
+
     @GetMapping("/books")
     public String getBooks() {
         return "List of books";
     }
+
+    @GetMapping("/books/catalog")
+    public List<Book> getCatalog() {
+        return CATALOG;
+    }
+
+    @GetMapping("/books/{id}")
+    @Cacheable(ttl = 30)
+    public Book getBook(@PathVariable("id") long id) {
+        return CATALOG.stream().filter(book -> book.id() == id).findFirst()
+                .orElseThrow(() -> HttpServerErrors.NOT_FOUND_404);
+    }
 }
@@ -0,0 +1,153 @@
+package escuelaing.edu.co.framework.injector;
+
+import escuelaing.edu.co.framework.annotations.Autowired;
+import escuelaing.edu.co.framework.annotations.Lazy;
+import escuelaing.edu.co.framework.annotations.Qualifier;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BeanGraphTest {
+
+    public interface Store {
+        String name();
+    }
+
+    @Qualifier("fast")
+    public static class FastStore implements Store {
+        public String name() {
+            return "fast";
+        }
+    }
+
+    public static class SlowStore implements Store {
+        public String name() {
+            return "slow";
+        }
+    }
+
+    public static class Shop {
+        @Autowired
+        @Qualifier("fast")
+        Store primary;
+        @Autowired
+        @Qualifier("SlowStore")
+        Store fallback;
+    }
+
+    public static class Unqualified {
+        @Autowired
+        Store store;
+    }
+
+    public static class Left {
+        @Autowired
+        Right right;
+    }
+
+    public static class Right {
+        @Autowired
+        Left left;
+    }
+
+    @Lazy
+    public static class ExpensiveStore implements Store {
+        static final AtomicInteger created = new AtomicInteger();
+        @Autowired
+        LazyClient client;
+
+        public ExpensiveStore() {
+            created.incrementAndGet();
+        }
+
+        public String name() {
+            return "expensive";
+        }
+    }
+
+    public static class LazyClient {
+        @Autowired
+        Store store;
+    }
+
+    static final CountDownLatch BOTH_STARTED = new CountDownLatch(2);
+
+    public static class SlowInitA {
+        final boolean sawOther;
+
+        public SlowInitA() throws InterruptedException {
+            BOTH_STARTED.countDown();
+            sawOther = BOTH_STARTED.await(5, TimeUnit.SECONDS);
+        }
+    }
+
+    public static class SlowInitB extends SlowInitA {
+        public SlowInitB() throws InterruptedException {
+        }
+    }
+
+    @Test
+    void qualifiers_pickTheNamedImplementation() {
+        BeanGraph graph = new BeanGraph(new ConcurrentHashMap<>(), type -> Set.of(FastStore.class, SlowStore.class));
+        graph.add(Shop.class, true);
+        graph.checkCycles();
+        graph.initialize();
+
+        Shop shop = (Shop) graph.get(Shop.class);
+        assertEquals("fast", shop.primary.name());
+        assertEquals("slow", shop.fallback.name());
+
+        BeanGraph ambiguous = new BeanGraph(new ConcurrentHashMap<>(), type -> Set.of(FastStore.class, SlowStore.class));
+        assertTrue(assertThrows(RuntimeException.class, () -> ambiguous.add(Unqualified.class, true))
+                .getMessage().startsWith("Multiple Implementations found"));
+    }
+
+    @Test
+    void cycles_areReportedBeforeAnyBeanIsCreated() {
+        Map<String, Object> beans = new ConcurrentHashMap<>();
+        BeanGraph graph = new BeanGraph(beans, type -> Set.of());
+        graph.add(Left.class, true);
+
+        RuntimeException error = assertThrows(RuntimeException.class, graph::checkCycles);
+        assertTrue(error.getMessage().contains(Left.class.getName() + " -> " + Right.class.getName() + " -> " + Left.class.getName()),
+                error.getMessage());
+        assertTrue(beans.isEmpty());
+    }
+
+    @Test
+    void lazyBeans_areCreatedOnFirstUseAndBreakCycles() {
+        Map<String, Object> beans = new ConcurrentHashMap<>();
+        BeanGraph graph = new BeanGraph(beans, type -> Set.of(ExpensiveStore.class));
+        graph.add(ExpensiveStore.class, true);
+        graph.add(LazyClient.class, true);
+        ExpensiveStore.created.set(0);
+        graph.checkCycles();
+        graph.initialize();
+
+        LazyClient client = (LazyClient) graph.get(LazyClient.class);
+        assertEquals(0, ExpensiveStore.created.get());
+        assertEquals("expensive", client.store.name());
+        assertEquals("expensive", client.store.name());
+        assertEquals(1, ExpensiveStore.created.get());
+        assertSame(client, ((ExpensiveStore) beans.get(ExpensiveStore.class.getName())).client);
+    }
+
+    @Test
+    void independentBeans_areCreatedInParallel() {
+        BeanGraph graph = new BeanGraph(new ConcurrentHashMap<>(), type -> Set.of());
+        graph.add(SlowInitA.class, true);
+        graph.add(SlowInitB.class, true);
+        graph.checkCycles();
+        graph.initialize();
+
+        assertTrue(((SlowInitA) graph.get(SlowInitA.class)).sawOther);
+        assertTrue(((SlowInitB) graph.get(SlowInitB.class)).sawOther);
+    }
+}
@@ -1,7 +1,12 @@
 package escuelaing.edu.co.framework.injector;
 
 import escuelaing.edu.co.framework.annotations.*;
+import escuelaing.edu.co.framework.errors.HttpServerErrors;
+import escuelaing.edu.co.framework.models.HTTPFrameworkRequest;
+import escuelaing.edu.co.framework.models.HTTPFrameworkResponse;
+import escuelaing.edu.co.framework.models.HTTPMethod;
 import escuelaing.edu.co.framework.services.implementations.HTTPServerImpl;
+import escuelaing.edu.co.framework.services.implementations.Router;
 import escuelaing.edu.co.framework.services.interfaces.HTTPServerHandler;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,6 +16,7 @@ import java.io.File;
 import java.lang.reflect.Field;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -31,6 +37,70 @@ public class InjectorRouteRegistrationTest {
         public String greet(@RequestParam(value = "name", defaultValue = "Anonymous") String name) {
             return "Hello " + name;
         }
+
+        @GetMapping("/shelf")
+        public Map<String, List<Integer>> shelf() {
+            return Map.of("ids", List.of(1, 2));
+        }
+
+        @GetMapping("/raw")
+        public byte[] raw() {
+            return new byte[]{1, 2, 3};
+        }
+
+        @GetMapping("/buffer")
+        public java.nio.ByteBuffer buffer() {
+            return java.nio.ByteBuffer.wrap(new byte[]{0, 4, 5}, 1, 2);
+        }
+    }
+
+    public enum Shelf { FICTION, SCIENCE }
+
+    @RestController("/typed")
+    public static class TypedController {
+        @GetMapping("/books/{id}")
+        public String book(@PathVariable("id") long id, @RequestParam(value = "page", defaultValue = "1") int page,
+                           @RequestParam("ratio") double ratio, @RequestParam("signed") boolean signed,
+                           @RequestParam("shelf") Shelf shelf, @RequestParam("tag") List<Integer> tags,
+                           @RequestParam("ref") UUID ref, @RequestParam("limit") Integer limit) {
+            return id + " " + page + " " + ratio + " " + signed + " " + shelf + " " + tags + " " + ref + " " + limit;
+        }
+    }
+
+    @RestController("/cached")
+    public static class CachedController {
+        static final java.util.concurrent.atomic.AtomicInteger calls = new java.util.concurrent.atomic.AtomicInteger();
+
+        @GetMapping("/items/{id}")
+        @Cacheable(ttl = 60, maxEntries = 2)
+        public List<String> item(@PathVariable("id") String id, @RequestParam("q") String q) {
+            calls.incrementAndGet();
+            return List.of(id, q);
+        }
+
+        @Cacheable
+        public String raw(HTTPFrameworkRequest request) {
+            return request.getUrl();
+        }
+    }
+
+    @RestController("/deferred")
+    public static class AsyncController {
+        @GetMapping("/shelf")
+        @Timeout(1500)
+        public java.util.concurrent.CompletableFuture<Map<String, Integer>> shelf(@RequestParam("size") int size) {
+            return java.util.concurrent.CompletableFuture.supplyAsync(() -> Map.of("size", size));
+        }
+    }
+
+    public static class PathVariableHandlers {
+        public String misnamed(@PathVariable("bookId") long id) {
+            return "misnamed";
+        }
+
+        public String unnamed(@PathVariable long id) {
+            return "unnamed";
+        }
     }
 
     @Component
@@ -59,7 +129,7 @@ public class InjectorRouteRegistrationTest {
         // Limpiar rutas registradas antes de cada test
         Field routesField = HTTPServerImpl.class.getDeclaredField("routes");
         routesField.setAccessible(true);
-        Map<String, HTTPServerHandler> routes = (Map<String, HTTPServerHandler>) routesField.get(null);
+        Router routes = (Router) routesField.get(null);
         routes.clear();
 
         // Limpiar instancia del Injector
@@ -86,10 +156,200 @@ public class InjectorRouteRegistrationTest {
         // Verificar que las rutas se registraron correctamente
         Field routesField = HTTPServerImpl.class.getDeclaredField("routes");
         routesField.setAccessible(true);
-        Map<String, HTTPServerHandler> routes = (Map<String, HTTPServerHandler>) routesField.get(null);
+        Router routes = (Router) routesField.get(null);
+
+        assertNotNull(routes.match("/api/hello"), "La ruta /api/hello debe estar registrada");
+        assertNotNull(routes.match("/api/greet"), "La ruta /api/greet debe estar registrada");
+    }
+
+    @Test
+    public void compiledHandlers_bindRequestParamsAndSerializeResults() throws Exception {
+        Injector.startApp(TestController.class, true);
+        Field routesField = HTTPServerImpl.class.getDeclaredField("routes");
+        routesField.setAccessible(true);
+        Router routes = (Router) routesField.get(null);
+        HTTPServerHandler greet = routes.match("/api/greet").getHandler(HTTPMethod.GET);
+
+        assertEquals("Hello Ana", greet.handleRequest(new HTTPFrameworkRequest("/api/greet?name=Ana"), new HTTPFrameworkResponse()).getBody());
+        assertEquals("Hello Anonymous", greet.handleRequest(new HTTPFrameworkRequest("/api/greet"), new HTTPFrameworkResponse()).getBody());
+        assertEquals("Hello World", routes.match("/api/hello").getHandler(HTTPMethod.GET)
+                .handleRequest(new HTTPFrameworkRequest("/api/hello"), new HTTPFrameworkResponse()).getBody());
+        HTTPFrameworkResponse shelf = routes.match("/api/shelf").getHandler(HTTPMethod.GET)
+                .handleRequest(new HTTPFrameworkRequest("/api/shelf"), new HTTPFrameworkResponse());
+        assertEquals("{\"ids\":[1,2]}", shelf.getBody());
+        assertEquals("application/json", shelf.getHeader("Content-Type"));
+        HTTPFrameworkResponse raw = routes.match("/api/raw").getHandler(HTTPMethod.GET)
+                .handleRequest(new HTTPFrameworkRequest("/api/raw"), new HTTPFrameworkResponse());
+        assertEquals(java.nio.ByteBuffer.wrap(new byte[]{1, 2, 3}), raw.getBodyBuffer());
+        assertEquals("application/octet-stream", raw.getHeader("Content-Type"));
+        HTTPFrameworkResponse buffer = routes.match("/api/buffer").getHandler(HTTPMethod.GET)
+                .handleRequest(new HTTPFrameworkRequest("/api/buffer"), new HTTPFrameworkResponse());
+        assertEquals(java.nio.ByteBuffer.wrap(new byte[]{4, 5}), buffer.getBodyBuffer());
+    }
+
+    @Test
+    public void compiledHandlers_convertTypedParamsAndRejectBadValuesWith400() throws Exception {
+        Injector.startApp(TypedController.class, true);
+        Field routesField = HTTPServerImpl.class.getDeclaredField("routes");
+        routesField.setAccessible(true);
+        Router routes = (Router) routesField.get(null);
+        Router.RouteMatch match = routes.match("/typed/books/42");
+        HTTPServerHandler book = match.getHandler(HTTPMethod.GET);
+        UUID ref = UUID.randomUUID();
+
+        HTTPFrameworkRequest full = new HTTPFrameworkRequest("/typed/books/42?page=3&ratio=0.5&signed=TRUE&shelf=SCIENCE&tag=1&tag=2&ref=" + ref + "&limit=7");
+        full.setPathVariables(match.getVariables());
+        assertEquals("42 3 0.5 true SCIENCE [1, 2] " + ref + " 7", book.handleRequest(full, new HTTPFrameworkResponse()).getBody());
+
+        HTTPFrameworkRequest defaults = new HTTPFrameworkRequest("/typed/books/42?ratio=2&signed=false");
+        defaults.setPathVariables(match.getVariables());
+        assertEquals("42 1 2.0 false null [] null null", book.handleRequest(defaults, new HTTPFrameworkResponse()).getBody());
+
+        for (String query : new String[]{"ratio=x&signed=true", "ratio=1&signed=yes", "ratio=1&signed=true&shelf=POETRY",
+                "ratio=1&signed=true&tag=1&tag=b", "ratio=1&signed=true&ref=nope", "signed=true"}) {
+            HTTPFrameworkRequest bad = new HTTPFrameworkRequest("/typed/books/42?" + query);
+            bad.setPathVariables(match.getVariables());
+            assertSame(HttpServerErrors.BAD_REQUEST_400, assertThrows(HttpServerErrors.class,
+                    () -> book.handleRequest(bad, new HTTPFrameworkResponse())), query);
+        }
+    }
+
+    @Test
+    public void cacheableHandlers_answerRepeatedRequestsFromTheCache() throws Exception {
+        Injector.startApp(CachedController.class, true);
+        Field routesField = HTTPServerImpl.class.getDeclaredField("routes");
+        routesField.setAccessible(true);
+        Router routes = (Router) routesField.get(null);
+        CachedController.calls.set(0);
+
+        assertEquals("[\"7\",\"a\"]", cachedItem(routes, "7", "a").getBody());
+        HTTPFrameworkResponse hit = cachedItem(routes, "7", "a");
+        assertEquals("[\"7\",\"a\"]", hit.getBody());
+        assertEquals("application/json", hit.getHeader("Content-Type"));
+        assertEquals(1, CachedController.calls.get(), "A repeated request is answered from the cache");
+        cachedItem(routes, "7", "b");
+        cachedItem(routes, "8", "a");
+        assertEquals(3, CachedController.calls.get(), "Each route variable and parameter value has its own entry");
+        cachedItem(routes, "7", "a");
+        assertEquals(4, CachedController.calls.get(), "The oldest entry is evicted beyond maxEntries");
+
+        RuntimeException rejected = assertThrows(RuntimeException.class, () -> ResponseCache.of(
+                CachedController.class.getMethod("raw", HTTPFrameworkRequest.class), HTTPMethod.GET));
+        assertTrue(rejected.getMessage().contains("@RequestParam and @PathVariable"));
+        assertThrows(RuntimeException.class, () -> ResponseCache.of(
+                CachedController.class.getMethod("item", String.class, String.class), HTTPMethod.POST));
+    }
+
+    @Test
+    public void pathVariables_mustNameAVariableOfTheRoute() throws Exception {
+        java.lang.reflect.Method misnamed = PathVariableHandlers.class.getMethod("misnamed", long.class);
+        RuntimeException rejected = assertThrows(RuntimeException.class,
+                () -> ParameterBinder.checkPathVariables(misnamed, "/books/{id}"));
+        assertTrue(rejected.getMessage().contains("bookId"));
+        ParameterBinder.checkPathVariables(misnamed, "/shelves/{shelf}/books/{bookId}");
+
+        java.lang.reflect.Method unnamed = PathVariableHandlers.class.getMethod("unnamed", long.class);
+        ParameterBinder.checkPathVariables(unnamed, "/books/{id}");
+        assertThrows(RuntimeException.class, () -> ParameterBinder.checkPathVariables(unnamed, "/books/{*path}"));
+    }
+
+    private static HTTPFrameworkResponse cachedItem(Router routes, String id, String q) {
+        Router.RouteMatch match = routes.match("/cached/items/" + id);
+        HTTPFrameworkRequest request = new HTTPFrameworkRequest("/cached/items/" + id + "?q=" + q);
+        request.setPathVariables(match.getVariables());
+        return match.getHandler(HTTPMethod.GET).handleRequest(request, new HTTPFrameworkResponse());
+    }
+
+    @Test
+    public void asyncHandlers_completeTheResponseWithTheFutureValue() throws Exception {
+        Injector.startApp(AsyncController.class, true);
+        Field routesField = HTTPServerImpl.class.getDeclaredField("routes");
+        routesField.setAccessible(true);
+        Router routes = (Router) routesField.get(null);
+        HTTPFrameworkResponse response = routes.match("/deferred/shelf").getHandler(HTTPMethod.GET)
+                .handleRequest(new HTTPFrameworkRequest("/deferred/shelf?size=3"), new HTTPFrameworkResponse());
+
+        assertNotNull(response.getAsync(), "The handler returns before the future completes");
+        assertEquals(1500, response.getAsyncTimeout());
+        HTTPFrameworkResponse completed = response.getAsync().toCompletableFuture().get(2, java.util.concurrent.TimeUnit.SECONDS);
+        assertEquals("{\"size\":3}", completed.getBody());
+        assertEquals("application/json", completed.getHeader("Content-Type"));
+    }
+
+    @Test
+    public void generatedIndex_replacesClasspathScanning() throws Exception {
+        ComponentIndex index = ComponentIndex.load(getClass().getClassLoader(), TestController.class.getPackageName());
+        assertNotNull(index, "The annotation processor must have indexed the test classes");
+        assertTrue(index.controllers().contains(TestController.class));
+        assertTrue(index.components().contains(TestComponent.class));
+        assertTrue(index.routes(TypedController.class).stream().anyMatch(route -> route.path().equals("/typed/books/{id}")
+                && route.method() == HTTPMethod.GET && route.handler().getName().equals("book")));
+        ComponentIndex dev = ComponentIndex.load(getClass().getClassLoader(), "escuelaing.edu.co.src");
+        assertFalse(dev.controllers().contains(TestController.class), "Entries outside the application package are ignored");
+
+        Injector.startApp(TestController.class, true);
+        Field instanceField = Injector.class.getDeclaredField("instance");
+        instanceField.setAccessible(true);
+        Field reflectionsField = Injector.class.getDeclaredField("reflections");
+        reflectionsField.setAccessible(true);
+        assertNull(reflectionsField.get(instanceField.get(null)), "No classpath scan when the index is present");
+    }
+
+    @Test
+    public void incrementalCompilation_keepsTheIndexEntriesOfUntouchedClasses() throws Exception {
+        Path sources = Files.createDirectories(tmpResources.resolve("src/app"));
+        Path classes = Files.createDirectories(tmpResources.resolve("classes"));
+        Path service = Files.writeString(sources.resolve("Service.java"),
+                "package app; @escuelaing.edu.co.framework.annotations.Component public class Service {}");
+        Path controller = Files.writeString(sources.resolve("Books.java"), "package app; "
+                + "@escuelaing.edu.co.framework.annotations.RestController(\"/books\") public class Books { "
+                + "@escuelaing.edu.co.framework.annotations.GetMapping(\"/all\") public String all() { return \"\"; } }");
+        Path index = classes.resolve(escuelaing.edu.co.framework.processor.ComponentIndexProcessor.INDEX);
 
-        assertTrue(routes.containsKey("/api/hello"), "La ruta /api/hello debe estar registrada");
-        assertTrue(routes.containsKey("/api/greet"), "La ruta /api/greet debe estar registrada");
+        compileIndexed(classes, service, controller);
+        String full = Files.readString(index);
+        compileIndexed(classes, service);
+        assertEquals(full.lines().sorted().toList(), Files.readString(index).lines().sorted().toList(),
+                "Recompiling one class must not drop the entries of the others");
+
+        Files.delete(classes.resolve("app/Books.class"));
+        compileIndexed(classes, service);
+        String pruned = Files.readString(index);
+        assertTrue(pruned.contains("component\tapp.Service"));
+        assertFalse(pruned.contains("app.Books"), "Entries of classes that no longer exist are dropped");
+    }
+
+    private static void compileIndexed(Path classes, Path... sources) {
+        List<String> arguments = new java.util.ArrayList<>(List.of("-d", classes.toString(),
+                "-cp", classes + File.pathSeparator + System.getProperty("java.class.path"),
+                "-processor", escuelaing.edu.co.framework.processor.ComponentIndexProcessor.class.getName()));
+        for (Path source : sources) {
+            arguments.add(source.toString());
+        }
+        assertEquals(0, javax.tools.ToolProvider.getSystemJavaCompiler().run(null, null, null, arguments.toArray(new String[0])));
+    }
+
+    @Test
+    public void indexWithoutEntriesForThePackage_fallsBackToScanning() throws Exception {
+        Path indexFile = tmpResources.resolve("components.index");
+        Files.writeString(indexFile, "controller\tescuelaing.edu.co.src.dev.BooksController\n"
+                + "component\tescuelaing.edu.co.framework.services.implementations.ServiceImpl\n");
+        ClassLoader otherPackageIndex = new ClassLoader(getClass().getClassLoader()) {
+            @Override
+            public java.util.Enumeration<java.net.URL> getResources(String name) throws java.io.IOException {
+                return java.util.Collections.enumeration(List.of(indexFile.toUri().toURL()));
+            }
+        };
+        assertNull(ComponentIndex.load(otherPackageIndex, TestController.class.getPackageName()),
+                "An index listing only other packages must not hide the application from scanning");
+        assertNotNull(ComponentIndex.load(otherPackageIndex, "escuelaing.edu.co.src"));
+
+        Injector.startApp(HTTPMethod.class, true);
+        Field instanceField = Injector.class.getDeclaredField("instance");
+        instanceField.setAccessible(true);
+        Field reflectionsField = Injector.class.getDeclaredField("reflections");
+        reflectionsField.setAccessible(true);
+        assertNotNull(reflectionsField.get(instanceField.get(null)), "A package without index entries is scanned");
     }
 
     @Test
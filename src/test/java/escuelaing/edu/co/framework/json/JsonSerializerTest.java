@@ -0,0 +1,84 @@
+package escuelaing.edu.co.framework.json;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonSerializerTest {
+
+    enum Status { ACTIVE, BLOCKED }
+
+    record Book(long id, String title, double price, List<String> tags, Status status) {
+    }
+
+    public static class Author {
+        private final String name;
+        private final boolean alive;
+        public int books = 3;
+
+        public Author(String name, boolean alive) {
+            this.name = name;
+            this.alive = alive;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isAlive() {
+            return alive;
+        }
+
+        public String getInitials() {
+            return name.substring(0, 1);
+        }
+    }
+
+    public static class Node {
+        public Node next;
+    }
+
+    @Test
+    void serialize_writesRecordsBeansCollectionsAndMaps() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("book", new Book(7, "Cien años", 12.5, List.of("novela", "clásico"), Status.ACTIVE));
+        map.put("author", new Author("Gabo", false));
+        map.put("counts", new int[]{1, -2, Integer.MIN_VALUE});
+        map.put("missing", Optional.empty());
+        map.put("nothing", null);
+
+        assertEquals("{\"book\":{\"id\":7,\"title\":\"Cien años\",\"price\":12.5,\"tags\":[\"novela\",\"clásico\"],\"status\":\"ACTIVE\"},"
+                        + "\"author\":{\"name\":\"Gabo\",\"alive\":false,\"books\":3,\"initials\":\"G\"},"
+                        + "\"counts\":[1,-2,-2147483648],\"missing\":null,\"nothing\":null}",
+                json(map));
+    }
+
+    @Test
+    void serialize_escapesStringsAndEncodesThemAsUtf8() {
+        assertEquals("\"a\\\"b\\\\c\\n\\u0001 é 😀\"", json("a\"b\\c\n\u0001 é 😀"));
+        assertEquals("[null,1.0E20,0.1,3,true]", json(new Object[]{Double.NaN, 1e20, 0.1, 3.0, true}));
+        UUID id = UUID.randomUUID();
+        assertEquals("[\"" + id + "\"]", json(new ArrayList<>(List.of(id))));
+    }
+
+    @Test
+    void serialize_rejectsReferenceCycles() {
+        Node node = new Node();
+        node.next = node;
+        assertThrows(IllegalArgumentException.class, () -> JsonSerializer.serialize(node));
+    }
+
+    private static String json(Object value) {
+        ByteBuffer buffer = JsonSerializer.serialize(value);
+        return StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+}
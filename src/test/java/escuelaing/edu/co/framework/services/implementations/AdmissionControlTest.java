@@ -0,0 +1,66 @@
+package escuelaing.edu.co.framework.services.implementations;
+
+import escuelaing.edu.co.framework.errors.HttpServerErrors;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControlTest {
+
+    @Test
+    void inFlightLimits_shedRequestsUntilOthersAreReleased() {
+        AdmissionControl admission = new AdmissionControl();
+        admission.maxInFlight(3);
+        admission.maxInFlight("/slow", 1);
+        AdmissionControl.Limit slow = admission.admit(null, "/slow");
+        assertNotNull(slow);
+        assertThrows(HttpServerErrors.class, () -> admission.admit(null, "/slow"));
+        assertNull(admission.admit(null, "/fast"));
+        assertNull(admission.admit(null, null));
+        assertEquals(3, admission.inFlight());
+        HttpServerErrors shed = assertThrows(HttpServerErrors.class, () -> admission.admit(null, "/fast"));
+        assertEquals(503, shed.CODE);
+        admission.release(slow);
+        assertSame(slow, admission.admit(null, "/slow"));
+        assertEquals(2, admission.rejected());
+        admission.maxInFlight(0);
+        for (int i = 0; i < 10; i++) {
+            admission.admit(null, null);
+        }
+        assertEquals(13, admission.inFlight());
+    }
+
+    @Test
+    void rateLimit_givesEachClientItsOwnBurst() throws Exception {
+        AdmissionControl admission = new AdmissionControl();
+        admission.rateLimit(0.001, 2);
+        InetAddress first = InetAddress.getByName("10.0.0.1");
+        InetAddress second = InetAddress.getByName("10.0.0.2");
+        admission.release(admission.admit(first, null));
+        admission.release(admission.admit(first, null));
+        assertThrows(HttpServerErrors.class, () -> admission.admit(first, null));
+        admission.release(admission.admit(second, null));
+        admission.release(admission.admit(null, null));
+        assertEquals(0, admission.inFlight());
+        admission.rateLimit(0, 0);
+        admission.release(admission.admit(first, null));
+        assertThrows(IllegalArgumentException.class, () -> admission.rateLimit(5, 0));
+    }
+
+    @Test
+    void rateLimit_boundsClientBucketsAndKeepsActiveClients() throws Exception {
+        AdmissionControl admission = new AdmissionControl(4);
+        admission.rateLimit(0.001, 1);
+        InetAddress active = InetAddress.getByName("10.0.0.1");
+        admission.release(admission.admit(active, null));
+        for (int i = 0; i < 1000; i++) {
+            InetAddress client = InetAddress.getByName("10.1." + (i / 250) + "." + (i % 250));
+            admission.release(admission.admit(client, null));
+            assertThrows(HttpServerErrors.class, () -> admission.admit(active, null),
+                    "Evicting idle clients must not hand an active client a fresh bucket");
+            assertTrue(admission.clients() <= 4);
+        }
+    }
+}
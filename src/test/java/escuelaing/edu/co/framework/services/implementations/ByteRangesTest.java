@@ -0,0 +1,32 @@
+package escuelaing.edu.co.framework.services.implementations;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ByteRangesTest {
+
+    @Test
+    void parse_clampsSortsAndCoalescesRanges() {
+        assertArrayEquals(new long[]{0, 99}, ByteRanges.parse("bytes=0-99", 1000));
+        assertArrayEquals(new long[]{900, 999}, ByteRanges.parse("bytes=-100", 1000));
+        assertArrayEquals(new long[]{500, 999}, ByteRanges.parse("bytes=500-", 1000));
+        assertArrayEquals(new long[]{990, 999}, ByteRanges.parse("bytes=990-5000", 1000));
+        assertArrayEquals(new long[]{0, 999}, ByteRanges.parse("bytes=-5000", 1000));
+        assertArrayEquals(new long[]{0, 9, 20, 29}, ByteRanges.parse("bytes=20-29, 0-9", 1000));
+        assertArrayEquals(new long[]{0, 29}, ByteRanges.parse("bytes=0-9,5-19,20-29", 1000));
+        assertEquals(40, ByteRanges.size(ByteRanges.parse("bytes=0-9,100-129", 1000)));
+    }
+
+    @Test
+    void parse_rejectsUnsatisfiableAndIgnoresMalformedHeaders() {
+        assertEquals(0, ByteRanges.parse("bytes=1000-", 1000).length);
+        assertEquals(0, ByteRanges.parse("bytes=-0", 1000).length);
+        assertEquals(0, ByteRanges.parse("bytes=0-", 0).length);
+        assertNull(ByteRanges.parse("items=0-9", 1000));
+        assertNull(ByteRanges.parse("bytes=9-0", 1000));
+        assertNull(ByteRanges.parse("bytes=a-b", 1000));
+        assertNull(ByteRanges.parse("bytes=", 1000));
+        assertNull(ByteRanges.parse("bytes=0-1" + ",2-3".repeat(ByteRanges.MAX_RANGES), 1000));
+    }
+}
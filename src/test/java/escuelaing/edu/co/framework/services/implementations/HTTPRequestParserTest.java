@@ -0,0 +1,87 @@
+package escuelaing.edu.co.framework.services.implementations;
+
+import escuelaing.edu.co.framework.errors.HttpServerErrors;
+import escuelaing.edu.co.framework.models.HTTPFrameworkRequest;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HTTPRequestParserTest {
+
+    @Test
+    void parse_readsRequestLineHeadersAndQueryInOnePass() {
+        HTTPFrameworkRequest request = parse("\r\nGET /api/v1/users/greeting?name=Ana&tag=a&tag=b+c HTTP/1.1\r\n"
+                + "Host: localhost\r\nACCEPT-Encoding:  gzip, br \r\nX-Custom: one\r\nx-custom: two\r\n\r\n");
+
+        assertEquals("GET", request.getMethod());
+        assertEquals("/api/v1/users/greeting", request.getUrl());
+        assertEquals("HTTP/1.1", request.getVersion());
+        assertEquals("Ana", request.getValue("name"));
+        assertEquals("a", request.getValue("tag"));
+        assertEquals(List.of("a", "b c"), request.getValues("tag"));
+        assertEquals("gzip, br", request.getHeader("Accept-Encoding"));
+        assertEquals("one, two", request.getHeader("X-Custom"));
+    }
+
+    @Test
+    void parse_percentDecodesPathAndParameters() {
+        HTTPFrameworkRequest request = parse("GET /files/mi%20archivo.txt?q=caf%C3%A9%26leche&empty=&flag HTTP/1.1\r\n\r\n");
+
+        assertEquals("/files/mi archivo.txt", request.getUrl());
+        assertEquals("café&leche", request.getValue("q"));
+        assertEquals("", request.getValue("empty"));
+        assertEquals("", request.getValue("flag"));
+        assertTrue(request.getValues("missing").isEmpty());
+    }
+
+    @Test
+    void parse_rejectsPathTraversalAndBadEscapes() {
+        assertSame(HttpServerErrors.BAD_REQUEST_400, assertThrows(HttpServerErrors.class,
+                () -> parse("GET /../etc/passwd HTTP/1.1\r\n\r\n")));
+        assertThrows(HttpServerErrors.class, () -> parse("GET /static/%2e%2e/secret HTTP/1.1\r\n\r\n"));
+        assertThrows(HttpServerErrors.class, () -> parse("GET /static/..%5csecret HTTP/1.1\r\n\r\n"));
+        assertThrows(HttpServerErrors.class, () -> parse("GET /a%zz HTTP/1.1\r\n\r\n"));
+        assertEquals("/notes..txt", parse("GET /notes..txt HTTP/1.1\r\n\r\n").getUrl());
+    }
+
+    @Test
+    void parse_rejectsMalformedHeads() {
+        assertThrows(HttpServerErrors.class, () -> parse("GET\r\n\r\n"));
+        assertThrows(HttpServerErrors.class, () -> parse("GET /  HTTP/1.1\r\n\r\n"));
+        assertThrows(HttpServerErrors.class, () -> parse("GET / HTTX/1.1\r\n\r\n"));
+        assertThrows(HttpServerErrors.class, () -> parse("G(T / HTTP/1.1\r\n\r\n"));
+        assertThrows(HttpServerErrors.class, () -> parse("GET / HTTP/1.1\r\nNo colon\r\n\r\n"));
+        assertThrows(HttpServerErrors.class, () -> parse("GET / HTTP/1.1\r\nBad name: x\r\n\r\n"));
+        assertThrows(HttpServerErrors.class, () -> parse("GET / HTTP/1.1\r\nA: b\r\n folded\r\n\r\n"));
+        assertNull(parse("\r\n\r\n"));
+    }
+
+    @Test
+    void parse_enforcesLineLengthAndHeaderCountLimits() {
+        String longTarget = "/" + "a".repeat(HTTPRequestParser.MAX_REQUEST_LINE);
+        assertSame(HttpServerErrors.URI_TOO_LONG_414, assertThrows(HttpServerErrors.class,
+                () -> parse("GET " + longTarget + " HTTP/1.1\r\n\r\n")));
+        assertSame(HttpServerErrors.REQUEST_HEADER_FIELDS_TOO_LARGE_431, assertThrows(HttpServerErrors.class,
+                () -> parse("GET / HTTP/1.1\r\nX: " + "v".repeat(HTTPRequestParser.MAX_HEADER_LINE) + "\r\n\r\n")));
+        String manyHeaders = "X-H: v\r\n".repeat(HTTPRequestParser.MAX_HEADERS + 1);
+        assertSame(HttpServerErrors.REQUEST_HEADER_FIELDS_TOO_LARGE_431, assertThrows(HttpServerErrors.class,
+                () -> parse("GET / HTTP/1.1\r\n" + manyHeaders + "\r\n")));
+    }
+
+    @Test
+    void findHeadEnd_resumesWhereThePreviousSearchStopped() {
+        byte[] bytes = "GET / HTTP/1.1\r\nHost: x\r\n\r\nbody".getBytes(StandardCharsets.ISO_8859_1);
+
+        assertEquals(-1, HTTPRequestParser.findHeadEnd(bytes, 0, 25));
+        assertEquals(27, HTTPRequestParser.findHeadEnd(bytes, 23, bytes.length));
+        assertEquals(2, HTTPRequestParser.findHeadEnd("\n\nGET".getBytes(StandardCharsets.ISO_8859_1), 0, 5));
+    }
+
+    private static HTTPFrameworkRequest parse(String head) {
+        byte[] bytes = head.getBytes(StandardCharsets.UTF_8);
+        return HTTPRequestParser.parse(bytes, 0, bytes.length);
+    }
+}
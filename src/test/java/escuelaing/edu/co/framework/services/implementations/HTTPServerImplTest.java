@@ -2,18 +2,35 @@ package escuelaing.edu.co.framework.services.implementations;
 
 import escuelaing.edu.co.framework.models.HTTPFrameworkRequest;
 import escuelaing.edu.co.framework.models.HTTPFrameworkResponse;
+import escuelaing.edu.co.framework.models.HTTPMethod;
 import escuelaing.edu.co.framework.services.interfaces.HTTPServerHandler;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.lang.reflect.Field;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -26,6 +43,7 @@ class HTTPServerImplSimpleTest {
 
     @BeforeEach
     void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
         tmpResources = Files.createTempDirectory("httpserver_test_" + UUID.randomUUID());
         Field resPathField = HTTPServerImpl.class.getDeclaredField("RESOURCES_PATH");
         resPathField.setAccessible(true);
@@ -47,9 +65,9 @@ class HTTPServerImplSimpleTest {
         HTTPServerImpl.get("/miRuta", mockHandler);
         Field routesField = HTTPServerImpl.class.getDeclaredField("routes");
         routesField.setAccessible(true);
-        Map<String, HTTPServerHandler> routes = (Map<String, HTTPServerHandler>) routesField.get(null);
-        assertTrue(routes.containsKey("/miRuta"), "La ruta registrada debe estar presente.");
-        assertSame(mockHandler, routes.get("/miRuta"), "El handler almacenado debe ser el mismo objeto pasado.");
+        Router routes = (Router) routesField.get(null);
+        assertNotNull(routes.match("/miRuta"), "La ruta registrada debe estar presente.");
+        assertSame(mockHandler, routes.match("/miRuta").getHandler(HTTPMethod.GET), "El handler almacenado debe ser el mismo objeto pasado.");
     }
 
     @Test
@@ -65,16 +83,18 @@ class HTTPServerImplSimpleTest {
     }
 
     @Test
-    void post_put_delete_doNotRegisterRoutes_inCurrentImpl() throws Exception {
+    void post_put_delete_registerRoutesUnderTheirMethods() throws Exception {
         HTTPServerImpl.post("/p", mockHandler);
-        HTTPServerImpl.put("/u", mockHandler);
+        HTTPServerImpl.put("/p", mockHandler);
         HTTPServerImpl.delete("/d", mockHandler);
         Field routesField = HTTPServerImpl.class.getDeclaredField("routes");
         routesField.setAccessible(true);
-        Map<String, HTTPServerHandler> routes = (Map<String, HTTPServerHandler>) routesField.get(null);
-        assertFalse(routes.containsKey("/p"), "POST no debería registrar rutas en la implementación actual.");
-        assertFalse(routes.containsKey("/u"), "PUT no debería registrar rutas en la implementación actual.");
-        assertFalse(routes.containsKey("/d"), "DELETE no debería registrar rutas en la implementación actual.");
+        Router routes = (Router) routesField.get(null);
+        assertSame(mockHandler, routes.match("/p").getHandler(HTTPMethod.POST));
+        assertSame(mockHandler, routes.match("/p").getHandler(HTTPMethod.PUT));
+        assertNull(routes.match("/p").getHandler(HTTPMethod.GET), "Solo se registran los métodos indicados.");
+        assertSame(mockHandler, routes.match("/d").getHandler(HTTPMethod.DELETE));
+        assertEquals("POST, PUT, OPTIONS", routes.match("/p").getAllow());
     }
 
     @Test
@@ -95,12 +115,943 @@ class HTTPServerImplSimpleTest {
         });
         Field routesField = HTTPServerImpl.class.getDeclaredField("routes");
         routesField.setAccessible(true);
-        Map<String, HTTPServerHandler> routes = (Map<String, HTTPServerHandler>) routesField.get(null);
-        assertTrue(routes.containsKey("/hello"), "La ruta /hello debe estar registrada.");
+        Router routes = (Router) routesField.get(null);
+        assertNotNull(routes.match("/hello"), "La ruta /hello debe estar registrada.");
         HTTPFrameworkRequest mockRequest = new HTTPFrameworkRequest("/hello?name=Miguel");
         HTTPFrameworkResponse mockResponse = new HTTPFrameworkResponse();
-        HTTPFrameworkResponse result = routes.get("/hello").handleRequest(mockRequest, mockResponse);
+        HTTPFrameworkResponse result = routes.match("/hello").getHandler(HTTPMethod.GET).handleRequest(mockRequest, mockResponse);
         assertTrue(result.getBody().contains("Hello Miguel"),
                 "La respuesta debe contener el nombre extraído del parámetro de consulta.");
     }
-}
\ No newline at end of file
+
+    @Test
+    void start_servesConnectionsConcurrently() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        HTTPServerImpl.get("/slow", (request, response) -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            response.setBody("slow");
+            return response;
+        });
+        HTTPServerImpl.get("/fast", (request, response) -> {
+            response.setBody("fast");
+            return response;
+        });
+        int port = freePort();
+        Thread server = new Thread(() -> HTTPServerImpl.start(port));
+        server.setDaemon(true);
+        server.start();
+        try (Socket slow = connect(port); Socket fast = connect(port)) {
+            send(slow, "/slow");
+            send(fast, "/fast");
+            fast.setSoTimeout(2000);
+            String fastResponse = readAll(fast);
+            assertTrue(fastResponse.endsWith("fast"), "A slow handler must not block other connections.");
+            release.countDown();
+            assertTrue(readAll(slow).endsWith("slow"));
+        } finally {
+            release.countDown();
+            HTTPServerImpl.stop();
+            server.join(2000);
+        }
+    }
+
+    @Test
+    void start_answersOverflowWith503InsteadOfServingOnTheAcceptor() throws Exception {
+        HTTPServerImpl.get("/overflow", (request, response) -> {
+            response.setBody("served");
+            return response;
+        });
+        int port = freePort();
+        Thread server = new Thread(() -> HTTPServerImpl.start(port));
+        server.setDaemon(true);
+        server.start();
+        try {
+            assertTrue(exchange(port, "GET /overflow").endsWith("served"));
+            Field workersField = HTTPServerImpl.class.getDeclaredField("workers");
+            workersField.setAccessible(true);
+            if (workersField.get(null) instanceof ThreadPoolExecutor pool) {
+                assertInstanceOf(ThreadPoolExecutor.AbortPolicy.class, pool.getRejectedExecutionHandler(),
+                        "Overflow must be rejected, never run on the accepting thread");
+            }
+        } finally {
+            HTTPServerImpl.stop();
+            server.join(2000);
+        }
+
+        ThreadPoolExecutor single = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new java.util.concurrent.SynchronousQueue<>(), new ThreadPoolExecutor.AbortPolicy());
+        HTTPServerImpl.executor(single);
+        int busyPort = freePort();
+        Thread busyServer = new Thread(() -> HTTPServerImpl.start(busyPort));
+        busyServer.setDaemon(true);
+        busyServer.start();
+        try (Socket idle = connect(busyPort); Socket rejected = connect(busyPort)) {
+            rejected.setSoTimeout(2000);
+            String shed = new String(rejected.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(shed.startsWith("HTTP/1.1 503 Service Unavailable\r\n"),
+                    "An idle keep-alive client must not keep the server from answering new connections");
+        } finally {
+            HTTPServerImpl.stop();
+            HTTPServerImpl.executor(null);
+            busyServer.join(2000);
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    void keepAlive_answersPipelinedRequestsInOrderOnOneSocket() throws Exception {
+        HTTPServerImpl.get("/first", (request, response) -> {
+            response.setBody("one");
+            return response;
+        });
+        HTTPServerImpl.get("/second", (request, response) -> {
+            response.setBody("two");
+            return response;
+        });
+        int port = freePort();
+        Thread server = new Thread(() -> HTTPServerImpl.start(port));
+        server.setDaemon(true);
+        server.start();
+        try (Socket socket = connect(port)) {
+            socket.setSoTimeout(2000);
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET /first HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /second HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            String responses = readAll(socket);
+            int first = responses.indexOf("one");
+            int second = responses.indexOf("two");
+            assertTrue(first > 0 && second > first, "Both pipelined requests must be answered in order.");
+            assertTrue(responses.contains("Connection: keep-alive"), "The first response must keep the connection open.");
+            assertTrue(responses.endsWith("two"), "The connection must close after the last request.");
+        } finally {
+            HTTPServerImpl.stop();
+            server.join(2000);
+        }
+    }
+
+    @Test
+    void nioEngine_servesPipelinedRequestsWithoutBlockingOtherConnections() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        HTTPServerImpl.get("/nio/slow", (request, response) -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            response.setBody("slow");
+            return response;
+        });
+        HTTPServerImpl.get("/nio/echo", (request, response) -> {
+            response.setBody("echo " + request.getValue("v"));
+            return response;
+        });
+        int port = freePort();
+        HTTPServerImpl.engine(HTTPServerImpl.Engine.NIO);
+        Thread server = new Thread(() -> HTTPServerImpl.start(port));
+        server.setDaemon(true);
+        server.start();
+        try (Socket slow = connect(port); Socket pipelined = connect(port)) {
+            send(slow, "/nio/slow");
+            pipelined.setSoTimeout(2000);
+            OutputStream out = pipelined.getOutputStream();
+            out.write(("GET /nio/echo?v=1 HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /nio/echo?v=2 HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            String responses = readAll(pipelined);
+            assertTrue(responses.indexOf("echo 1") < responses.indexOf("echo 2") && responses.endsWith("echo 2"),
+                    "Pipelined requests must be answered in order while another connection is busy.");
+            release.countDown();
+            assertTrue(readAll(slow).endsWith("slow"));
+        } finally {
+            release.countDown();
+            HTTPServerImpl.stop();
+            HTTPServerImpl.engine(HTTPServerImpl.Engine.BLOCKING);
+            server.join(2000);
+        }
+    }
+
+    @Test
+    void nioEngine_keepsServingAfterAnEventLoopTaskFails() throws Exception {
+        HTTPServerImpl.get("/nio/survivor", (request, response) -> {
+            response.setBody("alive");
+            return response;
+        });
+        HTTPServerImpl.engine(HTTPServerImpl.Engine.NIO);
+        int port = freePort();
+        Thread server = new Thread(() -> HTTPServerImpl.start(port));
+        server.setDaemon(true);
+        server.start();
+        try {
+            assertTrue(exchange(port, "GET /nio/survivor").endsWith("alive"));
+            Field engineField = HTTPServerImpl.class.getDeclaredField("nioServer");
+            engineField.setAccessible(true);
+            Field loopsField = NIOServerEngine.class.getDeclaredField("loops");
+            loopsField.setAccessible(true);
+            for (Object loop : (Object[]) loopsField.get(engineField.get(null))) {
+                java.lang.reflect.Method execute = loop.getClass().getDeclaredMethod("execute", Runnable.class);
+                execute.setAccessible(true);
+                execute.invoke(loop, (Runnable) () -> {
+                    throw new IllegalStateException("failing task");
+                });
+            }
+            for (int i = 0; i < 4; i++) {
+                assertTrue(exchange(port, "GET /nio/survivor").endsWith("alive"), "A failing task must not stop its event loop");
+            }
+        } finally {
+            HTTPServerImpl.stop();
+            HTTPServerImpl.engine(HTTPServerImpl.Engine.BLOCKING);
+            server.join(2000);
+        }
+    }
+
+    @Test
+    void staticFiles_aboveZeroCopyThresholdAreStreamedIntact() throws Exception {
+        byte[] content = new byte[200_000];
+        new java.util.Random(7).nextBytes(content);
+        Files.write(tmpResources.resolve("large.bin"), content);
+        HTTPServerImpl.zeroCopyThreshold(1024);
+        int port = freePort();
+        Thread server = new Thread(() -> HTTPServerImpl.start(port));
+        server.setDaemon(true);
+        server.start();
+        try (Socket socket = connect(port)) {
+            socket.setSoTimeout(2000);
+            send(socket, "/large.bin");
+            byte[] response = socket.getInputStream().readAllBytes();
+            String head = new String(response, 0, 200, StandardCharsets.ISO_8859_1);
+            int bodyStart = head.indexOf("\r\n\r\n") + 4;
+            assertTrue(head.contains("Content-Length: 200000"));
+            assertArrayEquals(content, java.util.Arrays.copyOfRange(response, bodyStart, response.length));
+        } finally {
+            HTTPServerImpl.zeroCopyThreshold(1024 * 1024);
+            HTTPServerImpl.stop();
+            server.join(2000);
+        }
+    }
+
+    @Test
+    void rangeRequests_servePartialContentFromMemoryAndFromDisk() throws Exception {
+        Files.writeString(tmpResources.resolve("digits.txt"), "0123456789abcdefghij");
+        Files.writeString(tmpResources.resolve("letters.bin"), "ABCDEFGHIJKLMNOPQRSTUVWXYZ");
+        HTTPServerImpl.zeroCopyThreshold(16);
+        int port = freePort();
+        Thread server = new Thread(() -> HTTPServerImpl.start(port));
+        server.setDaemon(true);
+        server.start();
+        try {
+            String full = exchange(port, "GET /digits.txt");
+            assertTrue(full.contains("Accept-Ranges: bytes"));
+            String etag = full.substring(full.indexOf("ETag: ") + 6, full.indexOf("\r\n", full.indexOf("ETag: ")));
+
+            String single = exchange(port, "GET /digits.txt", "Range: bytes=2-5\r\n");
+            assertTrue(single.startsWith("HTTP/1.1 206 Partial Content"));
+            assertTrue(single.contains("Content-Range: bytes 2-5/20") && single.contains("Content-Length: 4"));
+            assertTrue(single.endsWith("\r\n\r\n2345"));
+            assertTrue(exchange(port, "GET /letters.bin", "Range: bytes=-3\r\n").endsWith("\r\n\r\nXYZ"),
+                    "Streamed files must be served from the requested position.");
+
+            String multipart = exchange(port, "GET /letters.bin", "Range: bytes=0-1, 24-\r\n");
+            assertTrue(multipart.contains("Content-Type: multipart/byteranges; boundary="));
+            String boundary = multipart.substring(multipart.indexOf("boundary=") + 9, multipart.indexOf("\r\n", multipart.indexOf("boundary=")));
+            String body = multipart.substring(multipart.indexOf("\r\n\r\n") + 4);
+            int length = Integer.parseInt(multipart.replaceAll("(?s).*Content-Length: (\\d+).*", "$1"));
+            assertEquals(length, body.getBytes(StandardCharsets.ISO_8859_1).length);
+            assertTrue(body.contains("Content-Range: bytes 0-1/26\r\n\r\nAB\r\n--" + boundary));
+            assertTrue(body.endsWith("Content-Range: bytes 24-25/26\r\n\r\nYZ\r\n--" + boundary + "--\r\n"));
+
+            String unsatisfiable = exchange(port, "GET /digits.txt", "Range: bytes=50-\r\n");
+            assertTrue(unsatisfiable.startsWith("HTTP/1.1 416") && unsatisfiable.contains("Content-Range: bytes */20"));
+
+            assertTrue(exchange(port, "GET /digits.txt", "Range: bytes=0-1\r\nIf-Range: " + etag + "\r\n").startsWith("HTTP/1.1 206"));
+            String stale = exchange(port, "GET /digits.txt", "Range: bytes=0-1\r\nIf-Range: \"stale\"\r\n");
+            assertTrue(stale.startsWith("HTTP/1.1 200 OK") && stale.endsWith("0123456789abcdefghij"));
+        } finally {
+            HTTPServerImpl.zeroCopyThreshold(1024 * 1024);
+            HTTPServerImpl.stop();
+            server.join(2000);
+        }
+    }
+
+    @Test
+    void methodDispatch_answersHeadOptionsAndMethodNotAllowed() throws Exception {
+        HTTPServerImpl.get("/items", (request, response) -> {
+            response.setBody("list");
+            return response;
+        });
+        HTTPServerImpl.post("/items", (request, response) -> {
+            response.setBody("created");
+            return response;
+        });
+        Files.writeString(tmpResources.resolve("page.html"), "<p>hola</p>");
+        int port = freePort();
+        Thread server = new Thread(() -> HTTPServerImpl.start(port));
+        server.setDaemon(true);
+        server.start();
+        try {
+            assertTrue(exchange(port, "POST /items").endsWith("created"));
+            String head = exchange(port, "HEAD /items");
+            assertTrue(head.startsWith("HTTP/1.1 200 OK") && head.contains("Content-Length: 4"));
+            assertTrue(head.endsWith("\r\n\r\n"), "HEAD responses must not carry a body.");
+            String options = exchange(port, "OPTIONS /items");
+            assertTrue(options.startsWith("HTTP/1.1 204 No Content") && options.contains("Allow: GET, HEAD, POST, OPTIONS"));
+            String notAllowed = exchange(port, "DELETE /items");
+            assertTrue(notAllowed.startsWith("HTTP/1.1 405 Method Not Allowed"));
+            assertTrue(notAllowed.contains("Allow: GET, HEAD, POST, OPTIONS"));
+            String staticPost = exchange(port, "POST /page.html");
+            assertTrue(staticPost.startsWith("HTTP/1.1 405") && staticPost.contains("Allow: GET, HEAD, OPTIONS"));
+            String staticHead = exchange(port, "HEAD /page.html");
+            assertTrue(staticHead.contains("Content-Length: 11") && staticHead.endsWith("\r\n\r\n"));
+        } finally {
+            HTTPServerImpl.stop();
+            server.join(2000);
+        }
+    }
+
+    @Test
+    void requestBodies_areStreamedToHandlersOnBothEngines() throws Exception {
+        HTTPServerImpl.post("/upload", (request, response) -> {
+            try {
+                byte[] buffer = new byte[4096];
+                long total = 0;
+                int read;
+                while ((read = request.getBody().read(buffer)) >= 0) {
+                    total += read;
+                }
+                response.setBody("received " + total);
+            } catch (java.io.IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+            return response;
+        });
+        HTTPServerImpl.post("/ignore", (request, response) -> {
+            response.setBody("ignored");
+            return response;
+        });
+        String chunk = "x".repeat(3000);
+        String pipeline = "POST /upload HTTP/1.1\r\nHost: localhost\r\nContent-Length: 100000\r\n\r\n" + "y".repeat(100000)
+                + "POST /ignore HTTP/1.1\r\nHost: localhost\r\nContent-Length: 5\r\n\r\nabcde"
+                + "POST /upload HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n"
+                + "bb8\r\n" + chunk + "\r\nbb8\r\n" + chunk + "\r\n0\r\n\r\n"
+                + "POST /upload HTTP/1.1\r\nHost: localhost\r\nContent-Length: 300000\r\n\r\n";
+        HTTPServerImpl.maxBodySize(200_000);
+        try {
+            for (HTTPServerImpl.Engine serverEngine : HTTPServerImpl.Engine.values()) {
+                int port = freePort();
+                HTTPServerImpl.engine(serverEngine);
+                Thread server = new Thread(() -> HTTPServerImpl.start(port));
+                server.setDaemon(true);
+                server.start();
+                try (Socket socket = connect(port)) {
+                    socket.setSoTimeout(3000);
+                    OutputStream out = socket.getOutputStream();
+                    out.write(pipeline.getBytes(StandardCharsets.ISO_8859_1));
+                    out.flush();
+                    String responses = new String(socket.getInputStream().readAllBytes(), StandardCharsets.ISO_8859_1);
+                    assertTrue(responses.contains("received 100000"), serverEngine + " must stream the whole body.");
+                    int ignored = responses.indexOf("ignored");
+                    int chunked = responses.indexOf("received 6000");
+                    assertTrue(ignored > 0 && chunked > ignored, serverEngine + " must answer pipelined bodies in order.");
+                    assertTrue(responses.substring(chunked).contains("HTTP/1.1 413 Payload Too Large"),
+                            serverEngine + " must reject bodies over the limit before reading them.");
+                    assertTrue(responses.endsWith("413 Payload Too Large") && responses.contains("Connection: close"));
+                } finally {
+                    HTTPServerImpl.stop();
+                    server.join(2000);
+                }
+            }
+        } finally {
+            HTTPServerImpl.maxBodySize(16L * 1024 * 1024);
+            HTTPServerImpl.engine(HTTPServerImpl.Engine.BLOCKING);
+        }
+    }
+
+    @Test
+    void streamingResponses_areSentChunkedUnlessTheLengthIsAnnounced() throws Exception {
+        HTTPServerImpl.get("/report", (request, response) -> {
+            try (OutputStream body = response.getOutputStream()) {
+                for (int i = 0; i < 20_000; i++) {
+                    body.write(("line " + i + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            } catch (java.io.IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+            return response;
+        });
+        HTTPServerImpl.get("/sized", (request, response) -> {
+            response.setContentLength(5);
+            try {
+                response.getChannel().write(ByteBuffer.wrap("sized".getBytes(StandardCharsets.UTF_8)));
+            } catch (java.io.IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+            return response;
+        });
+        HTTPServerImpl.get("/bytes", (request, response) -> {
+            response.setBody(new byte[]{'r', 'a', 'w'});
+            return response;
+        });
+        int port = freePort();
+        Thread server = new Thread(() -> HTTPServerImpl.start(port));
+        server.setDaemon(true);
+        server.start();
+        try {
+            String report = exchange(port, "GET /report");
+            int bodyStart = report.indexOf("\r\n\r\n") + 4;
+            assertTrue(report.substring(0, bodyStart).contains("Transfer-Encoding: chunked"));
+            StringBuilder decoded = new StringBuilder();
+            int position = bodyStart;
+            while (true) {
+                int lineEnd = report.indexOf("\r\n", position);
+                int size = Integer.parseInt(report.substring(position, lineEnd), 16);
+                if (size == 0) {
+                    break;
+                }
+                decoded.append(report, lineEnd + 2, lineEnd + 2 + size);
+                position = lineEnd + 2 + size + 2;
+            }
+            assertTrue(decoded.toString().startsWith("line 0\nline 1\n") && decoded.toString().endsWith("line 19999\n"));
+            assertEquals(20_000, decoded.toString().split("\n").length);
+            String sized = exchange(port, "GET /sized");
+            assertTrue(sized.contains("Content-Length: 5") && !sized.contains("chunked") && sized.endsWith("\r\n\r\nsized"));
+            assertTrue(exchange(port, "GET /bytes").endsWith("Content-Length: 3\r\nConnection: close\r\n\r\nraw"));
+            String head = exchange(port, "HEAD /report");
+            assertTrue(head.contains("Transfer-Encoding: chunked") && head.endsWith("\r\n\r\n"));
+        } finally {
+            HTTPServerImpl.stop();
+            server.join(2000);
+        }
+    }
+
+    @Test
+    void streamingResponses_withoutBodyStatus_keepTheConnectionUsable() throws Exception {
+        HTTPServerImpl.get("/streamed/empty", (request, response) -> {
+            response.setStatus(204);
+            try (OutputStream body = response.getOutputStream()) {
+                body.write("ignored".getBytes(StandardCharsets.UTF_8));
+            } catch (java.io.IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+            return response;
+        });
+        HTTPServerImpl.get("/streamed/after", (request, response) -> {
+            response.setBody("after");
+            return response;
+        });
+        int port = freePort();
+        Thread server = new Thread(() -> HTTPServerImpl.start(port));
+        server.setDaemon(true);
+        server.start();
+        try (Socket socket = connect(port)) {
+            socket.setSoTimeout(2000);
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET /streamed/empty HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /streamed/after HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            String responses = readAll(socket);
+            String empty = responses.substring(0, responses.indexOf("HTTP/1.1 200"));
+            assertTrue(empty.startsWith("HTTP/1.1 204 No Content"));
+            assertFalse(empty.contains("Transfer-Encoding") || empty.contains("Content-Length") || empty.contains("ignored"));
+            assertTrue(responses.endsWith("after"), "A streamed 204 must leave the connection ready for the next response.");
+        } finally {
+            HTTPServerImpl.stop();
+            server.join(2000);
+        }
+    }
+
+    @Test
+    void dynamicResponses_carryTheirStatusAndHeaders() throws Exception {
+        HTTPServerImpl.post("/books", (request, response) -> {
+            response.setStatus(201);
+            response.setContentType("application/json");
+            response.setHeader("Location", "/books/7");
+            response.setHeader("Cache-Control", "max-age=60");
+            response.setHeader("Content-Length", "999");
+            response.setBody("{\"id\":7}");
+            return response;
+        });
+        HTTPServerImpl.delete("/books", (request, response) -> {
+            response.setStatus(204);
+            response.setBody("ignored");
+            return response;
+        });
+        assertThrows(IllegalArgumentException.class, () -> new HTTPFrameworkResponse().setHeader("X-Bad", "a\r\nSet-Cookie: b"));
+        int port = freePort();
+        Thread server = new Thread(() -> HTTPServerImpl.start(port));
+        server.setDaemon(true);
+        server.start();
+        try {
+            String created = exchange(port, "POST /books");
+            assertTrue(created.startsWith("HTTP/1.1 201 Created\r\n"));
+            assertTrue(created.contains("Content-Type: application/json\r\n") && !created.contains("text/plain"));
+            assertTrue(created.contains("Location: /books/7\r\n") && created.contains("Cache-Control: max-age=60\r\n"));
+            assertTrue(created.contains("Content-Length: 8\r\n") && !created.contains("999"));
+            assertTrue(created.endsWith("{\"id\":7}"));
+            String deleted = exchange(port, "DELETE /books");
+            assertTrue(deleted.startsWith("HTTP/1.1 204 No Content\r\n") && deleted.endsWith("\r\n\r\n"));
+            assertFalse(deleted.contains("Content-Length"));
+        } finally {
+            HTTPServerImpl.stop();
+            server.join(2000);
+        }
+    }
+
+    @Test
+    void metricsEndpoint_reportsRouteLatenciesErrorsAndTraffic() throws Exception {
+        HTTPServerImpl.get("/measured", (request, response) -> {
+            response.setBody("ok");
+            return response;
+        });
+        long notFound = HTTPServerImpl.metrics().getErrors(404);
+        int port = freePort();
+        Thread server = new Thread(() -> HTTPServerImpl.start(port));
+        server.setDaemon(true);
+        server.start();
+        try {
+            assertTrue(exchange(port, "GET /measured").endsWith("ok"));
+            assertTrue(exchange(port, "GET /measured").endsWith("ok"));
+            assertTrue(exchange(port, "PUT /measured").startsWith("HTTP/1.1 405"));
+            exchange(port, "GET /missing-" + UUID.randomUUID());
+            String scrape = exchange(port, "GET /metrics");
+            assertTrue(scrape.startsWith("HTTP/1.1 200 OK\r\n"));
+            assertTrue(scrape.contains("Content-Type: text/plain; version=0.0.4; charset=utf-8\r\n"));
+            assertTrue(scrape.contains("http_server_requests_seconds_count{route=\"/measured\",method=\"GET\"} 2\n"));
+            assertTrue(scrape.contains("http_server_request_errors_total{route=\"/measured\",method=\"PUT\"} 1\n"));
+            assertTrue(scrape.contains("http_server_requests_seconds{route=\"/measured\",method=\"GET\",quantile=\"0.99\"} "));
+            assertTrue(scrape.contains("http_server_errors_total{code=\"405\"} "));
+            assertTrue(scrape.contains("http_server_connections_active 1\n"));
+            assertEquals(notFound + 1, HTTPServerImpl.metrics().getErrors(404));
+            assertTrue(HTTPServerImpl.metrics().getBytesIn() > 0 && HTTPServerImpl.metrics().getBytesOut() > 0);
+        } finally {
+            HTTPServerImpl.stop();
+            server.join(2000);
+        }
+    }
+
+    @Test
+    void asyncResponses_releaseTheWorkerAndTimeOutWith504() throws Exception {
+        java.util.concurrent.ExecutorService downstream = java.util.concurrent.Executors.newCachedThreadPool();
+        CountDownLatch arrived = new CountDownLatch(2);
+        HTTPServerImpl.get("/async/pair", (request, response) -> {
+            arrived.countDown();
+            response.setAsync(java.util.concurrent.CompletableFuture.supplyAsync(() -> {
+                try {
+                    response.setBody(arrived.await(3, TimeUnit.SECONDS) ? "paired" : "alone");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return response;
+            }, downstream), 5000);
+            return response;
+        });
+        HTTPServerImpl.get("/async/stalled", (request, response) -> {
+            response.setAsync(new java.util.concurrent.CompletableFuture<>(), 200);
+            return response;
+        });
+        java.util.concurrent.ExecutorService oneWorker = java.util.concurrent.Executors.newFixedThreadPool(1);
+        HTTPServerImpl.executor(oneWorker);
+        HTTPServerImpl.engine(HTTPServerImpl.Engine.NIO);
+        int port = freePort();
+        Thread server = new Thread(() -> HTTPServerImpl.start(port));
+        server.setDaemon(true);
+        server.start();
+        try (Socket first = connect(port); Socket second = connect(port)) {
+            first.setSoTimeout(3000);
+            second.setSoTimeout(3000);
+            send(first, "/async/pair");
+            send(second, "/async/pair");
+            assertTrue(readAll(first).endsWith("paired"), "A single worker must serve both requests while they wait");
+            assertTrue(readAll(second).endsWith("paired"));
+            String stalled = exchange(port, "GET /async/stalled");
+            assertTrue(stalled.startsWith("HTTP/1.1 504 Gateway Timeout\r\n"));
+            assertTrue(stalled.endsWith("504 Gateway Timeout"));
+        } finally {
+            HTTPServerImpl.stop();
+            HTTPServerImpl.engine(HTTPServerImpl.Engine.BLOCKING);
+            HTTPServerImpl.executor(null);
+            server.join(2000);
+            oneWorker.shutdownNow();
+            downstream.shutdownNow();
+        }
+    }
+
+    @Test
+    void admissionControl_shedsRequestsOverTheRouteLimitWith503() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        HTTPServerImpl.get("/admission/held", (request, response) -> {
+            entered.countDown();
+            try {
+                release.await(3, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            response.setBody("done");
+            return response;
+        });
+        HTTPServerImpl.maxInFlight("/admission/held", 1);
+        HTTPServerImpl.retryAfter(7);
+        int port = freePort();
+        Thread server = new Thread(() -> HTTPServerImpl.start(port));
+        server.setDaemon(true);
+        server.start();
+        try (Socket held = connect(port)) {
+            held.setSoTimeout(3000);
+            send(held, "/admission/held");
+            assertTrue(entered.await(3, TimeUnit.SECONDS));
+            String shed = exchange(port, "GET /admission/held");
+            assertTrue(shed.startsWith("HTTP/1.1 503 Service Unavailable\r\n"));
+            assertTrue(shed.contains("\r\nRetry-After: 7\r\n"));
+            release.countDown();
+            assertTrue(readAll(held).endsWith("done"));
+            assertTrue(exchange(port, "GET /admission/held").endsWith("done"), "The slot must be released after the response");
+        } finally {
+            release.countDown();
+            HTTPServerImpl.maxInFlight("/admission/held", 0);
+            HTTPServerImpl.retryAfter(1);
+            HTTPServerImpl.stop();
+            server.join(2000);
+        }
+    }
+
+    @Test
+    void http2_upgradesAndMultiplexesStreamsOnOneConnection() throws Exception {
+        Files.writeString(tmpResources.resolve("h2.txt"), "static over h2");
+        HTTPServerImpl.get("/h2/hello", (request, response) -> {
+            response.setBody("hello " + request.getVersion());
+            return response;
+        });
+        HTTPServerImpl.get("/h2/slow/{n}", (request, response) -> {
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            response.setBody("slow " + request.getPathVariable("n"));
+            return response;
+        });
+        HTTPServerImpl.post("/h2/echo", (request, response) -> {
+            try {
+                response.setBody(new String(request.getBody().readAllBytes(), StandardCharsets.UTF_8));
+            } catch (java.io.IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+            return response;
+        });
+        HTTPServerImpl.http2(true);
+        int port = freePort();
+        Thread server = new Thread(() -> HTTPServerImpl.start(port));
+        server.setDaemon(true);
+        server.start();
+        connect(port).close();
+        try {
+            java.net.http.HttpClient client = java.net.http.HttpClient.newBuilder()
+                    .version(java.net.http.HttpClient.Version.HTTP_2).build();
+            java.net.URI base = java.net.URI.create("http://localhost:" + port);
+            java.net.http.HttpResponse<String> upgraded = client.send(java.net.http.HttpRequest.newBuilder(base.resolve("/h2/hello")).build(),
+                    java.net.http.HttpResponse.BodyHandlers.ofString());
+            assertEquals(java.net.http.HttpClient.Version.HTTP_2, upgraded.version());
+            assertEquals("hello HTTP/2.0", upgraded.body());
+            long started = System.nanoTime();
+            java.util.List<java.util.concurrent.CompletableFuture<java.net.http.HttpResponse<String>>> slow = new java.util.ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                slow.add(client.sendAsync(java.net.http.HttpRequest.newBuilder(base.resolve("/h2/slow/" + i)).build(),
+                        java.net.http.HttpResponse.BodyHandlers.ofString()));
+            }
+            for (int i = 0; i < 6; i++) {
+                java.net.http.HttpResponse<String> response = slow.get(i).get(5, TimeUnit.SECONDS);
+                assertEquals(java.net.http.HttpClient.Version.HTTP_2, response.version());
+                assertEquals("slow " + i, response.body());
+            }
+            assertTrue(System.nanoTime() - started < TimeUnit.MILLISECONDS.toNanos(1500), "Streams must be answered concurrently");
+            java.net.http.HttpResponse<String> file = client.send(java.net.http.HttpRequest.newBuilder(base.resolve("/h2.txt")).build(),
+                    java.net.http.HttpResponse.BodyHandlers.ofString());
+            assertEquals("static over h2", file.body());
+            assertEquals("application/octet-stream", file.headers().firstValue("content-type").orElse(null));
+            String upload = "x".repeat(200_000);
+            java.net.http.HttpResponse<String> echoed = client.send(java.net.http.HttpRequest.newBuilder(base.resolve("/h2/echo"))
+                    .POST(java.net.http.HttpRequest.BodyPublishers.ofString(upload)).build(), java.net.http.HttpResponse.BodyHandlers.ofString());
+            assertEquals(java.net.http.HttpClient.Version.HTTP_2, echoed.version());
+            assertEquals(upload, echoed.body(), "Bodies larger than the flow-control windows must arrive whole");
+            assertTrue(exchange(port, "GET /h2/hello").endsWith("hello HTTP/1.1"), "HTTP/1.1 clients must still be served");
+        } finally {
+            HTTPServerImpl.http2(false);
+            HTTPServerImpl.stop();
+            server.join(2000);
+        }
+    }
+
+    @Test
+    void http2_priorKnowledgeStreamsAreServedOnTheNioEngine() throws Exception {
+        HTTPServerImpl.get("/h2/nio/{n}", (request, response) -> {
+            response.setBody("stream " + request.getPathVariable("n"));
+            return response;
+        });
+        HTTPServerImpl.http2(true);
+        HTTPServerImpl.engine(HTTPServerImpl.Engine.NIO);
+        int port = freePort();
+        Thread server = new Thread(() -> HTTPServerImpl.start(port));
+        server.setDaemon(true);
+        server.start();
+        try (Socket socket = connect(port)) {
+            socket.setSoTimeout(3000);
+            OutputStream out = socket.getOutputStream();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            out.write("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            writeFrame(out, 0x4, 0, 0, new byte[0]);
+            Hpack.Encoder encoder = new Hpack.Encoder();
+            for (int stream = 1; stream <= 5; stream += 2) {
+                ByteArrayOutputStream block = new ByteArrayOutputStream();
+                encoder.encode(block, ":method", "GET");
+                encoder.encode(block, ":scheme", "http");
+                encoder.encode(block, ":authority", "localhost");
+                encoder.encode(block, ":path", "/h2/nio/" + stream);
+                writeFrame(out, 0x1, 0x5, stream, block.toByteArray());
+            }
+            out.flush();
+            Hpack.Decoder decoder = new Hpack.Decoder(65536);
+            Map<Integer, String> statuses = new HashMap<>();
+            Map<Integer, StringBuilder> bodies = new HashMap<>();
+            Set<Integer> ended = new HashSet<>();
+            boolean settingsAcked = false;
+            while (ended.size() < 3) {
+                Frame frame = readFrame(in);
+                if (frame.type() == 0x4 && (frame.flags() & 0x1) != 0) {
+                    settingsAcked = true;
+                } else if (frame.type() == 0x1) {
+                    decoder.decode(frame.payload(), frame.payload().length, (name, value) -> {
+                        if (name.equals(":status")) {
+                            statuses.put(frame.stream(), value);
+                        }
+                    });
+                } else if (frame.type() == 0x0) {
+                    bodies.computeIfAbsent(frame.stream(), s -> new StringBuilder())
+                            .append(new String(frame.payload(), StandardCharsets.UTF_8));
+                }
+                if ((frame.type() == 0x0 || frame.type() == 0x1) && (frame.flags() & 0x1) != 0) {
+                    ended.add(frame.stream());
+                }
+            }
+            assertTrue(settingsAcked);
+            for (int stream = 1; stream <= 5; stream += 2) {
+                assertEquals("200", statuses.get(stream));
+                assertEquals("stream " + stream, bodies.get(stream).toString());
+            }
+        } finally {
+            HTTPServerImpl.http2(false);
+            HTTPServerImpl.stop();
+            HTTPServerImpl.engine(HTTPServerImpl.Engine.BLOCKING);
+            server.join(2000);
+        }
+    }
+
+    @Test
+    void http2_connectionsBeyondTheLimitAreDeclinedOnTheNioEngine() throws Exception {
+        HTTPServerImpl.get("/h2/capped", (request, response) -> {
+            response.setBody("capped " + request.getVersion());
+            return response;
+        });
+        HTTPServerImpl.http2(true);
+        HTTPServerImpl.maxHttp2Connections(1);
+        HTTPServerImpl.engine(HTTPServerImpl.Engine.NIO);
+        int port = freePort();
+        Thread server = new Thread(() -> HTTPServerImpl.start(port));
+        server.setDaemon(true);
+        server.start();
+        try (Socket held = connect(port); Socket declined = connect(port)) {
+            held.setSoTimeout(3000);
+            held.getOutputStream().write("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            writeFrame(held.getOutputStream(), 0x4, 0, 0, new byte[0]);
+            held.getOutputStream().flush();
+            assertEquals(0x4, readFrame(new DataInputStream(held.getInputStream())).type(), "The first HTTP/2 connection must be served");
+
+            String upgrade = exchange(port, "GET /h2/capped", "Connection: Upgrade, HTTP2-Settings\r\n"
+                    + "Upgrade: h2c\r\nHTTP2-Settings: AAMAAABk\r\n");
+            assertTrue(upgrade.startsWith("HTTP/1.1 200 OK") && upgrade.endsWith("capped HTTP/1.1"),
+                    "An upgrade beyond the limit must be answered over HTTP/1.1");
+            declined.setSoTimeout(3000);
+            declined.getOutputStream().write("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            declined.getOutputStream().flush();
+            assertTrue(readAll(declined).startsWith("HTTP/1.1 503 Service Unavailable"));
+        } finally {
+            HTTPServerImpl.http2(false);
+            HTTPServerImpl.maxHttp2Connections(HTTPServerImpl.DEFAULT_MAX_HTTP2_CONNECTIONS);
+            HTTPServerImpl.stop();
+            HTTPServerImpl.engine(HTTPServerImpl.Engine.BLOCKING);
+            server.join(2000);
+        }
+    }
+
+    @Test
+    void http2_upgradedRequestIsRateLimitedByItsClientAddress() throws Exception {
+        HTTPServerImpl.get("/h2/limited", (request, response) -> {
+            response.setBody("ok");
+            return response;
+        });
+        HTTPServerImpl.http2(true);
+        HTTPServerImpl.rateLimit(0.001, 1);
+        int port = freePort();
+        Thread server = new Thread(() -> HTTPServerImpl.start(port));
+        server.setDaemon(true);
+        server.start();
+        try (Socket socket = connect(port)) {
+            assertTrue(exchange(port, "GET /h2/limited").endsWith("ok"));
+            socket.setSoTimeout(3000);
+            OutputStream out = socket.getOutputStream();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            out.write(("GET /h2/limited HTTP/1.1\r\nHost: localhost\r\nConnection: Upgrade, HTTP2-Settings\r\n"
+                    + "Upgrade: h2c\r\nHTTP2-Settings: AAMAAABk\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+            StringBuilder head = new StringBuilder();
+            while (!head.toString().endsWith("\r\n\r\n")) {
+                head.append((char) in.readUnsignedByte());
+            }
+            assertTrue(head.toString().startsWith("HTTP/1.1 101 Switching Protocols"));
+            out.write("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            writeFrame(out, 0x4, 0, 0, new byte[0]);
+            out.flush();
+            Hpack.Decoder decoder = new Hpack.Decoder(65536);
+            String[] status = new String[1];
+            while (status[0] == null) {
+                Frame frame = readFrame(in);
+                if (frame.type() == 0x1 && frame.stream() == 1) {
+                    decoder.decode(frame.payload(), frame.payload().length, (name, value) -> {
+                        if (name.equals(":status")) {
+                            status[0] = value;
+                        }
+                    });
+                }
+            }
+            assertEquals("503", status[0], "The upgraded request must be rate limited like any request from its client");
+        } finally {
+            HTTPServerImpl.rateLimit(0, 0);
+            HTTPServerImpl.http2(false);
+            HTTPServerImpl.stop();
+            server.join(2000);
+        }
+    }
+
+    @Test
+    void http2_streamsAreRefusedWhenTheWorkersAreSaturated() throws Exception {
+        HTTPServerImpl.post("/h2/refused", (request, response) -> {
+            try {
+                response.setBody(new String(request.getBody().readAllBytes(), StandardCharsets.UTF_8));
+            } catch (java.io.IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+            return response;
+        });
+        ThreadPoolExecutor single = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new java.util.concurrent.SynchronousQueue<>(), new ThreadPoolExecutor.AbortPolicy());
+        HTTPServerImpl.executor(single);
+        HTTPServerImpl.http2(true);
+        int port = freePort();
+        Thread server = new Thread(() -> HTTPServerImpl.start(port));
+        server.setDaemon(true);
+        server.start();
+        try (Socket socket = connect(port)) {
+            socket.setSoTimeout(3000);
+            OutputStream out = socket.getOutputStream();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            out.write("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            writeFrame(out, 0x4, 0, 0, new byte[0]);
+            Hpack.Encoder encoder = new Hpack.Encoder();
+            ByteArrayOutputStream block = new ByteArrayOutputStream();
+            encoder.encode(block, ":method", "POST");
+            encoder.encode(block, ":scheme", "http");
+            encoder.encode(block, ":authority", "localhost");
+            encoder.encode(block, ":path", "/h2/refused");
+            writeFrame(out, 0x1, 0x4, 1, block.toByteArray());
+            out.flush();
+            int refused = -1;
+            boolean pinged = false;
+            while (!pinged) {
+                Frame frame = readFrame(in);
+                if (frame.type() == 0x3 && frame.stream() == 1) {
+                    refused = ByteBuffer.wrap(frame.payload()).getInt();
+                    writeFrame(out, 0x6, 0, 0, new byte[8]);
+                    out.flush();
+                } else if (frame.type() == 0x6 && (frame.flags() & 0x1) != 0) {
+                    pinged = true;
+                }
+            }
+            assertEquals(0x7, refused, "A stream the workers cannot take must be refused so the client can retry it");
+        } finally {
+            HTTPServerImpl.http2(false);
+            HTTPServerImpl.stop();
+            HTTPServerImpl.executor(null);
+            server.join(2000);
+            single.shutdownNow();
+        }
+    }
+
+    private static void writeFrame(OutputStream out, int type, int flags, int stream, byte[] payload) throws Exception {
+        out.write(new byte[]{(byte) (payload.length >>> 16), (byte) (payload.length >>> 8), (byte) payload.length,
+                (byte) type, (byte) flags, (byte) (stream >>> 24), (byte) (stream >>> 16), (byte) (stream >>> 8), (byte) stream});
+        out.write(payload);
+    }
+
+    /** An HTTP/2 frame as read by {@link #readFrame}. */
+    private record Frame(int type, int flags, int stream, byte[] payload) {
+    }
+
+    private static Frame readFrame(DataInputStream in) throws Exception {
+        int length = in.readUnsignedByte() << 16 | in.readUnsignedShort();
+        int type = in.readUnsignedByte();
+        int flags = in.readUnsignedByte();
+        int stream = in.readInt() & 0x7FFFFFFF;
+        return new Frame(type, flags, stream, in.readNBytes(length));
+    }
+
+    private static String exchange(int port, String requestLine) throws Exception {
+        return exchange(port, requestLine, "");
+    }
+
+    private static String exchange(int port, String requestLine, String headers) throws Exception {
+        try (Socket socket = connect(port)) {
+            socket.setSoTimeout(2000);
+            OutputStream out = socket.getOutputStream();
+            out.write((requestLine + " HTTP/1.1\r\nHost: localhost\r\n" + headers + "Connection: close\r\n\r\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            return new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    static int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    static Socket connect(int port) throws Exception {
+        for (int attempt = 0; attempt < 50; attempt++) {
+            try {
+                return new Socket("localhost", port);
+            } catch (java.net.ConnectException e) {
+                Thread.sleep(20);
+            }
+        }
+        throw new IllegalStateException("Server did not start on port " + port);
+    }
+
+    static void send(Socket socket, String path) throws Exception {
+        OutputStream out = socket.getOutputStream();
+        out.write(("GET " + path + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    static String readAll(Socket socket) throws Exception {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        StringBuilder response = new StringBuilder();
+        String line;
+        while ((line = in.readLine()) != null) {
+            response.append(line).append('\n');
+        }
+        return response.toString().trim();
+    }
+}
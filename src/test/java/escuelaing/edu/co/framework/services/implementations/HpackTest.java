@@ -0,0 +1,53 @@
+package escuelaing.edu.co.framework.services.implementations;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HpackTest {
+
+    @Test
+    void decoder_readsTheSpecificationExamples() throws Exception {
+        assertEquals("www.example.com", Hpack.huffmanDecode(HexFormat.of().parseHex("f1e3c2e5f23a6ba0ab90f4ff"), 0, 12));
+        assertEquals("no-cache", Hpack.huffmanDecode(HexFormat.of().parseHex("a8eb10649cbf"), 0, 6));
+        Hpack.Decoder decoder = new Hpack.Decoder(4096);
+        List<String> fields = new ArrayList<>();
+        byte[] first = HexFormat.of().parseHex("828684418cf1e3c2e5f23a6ba0ab90f4ff");
+        decoder.decode(first, first.length, (name, value) -> fields.add(name + "=" + value));
+        byte[] second = HexFormat.of().parseHex("828684be5886a8eb10649cbf");
+        decoder.decode(second, second.length, (name, value) -> fields.add(name + "=" + value));
+        assertEquals(List.of(":method=GET", ":scheme=http", ":path=/", ":authority=www.example.com",
+                ":method=GET", ":scheme=http", ":path=/", ":authority=www.example.com", "cache-control=no-cache"), fields);
+        byte[] badPadding = HexFormat.of().parseHex("f1e3c2e5f23a6ba0ab90f400");
+        assertThrows(java.io.IOException.class, () -> Hpack.huffmanDecode(badPadding, 0, badPadding.length));
+    }
+
+    @Test
+    void encoder_reusesRepeatedFieldsFromTheTable() throws Exception {
+        Hpack.Encoder encoder = new Hpack.Encoder();
+        Hpack.Decoder decoder = new Hpack.Decoder(4096);
+        int[] sizes = new int[2];
+        for (int round = 0; round < 2; round++) {
+            ByteArrayOutputStream block = new ByteArrayOutputStream();
+            encoder.encode(block, ":status", "200");
+            encoder.encode(block, "Content-Type", "text/html; charset=UTF-8");
+            encoder.encode(block, "Access-Control-Allow-Origin", "*");
+            encoder.encode(block, "Content-Length", String.valueOf(1000 + round));
+            sizes[round] = block.size();
+            List<String> fields = new ArrayList<>();
+            decoder.decode(block.toByteArray(), block.size(), (name, value) -> fields.add(name + "=" + value));
+            assertEquals(List.of(":status=200", "content-type=text/html; charset=UTF-8",
+                    "access-control-allow-origin=*", "content-length=" + (1000 + round)), fields);
+        }
+        assertTrue(sizes[1] < sizes[0] / 3, "Repeated fields must be sent as table indexes: " + sizes[0] + " -> " + sizes[1]);
+        Hpack.Decoder small = new Hpack.Decoder(40);
+        ByteArrayOutputStream big = new ByteArrayOutputStream();
+        new Hpack.Encoder().encode(big, "x-large", "a value that does not fit the list size");
+        assertThrows(Hpack.HeaderListTooLargeException.class, () -> small.decode(big.toByteArray(), big.size(), (n, v) -> { }));
+    }
+}
@@ -0,0 +1,86 @@
+package escuelaing.edu.co.framework.services.implementations;
+
+import escuelaing.edu.co.framework.errors.HttpServerErrors;
+import escuelaing.edu.co.framework.models.HTTPFrameworkRequest;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestBodyInputStreamTest {
+
+    @Test
+    void open_readsExactlyContentLengthBytes() throws Exception {
+        InputStream connection = stream("hello worldGET /next HTTP/1.1\r\n");
+        RequestBodyInputStream body = RequestBodyInputStream.open(request("Content-Length", "11"), connection,
+                new ByteArrayOutputStream(), 1024);
+
+        assertEquals("hello world", new String(body.readAllBytes(), StandardCharsets.UTF_8));
+        assertTrue(body.finish(0));
+        assertEquals('G', connection.read(), "The body must not consume the next request.");
+    }
+
+    @Test
+    void open_decodesChunkedBodiesAndSkipsTrailers() throws Exception {
+        InputStream connection = stream("5;ext=1\r\nhello\r\n6\r\n world\r\n0\r\nX-Trailer: yes\r\n\r\nnext");
+        RequestBodyInputStream body = RequestBodyInputStream.open(request("Transfer-Encoding", "chunked"), connection,
+                new ByteArrayOutputStream(), 1024);
+
+        assertEquals("hello world", new String(body.readAllBytes(), StandardCharsets.UTF_8));
+        assertEquals("next", new String(connection.readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void open_enforcesTheMaximumBodySize() throws Exception {
+        assertSame(HttpServerErrors.PAYLOAD_TOO_LARGE_413, assertThrows(HttpServerErrors.class,
+                () -> RequestBodyInputStream.open(request("Content-Length", "11"), stream(""), new ByteArrayOutputStream(), 10)));
+
+        RequestBodyInputStream chunked = RequestBodyInputStream.open(request("Transfer-Encoding", "chunked"),
+                stream("8\r\n12345678\r\n8\r\n12345678\r\n0\r\n\r\n"), new ByteArrayOutputStream(), 10);
+        assertSame(HttpServerErrors.PAYLOAD_TOO_LARGE_413, assertThrows(HttpServerErrors.class, chunked::readAllBytes));
+        assertFalse(chunked.finish(1024), "A rejected body must close the connection.");
+    }
+
+    @Test
+    void open_rejectsInvalidFraming() {
+        assertThrows(HttpServerErrors.class, () -> RequestBodyInputStream.open(request("Content-Length", "-1"),
+                stream(""), new ByteArrayOutputStream(), 1024));
+        assertThrows(HttpServerErrors.class, () -> RequestBodyInputStream.open(request("Content-Length", "4, 5"),
+                stream(""), new ByteArrayOutputStream(), 1024));
+        assertThrows(HttpServerErrors.class, () -> RequestBodyInputStream.open(request("Transfer-Encoding", "gzip"),
+                stream(""), new ByteArrayOutputStream(), 1024));
+        RequestBodyInputStream badChunk = RequestBodyInputStream.open(request("Transfer-Encoding", "chunked"),
+                stream("zz\r\n"), new ByteArrayOutputStream(), 1024);
+        assertThrows(HttpServerErrors.class, badChunk::read);
+    }
+
+    @Test
+    void open_sendsContinueOnlyWhenTheBodyIsRead() throws Exception {
+        HTTPFrameworkRequest request = request("Content-Length", "2");
+        request.setHeader("Expect", "100-continue");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RequestBodyInputStream unread = RequestBodyInputStream.open(request, stream("ok"), out, 1024);
+
+        assertFalse(unread.finish(1024), "A client waiting for 100 Continue never sends the body.");
+        assertEquals(0, out.size());
+
+        RequestBodyInputStream read = RequestBodyInputStream.open(request, stream("ok"), out, 1024);
+        assertEquals("ok", new String(read.readAllBytes(), StandardCharsets.UTF_8));
+        assertEquals("HTTP/1.1 100 Continue\r\n\r\n", out.toString(StandardCharsets.ISO_8859_1));
+    }
+
+    private static HTTPFrameworkRequest request(String header, String value) {
+        HTTPFrameworkRequest request = new HTTPFrameworkRequest("/upload");
+        request.setMethod("POST");
+        request.setHeader(header, value);
+        return request;
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
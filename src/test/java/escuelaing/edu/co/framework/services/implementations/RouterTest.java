@@ -0,0 +1,99 @@
+package escuelaing.edu.co.framework.services.implementations;
+
+import escuelaing.edu.co.framework.models.HTTPMethod;
+import escuelaing.edu.co.framework.services.interfaces.HTTPServerHandler;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouterTest {
+
+    private final HTTPServerHandler users = (request, response) -> response;
+    private final HTTPServerHandler user = (request, response) -> response;
+    private final HTTPServerHandler me = (request, response) -> response;
+    private final HTTPServerHandler posts = (request, response) -> response;
+    private final HTTPServerHandler files = (request, response) -> response;
+
+    @Test
+    void match_prefersLiteralsThenVariablesThenWildcards() {
+        Router router = new Router();
+        router.add(HTTPMethod.GET, "/api/v1/users", users);
+        router.add(HTTPMethod.GET, "/api/v1/users/{id}", user);
+        router.add(HTTPMethod.GET, "/api/v1/users/me", me);
+        router.add(HTTPMethod.GET, "/api/v1/users/{id}/posts/{postId}", posts);
+        router.add(HTTPMethod.GET, "/static/{*path}", files);
+
+        assertSame(users, router.match("/api/v1/users").getHandler(HTTPMethod.GET));
+        assertSame(me, router.match("/api/v1/users/me").getHandler(HTTPMethod.GET));
+        assertSame(user, router.match("/api/v1/users/42").getHandler(HTTPMethod.GET));
+        assertEquals(Map.of("id", "42"), router.match("/api/v1/users/42").getVariables());
+        Router.RouteMatch post = router.match("/api/v1/users/7/posts/99");
+        assertSame(posts, post.getHandler(HTTPMethod.GET));
+        assertEquals(Map.of("id", "7", "postId", "99"), post.getVariables());
+        assertEquals("/api/v1/users/{id}/posts/{postId}", post.getPattern());
+        assertEquals(Map.of("path", "css/site/main.css"), router.match("/static/css/site/main.css").getVariables());
+    }
+
+    @Test
+    void match_backtracksWhenALiteralBranchDoesNotLeadToARoute() {
+        Router router = new Router();
+        router.add(HTTPMethod.GET, "/users/me/settings", me);
+        router.add(HTTPMethod.GET, "/users/{id}/posts", posts);
+
+        Router.RouteMatch match = router.match("/users/me/posts");
+
+        assertSame(posts, match.getHandler(HTTPMethod.GET));
+        assertEquals("me", match.getVariables().get("id"));
+    }
+
+    @Test
+    void match_returnsNullForUnknownPathsAndEmptySegments() {
+        Router router = new Router();
+        router.add(HTTPMethod.GET, "/users/{id}", user);
+
+        assertNull(router.match("/users"));
+        assertNull(router.match("/users/"));
+        assertNull(router.match("/users/1/extra"));
+        assertNull(router.match("/index.html"));
+    }
+
+    @Test
+    void match_reusesTheSameResultForLiteralRoutes() {
+        Router router = new Router();
+        router.add(HTTPMethod.GET, "/api/v1/books", users);
+
+        assertSame(router.match("/api/v1/books"), router.match("/api/v1/books"));
+        assertTrue(router.match("/api/v1/books").getVariables().isEmpty());
+    }
+
+    @Test
+    void add_rejectsConflictingAndMalformedPatterns() {
+        Router router = new Router();
+        router.add(HTTPMethod.GET, "/users/{id}", user);
+
+        assertThrows(IllegalArgumentException.class, () -> router.add(HTTPMethod.GET, "/users/{name}", me));
+        assertThrows(IllegalArgumentException.class, () -> router.add(HTTPMethod.GET, "/users/{id}", me));
+        assertThrows(IllegalArgumentException.class, () -> router.add(HTTPMethod.GET, "/files/{*rest}/more", files));
+        assertThrows(IllegalArgumentException.class, () -> router.add(HTTPMethod.GET, "/files/{name", files));
+        assertThrows(IllegalArgumentException.class, () -> router.add(HTTPMethod.GET, "files", files));
+        assertSame(user, router.match("/users/1").getHandler(HTTPMethod.GET));
+    }
+
+    @Test
+    void match_dispatchesPerMethodAndFallsBackToGetForHead() {
+        Router router = new Router();
+        router.add(HTTPMethod.GET, "/users/{id}", user);
+        router.add(HTTPMethod.DELETE, "/users/{id}", me);
+
+        Router.RouteMatch match = router.match("/users/7");
+        assertSame(user, match.getHandler(HTTPMethod.GET));
+        assertSame(user, match.getHandler(HTTPMethod.HEAD));
+        assertSame(me, match.getHandler(HTTPMethod.DELETE));
+        assertNull(match.getHandler(HTTPMethod.POST));
+        assertEquals("GET, HEAD, DELETE, OPTIONS", match.getAllow());
+        assertThrows(IllegalArgumentException.class, () -> router.add(HTTPMethod.DELETE, "/users/{id}", files));
+        assertThrows(IllegalArgumentException.class, () -> router.add(HTTPMethod.POST, "/users/{name}", files));
+    }
+}
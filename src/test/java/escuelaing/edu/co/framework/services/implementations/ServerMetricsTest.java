@@ -0,0 +1,53 @@
+package escuelaing.edu.co.framework.services.implementations;
+
+import escuelaing.edu.co.framework.models.HTTPMethod;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServerMetricsTest {
+
+    @Test
+    void histogram_reportsQuantilesWithinItsPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 100_000; micros++) {
+            histogram.record(micros * 1000);
+        }
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(100_000L * 100_001 / 2, histogram.getSumMicros());
+        assertEquals(50_000, histogram.getQuantileMicros(0.5), 50_000 * 0.04);
+        assertEquals(99_000, histogram.getQuantileMicros(0.99), 99_000 * 0.04);
+        assertEquals(0, new LatencyHistogram().getQuantileMicros(0.5));
+        for (long micros : new long[]{0, 1, 63, 64, 65, 1000, 123_456_789, LatencyHistogram.MAX_MICROS}) {
+            long top = LatencyHistogram.highestValue(LatencyHistogram.index(micros));
+            assertTrue(top >= micros && top <= micros * 1.04 + 1, micros + " -> " + top);
+        }
+    }
+
+    @Test
+    void writePrometheus_exposesEveryCounter() {
+        ServerMetrics metrics = new ServerMetrics();
+        metrics.route("/a/{id}", HTTPMethod.GET).record(2_000_000, false);
+        metrics.route("/a/{id}", HTTPMethod.GET).record(4_000_000, true);
+        metrics.route(ServerMetrics.STATIC_ROUTE, HTTPMethod.HEAD).record(1_000, false);
+        metrics.error(404);
+        metrics.error(404);
+        metrics.error(200);
+        metrics.connectionOpened();
+        metrics.bytesIn(10);
+        metrics.bytesOut(20);
+        StringBuilder text = new StringBuilder();
+        metrics.writePrometheus(text, 3);
+        String out = text.toString();
+        assertTrue(out.contains("# TYPE http_server_requests_seconds summary\n"));
+        assertTrue(out.contains("http_server_requests_seconds_count{route=\"/a/{id}\",method=\"GET\"} 2\n"));
+        assertTrue(out.contains("http_server_requests_seconds_sum{route=\"/a/{id}\",method=\"GET\"} 0.006\n"));
+        assertTrue(out.contains("http_server_requests_seconds_count{route=\"<static>\",method=\"HEAD\"} 1\n"));
+        assertTrue(out.contains("http_server_request_errors_total{route=\"/a/{id}\",method=\"GET\"} 1\n"));
+        assertFalse(out.contains("method=\"POST\""));
+        assertTrue(out.contains("http_server_errors_total{code=\"404\"} 2\n"));
+        assertFalse(out.contains("code=\"200\""));
+        assertTrue(out.contains("http_server_bytes_received_total 10\n") && out.contains("http_server_bytes_sent_total 20\n"));
+        assertTrue(out.contains("http_server_connections_active 1\n") && out.contains("http_server_queue_depth 3\n"));
+    }
+}
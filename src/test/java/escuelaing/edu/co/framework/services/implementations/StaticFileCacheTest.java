@@ -0,0 +1,215 @@
+package escuelaing.edu.co.framework.services.implementations;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StaticFileCacheTest {
+
+    private Path tmpResources;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        tmpResources = Files.createTempDirectory("cache_test_" + UUID.randomUUID());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (tmpResources != null && Files.exists(tmpResources)) {
+            Files.walk(tmpResources)
+                    .map(Path::toFile)
+                    .sorted((a, b) -> -a.compareTo(b))
+                    .forEach(File::delete);
+        }
+    }
+
+    @Test
+    void get_servesRepeatedRequestsFromMemory() throws Exception {
+        Path file = write("index.html", "<h1>Hola</h1>");
+        StaticFileCache cache = new StaticFileCache(1024, 1024);
+
+        StaticFileCache.CachedFile first = cache.get(file, "text/html");
+        StaticFileCache.CachedFile second = cache.get(file, "text/html");
+
+        assertSame(first, second, "The second request must reuse the cached entry.");
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        String head = new String(first.head, StandardCharsets.ISO_8859_1);
+        assertTrue(head.startsWith("HTTP/1.1 200 OK\r\n"));
+        assertTrue(head.contains("Content-Length: 13\r\n"));
+    }
+
+    @Test
+    void get_reloadsFileWhenLastModifiedChanges() throws Exception {
+        Path file = write("styles.css", "body{}");
+        StaticFileCache cache = new StaticFileCache(1024, 1024);
+        cache.get(file, "text/css");
+
+        Files.writeString(file, "body{color:red}");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 5000));
+        StaticFileCache.CachedFile reloaded = cache.get(file, "text/css");
+
+        assertEquals("body{color:red}", new String(reloaded.body, StandardCharsets.UTF_8));
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    void get_evictsLeastRecentlyUsedFilesOverBudget() throws Exception {
+        Path a = write("a.js", "aaaaaaaaaa");
+        Path b = write("b.js", "bbbbbbbbbb");
+        Path c = write("c.js", "cccccccccc");
+        StaticFileCache cache = new StaticFileCache(2 * entrySize(a), 1024);
+
+        cache.get(a, "application/javascript");
+        cache.get(b, "application/javascript");
+        cache.get(a, "application/javascript");
+        cache.get(c, "application/javascript");
+
+        assertEquals(2, cache.getCachedFiles());
+        assertEquals(1, cache.getEvictions());
+        cache.get(a, "application/javascript");
+        assertEquals(2, cache.getHits(), "The recently used file must survive the eviction.");
+    }
+
+    @Test
+    void get_keepsOnlyMetadataForFilesAboveTheStreamingThreshold() throws Exception {
+        Path big = write("video.bin", "0123456789".repeat(10));
+        StaticFileCache cache = new StaticFileCache(1024, 50);
+
+        StaticFileCache.CachedFile file = cache.get(big, "application/octet-stream");
+
+        assertTrue(file.isStreamed(), "Files above the threshold must be streamed from disk.");
+        assertEquals(100, file.length);
+        assertEquals(big, file.path);
+        assertSame(file, cache.get(big, "application/octet-stream"));
+    }
+
+    @Test
+    void cachedFile_answersConditionalRequestsWithItsValidators() throws Exception {
+        Path file = write("img.png", "png-bytes");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1_700_000_000_000L));
+        StaticFileCache.CachedFile cached = new StaticFileCache(1024, 1024).get(file, "image/png");
+
+        assertEquals("Tue, 14 Nov 2023 22:13:20 GMT", cached.lastModifiedDate);
+        assertTrue(cached.isNotModified(cached.etag, null));
+        assertTrue(cached.isNotModified("\"other\", W/" + cached.etag, null));
+        assertTrue(cached.isNotModified("*", null));
+        assertFalse(cached.isNotModified("\"other\"", cached.lastModifiedDate),
+                "If-None-Match takes precedence over If-Modified-Since.");
+        assertTrue(cached.isNotModified(null, cached.lastModifiedDate));
+        assertTrue(cached.isNotModified(null, "Wed, 15 Nov 2023 00:00:00 GMT"));
+        assertFalse(cached.isNotModified(null, "Mon, 13 Nov 2023 00:00:00 GMT"));
+        assertFalse(cached.isNotModified(null, "yesterday"));
+        assertFalse(cached.isNotModified(null, null));
+        assertTrue(new String(cached.notModifiedHead, StandardCharsets.ISO_8859_1).startsWith("HTTP/1.1 304 Not Modified\r\n"));
+    }
+
+    @Test
+    void negotiate_gzipsCompressibleFilesOnceAndSkipsImages() throws Exception {
+        Path script = write("script.js", "function hola() { return 'hola'; }\n".repeat(50));
+        Path image = write("img.png", "not really a png but never compressed".repeat(50));
+        StaticFileCache cache = new StaticFileCache(64 * 1024, 64 * 1024);
+
+        StaticFileCache.CachedFile js = cache.get(script, "application/javascript");
+        StaticFileCache.CachedFile gzipped = cache.negotiate(js, "gzip, deflate, br");
+
+        assertEquals("gzip", gzipped.encoding);
+        assertTrue(gzipped.length < js.length);
+        assertSame(gzipped, cache.negotiate(cache.get(script, "application/javascript"), "gzip"),
+                "The compressed copy must be computed once per file version.");
+        assertNotEquals(js.etag, gzipped.etag);
+        assertEquals("function hola()", new String(new java.util.zip.GZIPInputStream(
+                new java.io.ByteArrayInputStream(gzipped.body)).readNBytes(15), StandardCharsets.UTF_8));
+        assertTrue(new String(gzipped.head, StandardCharsets.ISO_8859_1).contains("Content-Encoding: gzip\r\n"));
+        assertSame(js, cache.negotiate(js, "gzip;q=0, identity"));
+        assertSame(js, cache.negotiate(js, null));
+
+        StaticFileCache.CachedFile png = cache.get(image, "image/png");
+        assertSame(png, cache.negotiate(png, "gzip"), "Images must not be recompressed.");
+    }
+
+    @Test
+    void negotiate_sendsUncachedFilesUncompressed() throws Exception {
+        Path script = write("app.js", "function hola() { return 'hola'; }\n".repeat(50));
+        write("bundle.js.gz", "gzip-bytes");
+        Path bundle = write("bundle.js", "function adios() {}\n".repeat(50));
+        StaticFileCache cache = new StaticFileCache(0, 64 * 1024);
+
+        StaticFileCache.CachedFile js = cache.get(script, "application/javascript");
+
+        assertSame(js, cache.negotiate(js, "gzip"), "Files the cache does not keep must not be gzipped per request.");
+        assertNull(js.gzipped);
+        assertEquals("gzip", cache.negotiate(cache.get(bundle, "application/javascript"), "gzip").encoding,
+                "Precompressed siblings are still served without caching.");
+    }
+
+    @Test
+    void negotiate_prefersPrecompressedSiblings() throws Exception {
+        Path css = write("styles.css", "body { color: red; }");
+        write("styles.css.br", "brotli-bytes");
+        write("styles.css.gz", "gzip-bytes");
+        StaticFileCache cache = new StaticFileCache(64 * 1024, 64 * 1024);
+        StaticFileCache.CachedFile file = cache.get(css, "text/css");
+
+        StaticFileCache.CachedFile brotli = cache.negotiate(file, "gzip, br");
+        StaticFileCache.CachedFile gzip = cache.negotiate(file, "gzip");
+
+        assertEquals("br", brotli.encoding);
+        assertEquals("brotli-bytes", new String(brotli.body, StandardCharsets.UTF_8));
+        assertTrue(new String(brotli.head, StandardCharsets.ISO_8859_1).contains("Content-Type: text/css\r\n"));
+        assertEquals("gzip", gzip.encoding);
+        assertEquals("gzip-bytes", new String(gzip.body, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void negotiate_ignoresSiblingsOlderThanTheFile() throws Exception {
+        Path css = write("theme.css", "body { color: blue; }\n".repeat(40));
+        Path brotli = write("theme.css.br", "stale-brotli");
+        Path gzip = write("theme.css.gz", "stale-gzip");
+        Files.setLastModifiedTime(brotli, java.nio.file.attribute.FileTime.fromMillis(1_000_000_000_000L));
+        Files.setLastModifiedTime(gzip, java.nio.file.attribute.FileTime.fromMillis(1_000_000_000_000L));
+        StaticFileCache cache = new StaticFileCache(64 * 1024, 64 * 1024);
+        StaticFileCache.CachedFile file = cache.get(css, "text/css");
+
+        StaticFileCache.CachedFile negotiated = cache.negotiate(file, "gzip, br");
+
+        assertEquals("gzip", negotiated.encoding, "The edited file must be gzipped instead of serving a stale sibling");
+        assertEquals("body { color: blue; }", new String(new java.util.zip.GZIPInputStream(
+                new java.io.ByteArrayInputStream(negotiated.body)).readNBytes(21), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void accepts_honorsQualityValuesAndWildcards() {
+        assertTrue(StaticFileCache.accepts("gzip, deflate", "gzip"));
+        assertTrue(StaticFileCache.accepts("br;q=1.0, gzip;q=0.8", "gzip"));
+        assertFalse(StaticFileCache.accepts("gzip;q=0", "gzip"));
+        assertFalse(StaticFileCache.accepts("deflate", "gzip"));
+        assertTrue(StaticFileCache.accepts("*", "br"));
+        assertFalse(StaticFileCache.accepts("*, br;q=0", "br"));
+    }
+
+    @Test
+    void get_failsForMissingFilesAndDirectories() {
+        StaticFileCache cache = new StaticFileCache(1024, 1024);
+        assertThrows(NoSuchFileException.class, () -> cache.get(tmpResources.resolve("missing.png"), "image/png"));
+        assertThrows(NoSuchFileException.class, () -> cache.get(tmpResources, "text/html"));
+    }
+
+    private long entrySize(Path file) throws Exception {
+        return new StaticFileCache(0, 1024).get(file, "application/javascript").size();
+    }
+
+    private Path write(String name, String content) throws Exception {
+        return Files.writeString(tmpResources.resolve(name), content);
+    }
+}